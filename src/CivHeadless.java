@@ -0,0 +1,62 @@
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import controllers.Simulation;
+
+/**
+ * A launcher for computer-vs-computer games with no UI.
+ *
+ * <p>
+ * Plays a batch of games and prints throughput, game length and winner
+ * statistics. Needs nothing but the game classes on the classpath (no JavaFX).
+ * Run from the project root:
+ *
+ * <pre>
+ * java CivHeadless [games] [cpus] [map] [size] [maxRounds] [seed]
+ * </pre>
+ *
+ * which defaults to 100 games of 2 CPUs on a size 20 map 4, capped at 500
+ * rounds. Given a seed, game i is played with seed + i, so the whole run can be
+ * reproduced.
+ *
+ * @author Connie Sun, Ryan Smith, Luke Hankins, Tim Gavlick
+ */
+public class CivHeadless {
+	public static void main(String[] args) {
+		int games = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+		int cpus = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+		int map = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+		int size = args.length > 3 ? Integer.parseInt(args[3]) : 20;
+		int maxRounds = args.length > 4 ? Integer.parseInt(args[4]) : 500;
+		long seed = args.length > 5 ? Long.parseLong(args[5]) : new Random().nextLong();
+
+		Simulation sim = new Simulation(cpus, map, size, maxRounds);
+		Map<String, Integer> wins = new TreeMap<String, Integer>();
+		int unfinished = 0;
+		long totalTurns = 0, totalRounds = 0;
+		int shortest = Integer.MAX_VALUE, longest = 0;
+		long start = System.nanoTime();
+		for (int i = 0; i < games; i++) {
+			Simulation.Result result = sim.play(seed + i);
+			totalTurns += result.getTurns();
+			totalRounds += result.getRounds();
+			shortest = Math.min(shortest, result.getRounds());
+			longest = Math.max(longest, result.getRounds());
+			if (result.getWinner() == null)
+				unfinished++;
+			else
+				wins.merge(result.getWinner(), 1, Integer::sum);
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		System.out.printf("%d games, %d CPUs, map %d, seed %d, %.2fs%n", games, cpus, map, seed, seconds);
+		System.out.printf("%.0f turns/sec, %.1f games/sec%n", totalTurns / seconds, games / seconds);
+		System.out.printf("rounds per game: mean %.1f, min %d, max %d%n", (double) totalRounds / games, shortest,
+				longest);
+		for (Map.Entry<String, Integer> e : wins.entrySet())
+			System.out.printf("%s won %d (%.1f%%)%n", e.getKey(), e.getValue(), 100.0 * e.getValue() / games);
+		if (unfinished > 0)
+			System.out.printf("%d hit the %d round cap%n", unfinished, maxRounds);
+	}
+}
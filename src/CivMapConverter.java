@@ -0,0 +1,52 @@
+import models.CivBoard;
+import models.MapFile;
+import models.NoiseMapGenerator;
+import models.SplitMix64;
+
+/**
+ * Converts maps into the binary map format (see MapFile). Run from the project
+ * root:
+ *
+ * <pre>
+ * java CivMapConverter [text map] [binary map]
+ * java CivMapConverter -generate [size] [seed] [binary map]
+ * java CivMapConverter -noise [size] [seed] [binary map]
+ * </pre>
+ *
+ * The first converts a text map such as ./src/models/Map1.txt; the others
+ * write a freshly generated map 4 or map 5 of any size, e.g. 4096. Either way
+ * the written map is then opened again to time how long loading it takes.
+ *
+ * @author Connie Sun, Ryan Smith, Luke Hankins, Tim Gavlick
+ */
+public class CivMapConverter {
+	public static void main(String[] args) throws Exception {
+		String out;
+		long start = System.nanoTime();
+		if (args.length == 4 && args[0].equals("-generate")) {
+			out = args[3];
+			MapFile.write(new CivBoard(Integer.parseInt(args[1]), new SplitMix64(Long.parseLong(args[2]))), out);
+		} else if (args.length == 4 && args[0].equals("-noise")) {
+			out = args[3];
+			MapFile.write(new NoiseMapGenerator(Long.parseLong(args[2])).generate(Integer.parseInt(args[1])), out);
+		} else if (args.length == 2) {
+			out = args[1];
+			MapFile.convert(args[0], out);
+		} else {
+			System.err.println("usage: java CivMapConverter [text map] [binary map]");
+			System.err.println("       java CivMapConverter -generate [size] [seed] [binary map]");
+			System.err.println("       java CivMapConverter -noise [size] [seed] [binary map]");
+			System.exit(1);
+			return;
+		}
+		System.out.printf("wrote %s in %.1fms%n", out, (System.nanoTime() - start) / 1e6);
+
+		start = System.nanoTime();
+		MapFile map = new MapFile(out);
+		System.out.printf("opened size %d map in %.2fms, tile 1,1 is %s%n", map.getSize(),
+				(System.nanoTime() - start) / 1e6, map.getTerrainType(1, 1));
+		start = System.nanoTime();
+		CivBoard board = new CivBoard(map);
+		System.out.printf("built size %d board in %.1fms%n", board.getSize(), (System.nanoTime() - start) / 1e6);
+	}
+}
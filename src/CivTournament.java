@@ -0,0 +1,55 @@
+import java.util.Random;
+
+import controllers.Tournament;
+
+/**
+ * A launcher for tournaments of computer-vs-computer games with no UI.
+ *
+ * <p>
+ * Plays the games in parallel on every core and prints win rates per map and
+ * starting position, average game length and turn latency percentiles. Run
+ * from the project root:
+ *
+ * <pre>
+ * java CivTournament [gamesPerMap] [cpus] [size] [maxRounds] [seed] [maps...]
+ * </pre>
+ *
+ * which defaults to 50 games of 2 CPUs on each of maps 1-4 (map 4 being size
+ * 20), capped at 500 rounds, with a random seed.
+ *
+ * @author Connie Sun, Ryan Smith, Luke Hankins, Tim Gavlick
+ */
+public class CivTournament {
+	public static void main(String[] args) {
+		int gamesPerMap = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+		int cpus = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+		int size = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+		int maxRounds = args.length > 3 ? Integer.parseInt(args[3]) : 500;
+		long seed = args.length > 4 ? Long.parseLong(args[4]) : new Random().nextLong();
+		int[] maps = { 1, 2, 3, 4 };
+		if (args.length > 5) {
+			maps = new int[args.length - 5];
+			for (int i = 0; i < maps.length; i++)
+				maps[i] = Integer.parseInt(args[i + 5]);
+		}
+
+		long start = System.nanoTime();
+		Tournament.Stats stats = new Tournament(maps, size, cpus, gamesPerMap, maxRounds, seed).run();
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		System.out.printf("%d games, %d CPUs, seed %d, %.2fs on %d cores%n", stats.getGames(), cpus, seed, seconds,
+				Runtime.getRuntime().availableProcessors());
+		System.out.printf("%.0f turns/sec, %.1f games/sec, %.1f rounds per game%n", stats.getTurns() / seconds,
+				stats.getGames() / seconds, stats.getMeanRounds());
+		System.out.printf("turn latency: p50 %.3fms, p99 %.3fms%n", stats.getTurnNanosPercentile(50) / 1e6,
+				stats.getTurnNanosPercentile(99) / 1e6);
+		for (int map : stats.getMaps()) {
+			StringBuilder line = new StringBuilder("map " + map + ":");
+			for (int seat = 0; seat < cpus; seat++)
+				line.append(String.format(" seat %d %.1f%%", seat + 1,
+						100.0 * stats.getWins(map, seat) / stats.getGames(map)));
+			line.append(String.format(", %d hit the round cap", stats.getUnfinished(map)));
+			System.out.println(line);
+		}
+	}
+}
@@ -2,6 +2,7 @@ package components;
 
 import java.awt.Point;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -29,6 +30,14 @@ public class City implements Serializable{
 
 	private Set<String> producableUnits;
 
+	// id of this city in the TileStore registry of the board it belongs to
+	int boardId;
+	// changed since the last save (see SaveJournal)
+	private boolean dirty = true;
+
+	/** number of bytes writeTo() writes */
+	public static final int SAVE_BYTES = 4 + 4 + 8 + 8 + 4 + 4 + 4 + 8 + 8 + 1;
+
 	public City(Player player, int row, int col) {
 		this.owner = player;
 		this.coord = new Point(row, col);
@@ -54,6 +63,7 @@ public class City implements Serializable{
 	 */
 	public void takeAttack(double damage) {
 		this.cityHPCur -= damage;
+		dirty = true;
 	}
 
 	/**
@@ -63,23 +73,12 @@ public class City implements Serializable{
 	 * @return Unit object that has been created for a player in a city
 	 */
 	public Unit produceUnit(String unitType) {
-		Unit retUnit = null;
-		if (unitType.equals("Settler")) {
-			// settlers decrease city population by 1
+		// settlers decrease city population by 1
+		if (unitType.equals("Settler"))
 			this.population -= 1;
-			retUnit = new Settler(owner, new Point(coord.x, coord.y));
-		} else if (unitType.equals("Scout")) {
-			retUnit = new Scout(owner, new Point(coord.x, coord.y));
-		} else if (unitType.equals("Warrior")) {
-			retUnit = new Warrior(owner, new Point(coord.x, coord.y));
-		} else if (unitType.equals("Militia")) {
-			retUnit = new Militia(owner, new Point(coord.x, coord.y));
-		} else if (unitType.equals("Cavalry")) {
-			retUnit = new Cavalry(owner, new Point(coord.x, coord.y));
-		} else if (unitType.equals("Swordsman")) {
-			retUnit = new Swordsman(owner, new Point(coord.x, coord.y));
-		}
+		Unit retUnit = Unit.create(unitType, owner, new Point(coord.x, coord.y));
 		this.productionReserve -= Unit.unitCosts.get(unitType);
+		dirty = true;
 		return retUnit;
 	}
 
@@ -88,6 +87,7 @@ public class City implements Serializable{
 	 * necessary.
 	 */
 	public void cityIncrement() {
+		dirty = true;
 		productionReserve += production;
 		this.turnsBeforeGrowth -= 1;
 		// city grows
@@ -217,11 +217,74 @@ public class City implements Serializable{
 	 */
 	public void unlockUnit(String resource) {
 		if (resource.equals("wheat"))
-			producableUnits.add("Militia");
+			dirty |= producableUnits.add("Militia");
 		if (resource.equals("iron"))
-			producableUnits.add("Swordsman");
+			dirty |= producableUnits.add("Swordsman");
 		if (resource.equals("horse"))
-			producableUnits.add("Cavalry");
+			dirty |= producableUnits.add("Cavalry");
+	}
+
+	/**
+	 * Check whether anything writeTo() writes has changed since clearDirty() was
+	 * last called. New cities start out dirty.
+	 *
+	 * @return true if the city needs saving
+	 */
+	public boolean isDirty() {
+		return dirty;
+	}
+
+	/**
+	 * Mark the city as saved.
+	 */
+	public void clearDirty() {
+		dirty = false;
+	}
+
+	/**
+	 * Write this city's location and state to a save buffer.
+	 *
+	 * @param out buffer with at least SAVE_BYTES remaining
+	 */
+	public void writeTo(ByteBuffer out) {
+		out.putInt(coord.x);
+		out.putInt(coord.y);
+		out.putDouble(production);
+		out.putDouble(productionReserve);
+		out.putInt(turnsBeforeGrowth);
+		out.putInt(population);
+		out.putInt(controlRadius);
+		out.putDouble(cityHPMax);
+		out.putDouble(cityHPCur);
+		int producable = 0; // one bit per Unit.TYPES entry
+		for (String unitType : producableUnits)
+			producable |= 1 << Unit.typeId(unitType);
+		out.put((byte) producable);
+	}
+
+	/**
+	 * Read a city written by writeTo().
+	 *
+	 * @param in    buffer positioned at the city
+	 * @param owner player that owns the city
+	 * @return the restored City
+	 */
+	public static City readFrom(ByteBuffer in, Player owner) {
+		City city = new City(owner, in.getInt(), in.getInt());
+		city.production = in.getDouble();
+		city.productionReserve = in.getDouble();
+		city.turnsBeforeGrowth = in.getInt();
+		city.population = in.getInt();
+		city.controlRadius = in.getInt();
+		city.cityHPMax = in.getDouble();
+		city.cityHPCur = in.getDouble();
+		int producable = in.get();
+		city.producableUnits.clear();
+		for (int t = 0; t < Unit.TYPES.length; t++) {
+			if ((producable & (1 << t)) != 0)
+				city.producableUnits.add(Unit.TYPES[t]);
+		}
+		return city;
 	}
 
 }
@@ -0,0 +1,452 @@
+package components;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Tile storage for boards too big to keep in memory, split into chunks that are
+ * paged in and out on demand.
+ *
+ * <p>
+ * The board is cut into CHUNK x CHUNK squares, each holding the same arrays a
+ * TileStore keeps for the whole board. Only the most recently used chunks stay
+ * resident (an LRU of a fixed number of chunks); the first touch of any other
+ * tile faults its chunk in. A chunk that's evicted after being changed is
+ * written to a page file at its own fixed offset, and read back from there the
+ * next time it's needed. Chunks that were never changed are just dropped and
+ * built again from the map they came from, so a freshly opened board costs
+ * nothing until it's looked at, and the page file only ever holds chunks that
+ * play has changed. A saved board is paged the same way, with the board
+ * section of the save (see readFrom()) standing in for the map.
+ *
+ * <p>
+ * The page file is a temporary file made on the first page-out and deleted by
+ * close() (or when the JVM exits). Tile indexes are still y * size + x, so the
+ * size is limited the same way a TileStore's is. Fog of war and the unit and
+ * city registries aren't paged. Like the rest of the board this isn't
+ * thread-safe; chunks are faulted in by whichever thread reads a tile.
+ *
+ * @field map       terrain ids then resource ids for every tile, as
+ *                  TileStore.writeMapTo() lays them out, or null for a map of
+ *                  empty fields
+ * @field saved     whether map goes on with the flags, city ids and unit ids,
+ *                  as TileStore.writeTo() lays them out after the size
+ * @field resident  chunks in memory by chunk id, least recently used first
+ * @field paged     ids of chunks that have a copy in the page file
+ * @author Connie Sun, Ryan Smith, Luke Hankins, Tim Gavlick
+ */
+public class PagedTileStore extends TileStore implements Closeable {
+
+	/** width and height of a chunk in tiles */
+	public static final int CHUNK = 64;
+	/** bytes one chunk takes up in memory and in the page file */
+	public static final int CHUNK_BYTES = CHUNK * CHUNK * (3 + 4 + 4);
+
+	private static final int SHIFT = 6;
+	private static final int MASK = CHUNK - 1;
+
+	private final int chunksAcross;
+	private final int residentChunks;
+	private final ByteBuffer map;
+	private final boolean saved;
+	private final transient LinkedHashMap<Integer, Chunk> resident;
+	private final BitSet paged = new BitSet();
+	private transient Path pagePath;
+	private transient FileChannel pages;
+	private transient ByteBuffer io;
+
+	// the last chunk used, checked before going to the LRU
+	private int lastId = -1;
+	private transient Chunk last;
+
+	private long faults;
+	private long pageIns;
+	private long pageOuts;
+
+	/**
+	 * Set up a paged store. Nothing is read or allocated until tiles are used.
+	 *
+	 * @param size           width and height of the board in tiles
+	 * @param map            buffer holding size * size terrain ids and then size
+	 *                       * size resource ids from its position on (as written
+	 *                       by writeMapTo()), or null for a board of empty fields
+	 * @param residentChunks most chunks to keep in memory at once
+	 * @throws IllegalArgumentException if residentChunks is less than 1
+	 */
+	public PagedTileStore(int size, ByteBuffer map, int residentChunks) {
+		this(size, map, residentChunks, false);
+	}
+
+	private PagedTileStore(int size, ByteBuffer map, int residentChunks, boolean saved) {
+		super(size, false);
+		if (residentChunks < 1)
+			throw new IllegalArgumentException("a paged board needs at least 1 resident chunk");
+		this.chunksAcross = (size + CHUNK - 1) / CHUNK;
+		this.residentChunks = residentChunks;
+		this.map = map == null ? null : map.slice();
+		this.saved = saved;
+		this.resident = new LinkedHashMap<Integer, Chunk>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, Chunk> eldest) {
+				if (size() <= PagedTileStore.this.residentChunks)
+					return false;
+				pageOut(eldest.getKey(), eldest.getValue());
+				return true;
+			}
+		};
+	}
+
+	/**
+	 * Page a board out of what writeTo() wrote, without reading any of it up
+	 * front: chunks are read out of the buffer the first time they're used,
+	 * as they are out of a map. The buffer is kept, so it should be one that
+	 * doesn't have to fit in memory, like a mapping of the save file. Units
+	 * and cities are left unbound until bind() is called.
+	 *
+	 * @param in             buffer positioned at the tiles
+	 * @param residentChunks most chunks to keep in memory at once
+	 * @return the restored store
+	 * @throws IllegalArgumentException if residentChunks is less than 1
+	 */
+	public static PagedTileStore readFrom(ByteBuffer in, int residentChunks) {
+		int size = in.getInt();
+		PagedTileStore store = new PagedTileStore(size, in, residentChunks, true);
+		in.position(in.position() + 11 * size * size);
+		return store;
+	}
+
+	/**
+	 * One chunk's worth of tiles, indexed by (y % CHUNK) * CHUNK + x % CHUNK.
+	 */
+	private static class Chunk {
+		final byte[] terrain = new byte[CHUNK * CHUNK];
+		final byte[] resource = new byte[CHUNK * CHUNK];
+		final byte[] flags = new byte[CHUNK * CHUNK];
+		final int[] ownerCity = new int[CHUNK * CHUNK];
+		final int[] unit = new int[CHUNK * CHUNK];
+		/** changed since it was faulted in */
+		boolean modified;
+	}
+
+	/**
+	 * Get the chunk holding tile x, y, faulting it in if it isn't resident.
+	 */
+	private Chunk chunk(int x, int y) {
+		int id = (y >> SHIFT) * chunksAcross + (x >> SHIFT);
+		if (id == lastId)
+			return last;
+		Chunk c = resident.get(id);
+		if (c == null) {
+			c = faultIn(id);
+			resident.put(id, c);
+		}
+		lastId = id;
+		last = c;
+		return c;
+	}
+
+	private static int offset(int x, int y) {
+		return (y & MASK) << SHIFT | (x & MASK);
+	}
+
+	private Chunk faultIn(int id) {
+		faults++;
+		Chunk c = new Chunk();
+		if (paged.get(id)) {
+			pageIns++;
+			ByteBuffer in = pageBuffer();
+			try {
+				long at = (long) id * CHUNK_BYTES;
+				while (in.hasRemaining()) {
+					if (pages.read(in, at + in.position()) < 0)
+						throw new IOException("page file ends inside chunk " + id);
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			in.flip();
+			in.get(c.terrain).get(c.resource).get(c.flags);
+			in.asIntBuffer().get(c.ownerCity).get(c.unit);
+		} else if (map != null) {
+			int count = size * size;
+			int left = (id % chunksAcross) << SHIFT, top = (id / chunksAcross) << SHIFT;
+			int width = Math.min(CHUNK, size - left);
+			for (int y = top; y < Math.min(top + CHUNK, size); y++) {
+				int from = y * size + left, to = offset(left, y);
+				map.get(from, c.terrain, to, width);
+				map.get(count + from, c.resource, to, width);
+				for (int k = to; k < to + width; k++) {
+					// validates the ids the same way readMapFrom() does
+					terrainOf(c.terrain[k]);
+					resourceOf(c.resource[k]);
+				}
+				if (saved) {
+					map.get(2 * count + from, c.flags, to, width);
+					for (int k = 0; k < width; k++) {
+						c.ownerCity[to + k] = map.getInt(3 * count + 4 * (from + k));
+						c.unit[to + k] = map.getInt(7 * count + 4 * (from + k));
+					}
+				}
+			}
+		}
+		return c;
+	}
+
+	private void pageOut(int id, Chunk c) {
+		if (c == last) {
+			lastId = -1;
+			last = null;
+		}
+		if (!c.modified)
+			return; // the map or the page file already has it
+		pageOuts++;
+		ByteBuffer out = pageBuffer();
+		out.put(c.terrain).put(c.resource).put(c.flags);
+		out.asIntBuffer().put(c.ownerCity).put(c.unit);
+		out.clear();
+		try {
+			if (pages == null) {
+				pagePath = Files.createTempFile("civ", ".pages");
+				pagePath.toFile().deleteOnExit();
+				pages = FileChannel.open(pagePath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			}
+			long at = (long) id * CHUNK_BYTES;
+			while (out.hasRemaining())
+				pages.write(out, at + out.position());
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		paged.set(id);
+	}
+
+	private ByteBuffer pageBuffer() {
+		if (io == null)
+			io = ByteBuffer.allocateDirect(CHUNK_BYTES);
+		io.clear();
+		return io;
+	}
+
+	@Override
+	byte terrainIdAt(int i) {
+		int x = i % size, y = i / size;
+		return chunk(x, y).terrain[offset(x, y)];
+	}
+
+	@Override
+	byte resourceIdAt(int i) {
+		int x = i % size, y = i / size;
+		return chunk(x, y).resource[offset(x, y)];
+	}
+
+	@Override
+	void setTileAt(int i, byte terrainId, byte resourceId) {
+		int x = i % size, y = i / size;
+		Chunk c = chunk(x, y);
+		c.terrain[offset(x, y)] = terrainId;
+		c.resource[offset(x, y)] = resourceId;
+		c.modified = true;
+	}
+
+	@Override
+	byte flagsAt(int i) {
+		int x = i % size, y = i / size;
+		return chunk(x, y).flags[offset(x, y)];
+	}
+
+	@Override
+	void setFlagsAt(int i, byte f) {
+		int x = i % size, y = i / size;
+		Chunk c = chunk(x, y);
+		c.flags[offset(x, y)] = f;
+		c.modified = true;
+	}
+
+	@Override
+	int unitIdAt(int i) {
+		int x = i % size, y = i / size;
+		return chunk(x, y).unit[offset(x, y)];
+	}
+
+	@Override
+	void setUnitIdAt(int i, int id) {
+		int x = i % size, y = i / size;
+		Chunk c = chunk(x, y);
+		c.unit[offset(x, y)] = id;
+		c.modified = true;
+	}
+
+	@Override
+	int ownerCityIdAt(int i) {
+		int x = i % size, y = i / size;
+		return chunk(x, y).ownerCity[offset(x, y)];
+	}
+
+	@Override
+	void setOwnerCityIdAt(int i, int id) {
+		int x = i % size, y = i / size;
+		Chunk c = chunk(x, y);
+		c.ownerCity[offset(x, y)] = id;
+		c.modified = true;
+	}
+
+	/**
+	 * Bind as TileStore.bind() does, going a chunk at a time so each chunk is
+	 * faulted in once however few are resident.
+	 *
+	 * @param unitsById  units by the id they were saved with
+	 * @param citiesById cities by the id they were saved with
+	 * @throws IllegalArgumentException if a tile refers to an id that isn't
+	 *                                  given
+	 */
+	@Override
+	public void bind(Map<Integer, Unit> unitsById, Map<Integer, City> citiesById) {
+		for (int id = 0; id < chunksAcross * chunksAcross; id++) {
+			int left = (id % chunksAcross) << SHIFT, top = (id / chunksAcross) << SHIFT;
+			for (int y = top; y < Math.min(top + CHUNK, size); y++)
+				for (int x = left; x < Math.min(left + CHUNK, size); x++)
+					bindTile(y * size + x, unitsById, citiesById);
+		}
+	}
+
+	/**
+	 * Write every tile as TileStore.writeTo() does, going a chunk at a time so
+	 * each chunk is faulted in once however few are resident.
+	 *
+	 * @param out buffer with at least saveBytes() remaining
+	 */
+	@Override
+	public void writeTo(ByteBuffer out) {
+		int count = size * size;
+		out.putInt(size);
+		int base = out.position();
+		for (int id = 0; id < chunksAcross * chunksAcross; id++) {
+			int left = (id % chunksAcross) << SHIFT, top = (id / chunksAcross) << SHIFT;
+			for (int y = top; y < Math.min(top + CHUNK, size); y++) {
+				for (int x = left; x < Math.min(left + CHUNK, size); x++) {
+					int i = y * size + x;
+					Chunk c = chunk(x, y);
+					int k = offset(x, y);
+					out.put(base + i, c.terrain[k]);
+					out.put(base + count + i, c.resource[k]);
+					out.put(base + 2 * count + i, c.flags[k]);
+					out.putInt(base + 3 * count + 4 * i, c.ownerCity[k]);
+					out.putInt(base + 7 * count + 4 * i, c.unit[k]);
+				}
+			}
+		}
+		out.position(base + 11 * count);
+	}
+
+	/**
+	 * Write the terrain and resource ids as TileStore.writeMapTo() does, a chunk
+	 * at a time.
+	 *
+	 * @param out buffer with at least 2 * size * size bytes remaining
+	 */
+	@Override
+	public void writeMapTo(ByteBuffer out) {
+		int count = size * size;
+		int base = out.position();
+		for (int id = 0; id < chunksAcross * chunksAcross; id++) {
+			int left = (id % chunksAcross) << SHIFT, top = (id / chunksAcross) << SHIFT;
+			for (int y = top; y < Math.min(top + CHUNK, size); y++) {
+				for (int x = left; x < Math.min(left + CHUNK, size); x++) {
+					Chunk c = chunk(x, y);
+					out.put(base + y * size + x, c.terrain[offset(x, y)]);
+					out.put(base + count + y * size + x, c.resource[offset(x, y)]);
+				}
+			}
+		}
+		out.position(base + 2 * count);
+	}
+
+	/**
+	 * Replace the terrain and resources of every tile, a chunk at a time.
+	 *
+	 * @param in buffer positioned at what writeMapTo() wrote
+	 * @throws IllegalArgumentException if a terrain or resource id is unknown
+	 */
+	@Override
+	public void readMapFrom(ByteBuffer in) {
+		int count = size * size;
+		int base = in.position();
+		for (int id = 0; id < chunksAcross * chunksAcross; id++) {
+			int left = (id % chunksAcross) << SHIFT, top = (id / chunksAcross) << SHIFT;
+			for (int y = top; y < Math.min(top + CHUNK, size); y++) {
+				for (int x = left; x < Math.min(left + CHUNK, size); x++) {
+					int i = y * size + x;
+					byte terrainId = in.get(base + i), resourceId = in.get(base + count + i);
+					terrainOf(terrainId);
+					resourceOf(resourceId);
+					setTileAt(i, terrainId, resourceId);
+				}
+			}
+		}
+		in.position(base + 2 * count);
+		markAllChanged();
+	}
+
+	/**
+	 * Get the number of chunks currently in memory.
+	 *
+	 * @return resident chunk count, at most the limit given when constructed
+	 */
+	public int getResidentChunks() {
+		return resident.size();
+	}
+
+	/**
+	 * Get the number of times a tile was used whose chunk wasn't resident.
+	 *
+	 * @return chunk faults since the store was made
+	 */
+	public long getFaultCount() {
+		return faults;
+	}
+
+	/**
+	 * Get the number of faults that read a chunk back from the page file.
+	 *
+	 * @return chunks read from the page file
+	 */
+	public long getPageInCount() {
+		return pageIns;
+	}
+
+	/**
+	 * Get the number of changed chunks written to the page file on eviction.
+	 *
+	 * @return chunks written to the page file
+	 */
+	public long getPageOutCount() {
+		return pageOuts;
+	}
+
+	/**
+	 * Close and delete the page file. Chunks that were paged out are lost, so the
+	 * store mustn't be used afterwards.
+	 *
+	 * @throws IOException if the page file can't be closed or deleted
+	 */
+	@Override
+	public void close() throws IOException {
+		resident.clear();
+		lastId = -1;
+		last = null;
+		if (pages != null) {
+			pages.close();
+			Files.deleteIfExists(pagePath);
+			pages = null;
+		}
+	}
+
+}
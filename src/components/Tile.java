@@ -1,8 +1,6 @@
 package components;
 
 import java.io.Serializable;
-import java.util.ArrayList;
-import java.util.List;
 
 import models.Player;
 
@@ -18,36 +16,32 @@ public class Tile implements Serializable {
 		FIELD, HILL, SWAMP, WATER, MOUNTAIN
 	}
 
-	private terrainTypes terrainType;
-	private int movementBonus;
-	private double attackMult;
-	private String resourceType = null;
-	private City ownerCity = null;
-	private boolean isCityTile = false;
-	private Unit unitHere = null;
-	private List<Player> revealedTo = new ArrayList<Player>();
+	private final TileStore store;
+	private final int index;
 
 	/**
 	 * When initially making a game, create every tile with a terrain type in mind.
 	 * This will allow for map creation.
+	 *
+	 * <p>
+	 * A tile made this way is backed by its own single-tile store. Tiles that
+	 * belong to a board are views handed out by TileStore.getTile() instead.
 	 */
 	public Tile(terrainTypes terrainType, String resource) {
-		this.terrainType = terrainType;
-		this.resourceType = resource;
-		if (terrainType.equals(terrainTypes.HILL)) {
-			this.movementBonus = -1;
-			this.attackMult = 1.25;
-		} else if (terrainType.equals(terrainTypes.SWAMP)) {
-			this.movementBonus = -1;
-			this.attackMult = .75;
-		} else if (terrainType.equals(terrainTypes.FIELD)) {
-			this.movementBonus = 0;
-			this.attackMult = 1;
-		} else {
-			// terrain type is either a mountain or water, either way it is impassable.
-			this.movementBonus = -1000;
-			this.attackMult = 0;
-		}
+		this.store = new TileStore(1);
+		this.index = 0;
+		store.setTile(0, 0, terrainType, resource);
+	}
+
+	/**
+	 * Create a view onto one tile of a packed store.
+	 *
+	 * @param store the store holding this tile's data
+	 * @param index the tile's index within the store (y * size + x)
+	 */
+	Tile(TileStore store, int index) {
+		this.store = store;
+		this.index = index;
 	}
 
 	/**
@@ -57,11 +51,8 @@ public class Tile implements Serializable {
 	 * @return boolean representing whether city founding was a success
 	 */
 	public boolean foundCity(City city) {
-		if (this.ownerCity == null) { // && this.unitHere instanceOf Settler?
-			this.ownerCity = city;
-			this.isCityTile = true;
-			this.movementBonus = 0; // TODO: figure out bonuses for units in cities
-			this.attackMult = 1.25; // subject to change
+		if (store.ownerCityIdAt(index) == 0) { // && this.unitHere instanceOf Settler?
+			store.foundCityAt(index, city);
 
 			return true;
 		}
@@ -72,8 +63,7 @@ public class Tile implements Serializable {
 	 * remove a city from this tile
 	 */
 	public void destroyCity() {
-		this.isCityTile = false;
-		this.ownerCity = null;
+		store.destroyCityAt(index);
 	}
 
 	/**
@@ -81,8 +71,9 @@ public class Tile implements Serializable {
 	 * should have access to the resource.
 	 */
 	public void checkForNewResource() {
-		if (this.ownerCity != null && !resourceType.equals("")) {
-			ownerCity.unlockUnit(resourceType);
+		City ownerCity = store.ownerCityAt(index);
+		if (ownerCity != null && store.resourceIdAt(index) != 0) {
+			ownerCity.unlockUnit(getResourceType());
 		}
 	}
 
@@ -92,7 +83,7 @@ public class Tile implements Serializable {
 	 * @return The terrainType assigned to this tile
 	 */
 	public terrainTypes getTerrainType() {
-		return this.terrainType;
+		return store.terrainAt(index);
 	}
 
 	/**
@@ -102,7 +93,7 @@ public class Tile implements Serializable {
 	 * @return int representing terrain bonus to be added to unit movement value
 	 */
 	public int getMovementModifier() {
-		return this.movementBonus;
+		return store.movementModifierAt(index);
 	}
 
 	/**
@@ -112,7 +103,7 @@ public class Tile implements Serializable {
 	 * @return double representing attack multiplier.
 	 */
 	public double getAttackModifier() {
-		return this.attackMult;
+		return store.attackModifierAt(index);
 	}
 
 	/**
@@ -122,7 +113,7 @@ public class Tile implements Serializable {
 	 *         is no resource.
 	 */
 	public String getResourceType() {
-		return this.resourceType;
+		return TileStore.RESOURCES[store.resourceIdAt(index)];
 	}
 
 	/**
@@ -133,7 +124,7 @@ public class Tile implements Serializable {
 	 * @return City object representing the city which claims ownership of the tile
 	 */
 	public City getOwnerCity() {
-		return this.ownerCity;
+		return store.ownerCityAt(index);
 	}
 
 	/**
@@ -143,7 +134,7 @@ public class Tile implements Serializable {
 	 * @param city which now owns the tile
 	 */
 	public void setOwnerCity(City city) {
-		this.ownerCity = city;
+		store.setOwnerCityAt(index, city);
 	}
 
 	/**
@@ -153,7 +144,7 @@ public class Tile implements Serializable {
 	 * @return boolean representing if this tile contains a city.
 	 */
 	public boolean isCityTile() {
-		return this.isCityTile;
+		return (store.flagsAt(index) & TileStore.FLAG_CITY) != 0;
 	}
 	/**
 	 * Determine if this tile contains the city itself
@@ -162,7 +153,7 @@ public class Tile implements Serializable {
 	 */
 	public boolean isThisACity() {
 
-		return this.isCityTile;
+		return (store.flagsAt(index) & TileStore.FLAG_CITY) != 0;
 	}
 
 	/**
@@ -172,7 +163,7 @@ public class Tile implements Serializable {
 	 * @return Unit on this tile object, or null if the tile contains no unit.
 	 */
 	public Unit getUnit() {
-		return this.unitHere;
+		return store.unitAt(index);
 	}
 
 	/**
@@ -182,7 +173,7 @@ public class Tile implements Serializable {
 	 * @param unit that is now stationed here.
 	 */
 	public void setUnit(Unit unit) {
-		unitHere = unit;
+		store.setUnitAt(index, unit);
 	}
 
 	/**
@@ -192,7 +183,7 @@ public class Tile implements Serializable {
 	 * @return boolean representing whether the player passed in can see the tile
 	 */
 	public boolean canSeeTile(Player player) {
-		return revealedTo.contains(player);
+		return store.canSee(index, player);
 	}
 
 	/**
@@ -201,7 +192,27 @@ public class Tile implements Serializable {
 	 * @param player Player that the tile will be revealed to.
 	 */
 	public void revealTile(Player player) {
-		revealedTo.add(player);
+		store.reveal(index, player);
+	}
+
+	/**
+	 * Two tiles are equal if they are views onto the same tile of the same
+	 * board.
+	 *
+	 * @param o object to compare against
+	 * @return true if o refers to the same tile as this
+	 */
+	@Override
+	public boolean equals(Object o) {
+		if (!(o instanceof Tile))
+			return false;
+		Tile other = (Tile) o;
+		return other.store == store && other.index == index;
+	}
+
+	@Override
+	public int hashCode() {
+		return System.identityHashCode(store) * 31 + index;
 	}
 
 }
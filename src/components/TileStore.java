@@ -0,0 +1,662 @@
+package components;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+import models.Player;
+import models.SpatialIndex;
+
+/**
+ * Packed struct-of-arrays storage for every tile on a board.
+ *
+ * <p>
+ * Instead of one heap object per tile, each tile property lives in its own
+ * primitive array indexed by {@code y * size + x}. Units and cities are stored
+ * as int ids into small registries owned by the store, so a full-board scan only
+ * has to walk flat arrays. The {@link Tile} objects returned by
+ * {@link #getTile(int, int)} are thin views onto a single index and can be
+ * created and thrown away freely.
+ *
+ * <p>
+ * Tile data is only ever read and written through the package-private per-tile
+ * accessors (terrainIdAt(), flagsAt(), ...), so {@link PagedTileStore} can keep
+ * it in chunks instead of whole-board arrays.
+ *
+ * @field terrain   terrainTypes ordinal of each tile
+ * @field resource  index into RESOURCES of each tile's resource
+ * @field flags     bit flags per tile (FLAG_CITY, FLAG_SETTLED)
+ * @field ownerCity registry id of the city owning each tile, 0 if none
+ * @field unit      registry id of the unit stationed on each tile, 0 if none
+ * @field revealed  one bitset per player with a bit set for every tile index
+ *                  that player has revealed
+ * @field dirty     tile indexes whose terrain, flags, city or unit changed
+ *                  since the last save (see writeChangesTo())
+ * @field changed   the same, since the model last published a ModelChanged (see
+ *                  takeChangedTiles()), plus tiles marked with markChanged()
+ * @field index     every unit and city on the board by position, kept up to
+ *                  date as units are placed and cities founded or destroyed
+ * @author Connie Sun, Ryan Smith, Luke Hankins, Tim Gavlick
+ */
+public class TileStore implements Serializable {
+
+	/** resource names as used by Tile.getResourceType(), indexed by resource id */
+	static final String[] RESOURCES = { "", "wheat", "horse", "iron" };
+
+	/** movement modifier of each terrain type, indexed by ordinal */
+	private static final int[] MOVEMENT = { 0, -1, -1, -1000, -1000 };
+	/** attack multiplier of each terrain type, indexed by ordinal */
+	private static final double[] ATTACK = { 1, 1.25, .75, 0, 0 };
+	private static final Tile.terrainTypes[] TERRAINS = Tile.terrainTypes.values();
+
+	/** the tile currently holds a city */
+	static final byte FLAG_CITY = 1;
+	/** a city has been founded here; the tile keeps city movement/attack modifiers */
+	static final byte FLAG_SETTLED = 2;
+
+	/** bytes writeChangesTo() writes per changed tile */
+	private static final int CHANGE_BYTES = 4 + 3 + 4 + 4;
+
+	final int size;
+	final byte[] terrain;
+	final byte[] resource;
+	final byte[] flags;
+	final int[] ownerCity;
+	final int[] unit;
+	private final Map<Player, BitSet> revealed = new HashMap<Player, BitSet>();
+	private final BitSet dirty = new BitSet();
+	private final BitSet changed = new BitSet();
+	private final SpatialIndex index;
+
+	private final Registry units = new Registry();
+	private final Registry cities = new Registry();
+
+	/**
+	 * Allocate storage for a size x size board. Every tile starts out as an empty
+	 * field with no resource.
+	 *
+	 * @param size width and height of the board in tiles
+	 */
+	public TileStore(int size) {
+		this(size, true);
+	}
+
+	/**
+	 * Set up a store, leaving the tile arrays out if a subclass keeps the tiles
+	 * somewhere else (see PagedTileStore). Such a subclass overrides every
+	 * per-tile accessor below, and the bulk reads and writes.
+	 *
+	 * @param size     width and height of the board in tiles
+	 * @param allocate whether to allocate the flat tile arrays
+	 */
+	TileStore(int size, boolean allocate) {
+		int count = allocate ? size * size : 0;
+		this.size = size;
+		this.terrain = allocate ? new byte[count] : null;
+		this.resource = allocate ? new byte[count] : null;
+		this.flags = allocate ? new byte[count] : null;
+		this.ownerCity = allocate ? new int[count] : null;
+		this.unit = allocate ? new int[count] : null;
+		this.index = new SpatialIndex(size);
+	}
+
+	/**
+	 * Get the width (and height) of the board backed by this store.
+	 *
+	 * @return int giving the dimension of the board
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * Get a view of the tile at x, y.
+	 *
+	 * @param x int specifying x location on the board
+	 * @param y int specifying y location on the board
+	 * @return a Tile view onto x, y, or null if x, y is off the board
+	 */
+	public Tile getTile(int x, int y) {
+		if (x < 0 || x >= size || y < 0 || y >= size)
+			return null;
+		return new Tile(this, y * size + x);
+	}
+
+	/**
+	 * Set the terrain and resource of the tile at x, y. Used while building a
+	 * map, before any city or unit exists.
+	 *
+	 * @param x        int specifying x location on the board
+	 * @param y        int specifying y location on the board
+	 * @param type     terrain type of the tile
+	 * @param resource resource name ("wheat", "horse", "iron") or "" for none
+	 */
+	public void setTile(int x, int y, Tile.terrainTypes type, String resource) {
+		int i = y * size + x;
+		setTileAt(i, (byte) type.ordinal(), resourceId(resource));
+		dirty.set(i);
+		changed.set(i);
+	}
+
+	/**
+	 * Get the index of every unit and city on the board by position.
+	 *
+	 * @return the board's SpatialIndex
+	 */
+	public SpatialIndex getSpatialIndex() {
+		return index;
+	}
+
+	/**
+	 * Translate a packed terrain id back into its terrain type.
+	 *
+	 * @param id terrain id, as stored by the board
+	 * @return the terrain type with that ordinal
+	 * @throws IllegalArgumentException if there's no such terrain type
+	 */
+	public static Tile.terrainTypes terrainOf(int id) {
+		if (id < 0 || id >= TERRAINS.length)
+			throw new IllegalArgumentException("unknown terrain id: " + id);
+		return TERRAINS[id];
+	}
+
+	/**
+	 * Translate a packed resource id back into its name.
+	 *
+	 * @param id resource id, as stored by the board
+	 * @return resource name ("wheat", "horse", "iron") or "" for none
+	 * @throws IllegalArgumentException if there's no such resource
+	 */
+	public static String resourceOf(int id) {
+		if (id < 0 || id >= RESOURCES.length)
+			throw new IllegalArgumentException("unknown resource id: " + id);
+		return RESOURCES[id];
+	}
+
+	/**
+	 * Translate a resource name into its packed id.
+	 *
+	 * @param resource resource name, or "" for none
+	 * @return the id of the resource in RESOURCES
+	 * @throws IllegalArgumentException if the resource is unknown
+	 */
+	static byte resourceId(String resource) {
+		for (int r = 0; r < RESOURCES.length; r++) {
+			if (RESOURCES[r].equals(resource))
+				return (byte) r;
+		}
+		throw new IllegalArgumentException("unknown resource type: " + resource);
+	}
+
+	/**
+	 * Get the movement modifier of the tile at x, y without creating a Tile view.
+	 * x, y must be on the board.
+	 *
+	 * @param x int specifying x location on the board
+	 * @param y int specifying y location on the board
+	 * @return int representing terrain bonus to be added to unit movement value
+	 */
+	public int getMovementModifier(int x, int y) {
+		return movementModifierAt(y * size + x);
+	}
+
+	/**
+	 * Get the unit on the tile at x, y without creating a Tile view. x, y must be
+	 * on the board.
+	 *
+	 * @param x int specifying x location on the board
+	 * @param y int specifying y location on the board
+	 * @return Unit on the tile, or null if there is none
+	 */
+	public Unit getUnit(int x, int y) {
+		return unitAt(y * size + x);
+	}
+
+	/**
+	 * Get the city standing on the tile at x, y without creating a Tile view.
+	 * x, y must be on the board.
+	 *
+	 * @param x int specifying x location on the board
+	 * @param y int specifying y location on the board
+	 * @return City on the tile, or null if the tile isn't a city tile
+	 */
+	public City getCity(int x, int y) {
+		int i = y * size + x;
+		if ((flagsAt(i) & FLAG_CITY) == 0)
+			return null;
+		return ownerCityAt(i);
+	}
+
+	/**
+	 * Get the city that owns the tile at x, y without creating a Tile view. x, y
+	 * must be on the board.
+	 *
+	 * @param x int specifying x location on the board
+	 * @param y int specifying y location on the board
+	 * @return City whose control radius covers the tile, or null if none
+	 */
+	public City getOwnerCity(int x, int y) {
+		return ownerCityAt(y * size + x);
+	}
+
+	// raw per-tile storage; everything else reads and writes tiles through these
+
+	byte terrainIdAt(int i) {
+		return terrain[i];
+	}
+
+	byte resourceIdAt(int i) {
+		return resource[i];
+	}
+
+	void setTileAt(int i, byte terrainId, byte resourceId) {
+		terrain[i] = terrainId;
+		resource[i] = resourceId;
+	}
+
+	byte flagsAt(int i) {
+		return flags[i];
+	}
+
+	void setFlagsAt(int i, byte f) {
+		flags[i] = f;
+	}
+
+	int unitIdAt(int i) {
+		return unit[i];
+	}
+
+	void setUnitIdAt(int i, int id) {
+		unit[i] = id;
+	}
+
+	int ownerCityIdAt(int i) {
+		return ownerCity[i];
+	}
+
+	void setOwnerCityIdAt(int i, int id) {
+		ownerCity[i] = id;
+	}
+
+	Tile.terrainTypes terrainAt(int i) {
+		return TERRAINS[terrainIdAt(i)];
+	}
+
+	int movementModifierAt(int i) {
+		if ((flagsAt(i) & FLAG_SETTLED) != 0)
+			return 0;
+		return MOVEMENT[terrainIdAt(i)];
+	}
+
+	double attackModifierAt(int i) {
+		if ((flagsAt(i) & FLAG_SETTLED) != 0)
+			return 1.25;
+		return ATTACK[terrainIdAt(i)];
+	}
+
+	Unit unitAt(int i) {
+		return (Unit) units.get(unitIdAt(i));
+	}
+
+	void setUnitAt(int i, Unit u) {
+		dirty.set(i);
+		changed.set(i);
+		int old = unitIdAt(i);
+		if (old != 0) {
+			index.removeUnit((Unit) units.get(old), i % size, i / size);
+			units.release(old);
+		}
+		if (u == null) {
+			setUnitIdAt(i, 0);
+			return;
+		}
+		u.boardId = units.acquire(u.boardId, u);
+		setUnitIdAt(i, u.boardId);
+		index.addUnit(u, i % size, i / size);
+	}
+
+	City ownerCityAt(int i) {
+		return (City) cities.get(ownerCityIdAt(i));
+	}
+
+	void setOwnerCityAt(int i, City c) {
+		dirty.set(i);
+		changed.set(i);
+		int old = ownerCityIdAt(i);
+		if (old != 0)
+			cities.release(old);
+		if (c == null) {
+			setOwnerCityIdAt(i, 0);
+			return;
+		}
+		c.boardId = cities.acquire(c.boardId, c);
+		setOwnerCityIdAt(i, c.boardId);
+	}
+
+	/**
+	 * Make the tile a city tile of c. City tiles move at no cost and give an
+	 * attack bonus, even after the city is gone.
+	 */
+	void foundCityAt(int i, City c) {
+		setOwnerCityAt(i, c);
+		setFlagsAt(i, (byte) (flagsAt(i) | FLAG_CITY | FLAG_SETTLED));
+		index.addCity(c, i % size, i / size);
+	}
+
+	void destroyCityAt(int i) {
+		if ((flagsAt(i) & FLAG_CITY) != 0) {
+			index.removeCity(ownerCityAt(i), i % size, i / size);
+			setFlagsAt(i, (byte) (flagsAt(i) & ~FLAG_CITY));
+		}
+		setOwnerCityAt(i, null);
+	}
+
+	boolean canSee(int i, Player player) {
+		BitSet seen = revealed.get(player);
+		return seen != null && seen.get(i);
+	}
+
+	void reveal(int i, Player player) {
+		getRevealed(player).set(i);
+	}
+
+	/**
+	 * Get the set of tiles a player has revealed, one bit per tile index
+	 * (y * size + x). The returned set is live; treat it as read-only.
+	 *
+	 * @param player the player whose fog of war to retrieve
+	 * @return BitSet of every tile the player can see
+	 */
+	public BitSet getRevealed(Player player) {
+		BitSet seen = revealed.get(player);
+		if (seen == null) {
+			seen = new BitSet(size * size);
+			revealed.put(player, seen);
+		}
+		return seen;
+	}
+
+	/**
+	 * Reveal every tile within radius of x, y (a square, clipped to the board)
+	 * to a player. Each row of the square is set as a single bit range, so this
+	 * works a word at a time rather than a tile at a time.
+	 *
+	 * @param player the player to reveal tiles to
+	 * @param x      x location of the center of the area
+	 * @param y      y location of the center of the area
+	 * @param radius number of tiles out from the center to reveal
+	 */
+	public void revealArea(Player player, int x, int y, int radius) {
+		BitSet seen = getRevealed(player);
+		int left = Math.max(x - radius, 0);
+		int right = Math.min(x + radius, size - 1);
+		if (left > right)
+			return;
+		for (int row = Math.max(y - radius, 0); row <= Math.min(y + radius, size - 1); row++) {
+			seen.set(row * size + left, row * size + right + 1);
+		}
+	}
+
+	/**
+	 * Get the number of bytes writeTo() writes.
+	 *
+	 * @return size of the packed tile arrays in bytes
+	 */
+	public int saveBytes() {
+		long bytes = 4 + (long) size * size * (3 + 4 + 4);
+		if (bytes > Integer.MAX_VALUE)
+			throw new IllegalStateException("a size " + size + " board is too large to save in one buffer");
+		return (int) bytes;
+	}
+
+	/**
+	 * Write every tile array to a save buffer. Units and cities are written as
+	 * their registry ids (see idOf()); bind() hooks the ids back up to the loaded
+	 * entities.
+	 *
+	 * @param out buffer with at least saveBytes() remaining
+	 */
+	public void writeTo(ByteBuffer out) {
+		out.putInt(size);
+		out.put(terrain);
+		out.put(resource);
+		out.put(flags);
+		out.asIntBuffer().put(ownerCity).put(unit);
+		out.position(out.position() + 8 * ownerCity.length);
+	}
+
+	/**
+	 * Read tile arrays written by writeTo(). Units and cities are left unbound
+	 * until bind() is called.
+	 *
+	 * @param in buffer positioned at the tiles
+	 * @return the restored store
+	 */
+	public static TileStore readFrom(ByteBuffer in) {
+		TileStore store = new TileStore(in.getInt());
+		in.get(store.terrain);
+		in.get(store.resource);
+		in.get(store.flags);
+		in.asIntBuffer().get(store.ownerCity).get(store.unit);
+		in.position(in.position() + 8 * store.ownerCity.length);
+		return store;
+	}
+
+	/**
+	 * Write the map itself (terrain ids, then resource ids, in tile index order)
+	 * with no cities, units or fog. Used by the binary map format.
+	 *
+	 * @param out buffer with at least 2 * size * size bytes remaining
+	 */
+	public void writeMapTo(ByteBuffer out) {
+		out.put(terrain);
+		out.put(resource);
+	}
+
+	/**
+	 * Fill in the terrain and resources of every tile from what writeMapTo()
+	 * wrote, as two bulk copies.
+	 *
+	 * @param in buffer positioned at the map
+	 * @throws IllegalArgumentException if a terrain or resource id is unknown
+	 */
+	public void readMapFrom(ByteBuffer in) {
+		in.get(terrain);
+		in.get(resource);
+		for (int i = 0; i < terrain.length; i++) {
+			if (terrain[i] < 0 || terrain[i] >= TERRAINS.length || resource[i] < 0
+					|| resource[i] >= RESOURCES.length)
+				throw new IllegalArgumentException("unknown terrain or resource on tile " + i);
+		}
+		markAllChanged();
+	}
+
+	/**
+	 * Mark every tile as changed since the last save.
+	 */
+	void markAllChanged() {
+		dirty.set(0, size * size);
+		changed.set(0, size * size);
+	}
+
+	/**
+	 * Get the number of bytes writeChangesTo() writes.
+	 *
+	 * @return size of the tiles changed since the last save in bytes
+	 */
+	public int changeBytes() {
+		return 4 + dirty.cardinality() * CHANGE_BYTES;
+	}
+
+	/**
+	 * Write every tile changed since the last save (the index and everything
+	 * writeTo() writes for it) and mark them saved. Fog of war isn't included.
+	 *
+	 * @param out buffer with at least changeBytes() remaining
+	 */
+	public void writeChangesTo(ByteBuffer out) {
+		out.putInt(dirty.cardinality());
+		for (int i = dirty.nextSetBit(0); i >= 0; i = dirty.nextSetBit(i + 1)) {
+			out.putInt(i);
+			out.put(terrainIdAt(i));
+			out.put(resourceIdAt(i));
+			out.put(flagsAt(i));
+			out.putInt(ownerCityIdAt(i));
+			out.putInt(unitIdAt(i));
+		}
+		dirty.clear();
+	}
+
+	/**
+	 * Apply tile changes written by writeChangesTo() to a store read by
+	 * readFrom(), before bind() is called.
+	 *
+	 * @param in buffer positioned at the changes
+	 * @throws IllegalArgumentException if a change is for a tile off the board
+	 */
+	public void readChangesFrom(ByteBuffer in) {
+		int count = in.getInt();
+		for (int c = 0; c < count; c++) {
+			int i = in.getInt();
+			if (i < 0 || i >= size * size)
+				throw new IllegalArgumentException("change to tile " + i + " is off the board");
+			setTileAt(i, in.get(), in.get());
+			setFlagsAt(i, in.get());
+			setOwnerCityIdAt(i, in.getInt());
+			setUnitIdAt(i, in.getInt());
+		}
+	}
+
+	/**
+	 * Get the tiles whose terrain, city or unit changed since the last call, and
+	 * start collecting again. Separate from what's changed since the last save.
+	 *
+	 * @return BitSet of the changed tile indexes (y * size + x), owned by the
+	 *         caller
+	 */
+	public BitSet takeChangedTiles() {
+		BitSet taken = (BitSet) changed.clone();
+		changed.clear();
+		return taken;
+	}
+
+	/**
+	 * Mark a tile as changed for the next takeChangedTiles() without changing
+	 * what's saved, for when something on it changed that the tile doesn't
+	 * store, like its unit's HP.
+	 *
+	 * @param x x location of the tile
+	 * @param y y location of the tile
+	 */
+	public void markChanged(int x, int y) {
+		changed.set(y * size + x);
+	}
+
+	/**
+	 * Mark every tile as saved.
+	 */
+	public void clearChanges() {
+		dirty.clear();
+	}
+
+	/**
+	 * Get the id a unit's tile refers to it by, as written by writeTo().
+	 *
+	 * @param u a unit on this store's board
+	 * @return the unit's registry id, 0 if it isn't on the board
+	 */
+	public int idOf(Unit u) {
+		return u.boardId;
+	}
+
+	/**
+	 * Get the id tiles refer to a city by, as written by writeTo().
+	 *
+	 * @param c a city on this store's board
+	 * @return the city's registry id, 0 if no tile refers to it
+	 */
+	public int idOf(City c) {
+		return c.boardId;
+	}
+
+	/**
+	 * Point the ids read by readFrom() back at the loaded units and cities, and
+	 * fill in the spatial index.
+	 *
+	 * @param unitsById units by the id they were saved with
+	 * @param citiesById cities by the id they were saved with
+	 * @throws IllegalArgumentException if a tile refers to an id that isn't given
+	 */
+	public void bind(Map<Integer, Unit> unitsById, Map<Integer, City> citiesById) {
+		for (int i = 0; i < size * size; i++)
+			bindTile(i, unitsById, citiesById);
+	}
+
+	/**
+	 * Bind the unit and city one tile refers to; see bind().
+	 */
+	void bindTile(int i, Map<Integer, Unit> unitsById, Map<Integer, City> citiesById) {
+		int unitId = unitIdAt(i);
+		if (unitId != 0) {
+			Unit u = unitsById.get(unitId);
+			if (u == null)
+				throw new IllegalArgumentException("tile refers to missing unit " + unitId);
+			u.boardId = units.acquire(unitId, u);
+			index.addUnit(u, i % size, i / size);
+		}
+		int cityId = ownerCityIdAt(i);
+		if (cityId != 0) {
+			City c = citiesById.get(cityId);
+			if (c == null)
+				throw new IllegalArgumentException("tile refers to missing city " + cityId);
+			c.boardId = cities.acquire(cityId, c);
+			if ((flagsAt(i) & FLAG_CITY) != 0)
+				index.addCity(c, i % size, i / size);
+		}
+	}
+
+	/**
+	 * Id registry for the units or cities referenced by a store's tiles. Ids are
+	 * handed out once and never reused; a slot is cleared as soon as no tile
+	 * refers to it any more, so dead units don't stay reachable.
+	 */
+	private static class Registry implements Serializable {
+		private Object[] slots = new Object[16];
+		private int[] refs = new int[16];
+		private int next = 1;
+
+		/**
+		 * Take a tile reference to an entity.
+		 *
+		 * @param id     the entity's current id, or 0 if it has none yet
+		 * @param entity the unit or city being referenced
+		 * @return the entity's id
+		 */
+		int acquire(int id, Object entity) {
+			if (id == 0)
+				id = next++;
+			if (id >= slots.length) {
+				int len = Math.max(slots.length * 2, id + 1);
+				slots = Arrays.copyOf(slots, len);
+				refs = Arrays.copyOf(refs, len);
+			}
+			next = Math.max(next, id + 1);
+			slots[id] = entity;
+			refs[id]++;
+			return id;
+		}
+
+		void release(int id) {
+			if (--refs[id] == 0)
+				slots[id] = null;
+		}
+
+		Object get(int id) {
+			return id == 0 ? null : slots[id];
+		}
+	}
+
+}
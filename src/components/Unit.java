@@ -2,6 +2,7 @@ package components;
 
 import java.awt.Point;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -26,6 +27,12 @@ public class Unit implements Serializable {
 		unitCosts.put("Militia", 100);
 	}
 
+	/** every unit type, in the order their ids are saved as; only ever append */
+	static final String[] TYPES = { "Scout", "Settler", "Warrior", "Cavalry", "Swordsman", "Militia" };
+
+	/** number of bytes writeTo() writes */
+	public static final int SAVE_BYTES = 1 + 4 + 4 + 8 + 4;
+
 	protected final Player owner;
 	protected Point coord;
 
@@ -37,6 +44,10 @@ public class Unit implements Serializable {
 	protected double attackValue;
 	protected int sight;
 
+	// id of this unit in the TileStore registry of the board it stands on
+	int boardId;
+	// changed since the last save (see SaveJournal)
+	private boolean dirty = true;
 
 	/**
 	 * Make a new unit for the specified player at the city coordinates
@@ -62,6 +73,7 @@ public class Unit implements Serializable {
 		this.remainingMovement -= cost;
 		this.coord.x = x;
 		this.coord.y = y;
+		dirty = true;
 	}
 
 	/**
@@ -124,6 +136,9 @@ public class Unit implements Serializable {
 	 * Heal this unit by 5% of its max health
 	 */
 	public void healUnit() {
+		if (this.HP >= this.maxHP)
+			return;
+		dirty = true;
 		this.HP += this.maxHP / 20;
 		if (this.HP >= this.maxHP)
 			this.HP = maxHP;
@@ -137,6 +152,7 @@ public class Unit implements Serializable {
 	 */
 	public void takeAttack(double damage) {
 		this.HP -= damage;
+		dirty = true;
 	}
 
 
@@ -151,10 +167,23 @@ public class Unit implements Serializable {
 	}
 
 
+	/**
+	 * Retrieve the movement this unit gets at the start of each turn
+	 *
+	 * @return int representing number of standard tiles the unit can move over
+	 *         in a fresh turn
+	 */
+	public int getMaxMovement() {
+		return this.maxMovement;
+	}
+
+
 	/**
 	 * Unit is done moving, reset its movement for next turn.
 	 */
 	public void resetMovement() {
+		if (this.remainingMovement != this.maxMovement)
+			dirty = true;
 		this.remainingMovement = this.maxMovement;
 	}
 
@@ -188,4 +217,92 @@ public class Unit implements Serializable {
 		return this.sight;
 	}
 
+	/**
+	 * Check whether anything writeTo() writes has changed since clearDirty() was
+	 * last called. New units start out dirty.
+	 *
+	 * @return true if the unit needs saving
+	 */
+	public boolean isDirty() {
+		return dirty;
+	}
+
+	/**
+	 * Mark the unit as saved.
+	 */
+	public void clearDirty() {
+		dirty = false;
+	}
+
+	/**
+	 * Make a new unit of the given type.
+	 *
+	 * @param unitType name of the unit type, e.g. "Warrior"
+	 * @param owner    player that owns the unit
+	 * @param coord    location the unit will appear
+	 * @return the new Unit, or null if there's no such unit type
+	 */
+	public static Unit create(String unitType, Player owner, Point coord) {
+		if (unitType.equals("Settler"))
+			return new Settler(owner, coord);
+		else if (unitType.equals("Scout"))
+			return new Scout(owner, coord);
+		else if (unitType.equals("Warrior"))
+			return new Warrior(owner, coord);
+		else if (unitType.equals("Militia"))
+			return new Militia(owner, coord);
+		else if (unitType.equals("Cavalry"))
+			return new Cavalry(owner, coord);
+		else if (unitType.equals("Swordsman"))
+			return new Swordsman(owner, coord);
+		return null;
+	}
+
+	/**
+	 * Write this unit's type, location and the stats that change during a game
+	 * to a save buffer. Everything else comes from the type.
+	 *
+	 * @param out buffer with at least SAVE_BYTES remaining
+	 */
+	public void writeTo(ByteBuffer out) {
+		out.put(typeId(label));
+		out.putInt(coord.x);
+		out.putInt(coord.y);
+		out.putDouble(HP);
+		out.putInt(remainingMovement);
+	}
+
+	/**
+	 * Read a unit written by writeTo().
+	 *
+	 * @param in    buffer positioned at the unit
+	 * @param owner player that owns the unit
+	 * @return the restored Unit
+	 * @throws IllegalArgumentException if the saved unit type is unknown
+	 */
+	public static Unit readFrom(ByteBuffer in, Player owner) {
+		int type = in.get();
+		if (type < 0 || type >= TYPES.length)
+			throw new IllegalArgumentException("unknown unit type id: " + type);
+		Unit unit = create(TYPES[type], owner, new Point(in.getInt(), in.getInt()));
+		unit.HP = in.getDouble();
+		unit.remainingMovement = in.getInt();
+		return unit;
+	}
+
+	/**
+	 * Translate a unit type name into its saved id.
+	 *
+	 * @param unitType name of the unit type
+	 * @return index of the type in TYPES
+	 * @throws IllegalArgumentException if the type is unknown
+	 */
+	static byte typeId(String unitType) {
+		for (int t = 0; t < TYPES.length; t++) {
+			if (TYPES[t].equals(unitType))
+				return (byte) t;
+		}
+		throw new IllegalArgumentException("unknown unit type: " + unitType);
+	}
+
 }
@@ -0,0 +1,266 @@
+package controllers;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import models.CivModel;
+import models.SaveFile;
+import models.SaveJournal;
+
+/**
+ * Saves the game every few rounds without holding up play.
+ *
+ * <p>
+ * At the end of a turn the model is encoded into in-memory save buffers (see
+ * SaveFile.encode()), which is just a copy of its packed state, so it's a
+ * consistent snapshot no matter what play does next. Writing the snapshot out
+ * happens on a background thread: into a temporary file that is then renamed
+ * over the save, so a slot always holds a complete save. Saves rotate through a
+ * fixed number of slots, so a bad save never replaces the only good one. If the
+ * previous save is still being written when the next one is due, the new one
+ * is skipped rather than queued.
+ *
+ * <p>
+ * Given a SaveJournal instead of slots, each save records only what changed
+ * since the last one, appended to the journal behind a periodic checkpoint.
+ *
+ * @author Connie Sun, Ryan Smith, Luke Hankins, Tim Gavlick
+ */
+public class Autosave {
+
+	private final String basePath;
+	private final int everyRounds;
+	private final int slots;
+	private final SaveJournal journal;
+	private final ExecutorService writer;
+	private final AtomicBoolean writing = new AtomicBoolean();
+
+	private int lastRound;
+	private int nextSlot;
+	private Future<?> pending;
+
+	// metrics, written by the writer thread
+	private final AtomicInteger saves = new AtomicInteger();
+	private final AtomicInteger skipped = new AtomicInteger();
+	private final AtomicInteger failures = new AtomicInteger();
+	private volatile long lastSnapshotNanos;
+	private volatile long lastWriteNanos;
+	private volatile long lastBytes;
+	private volatile String lastPath;
+	private volatile IOException lastError;
+
+	/**
+	 * Set up autosaving.
+	 *
+	 * @param basePath    path the slot files are named after; slot n is
+	 *                    basePath + ".autosave" + n
+	 * @param everyRounds number of rounds between saves
+	 * @param slots       number of slots to rotate through
+	 */
+	public Autosave(String basePath, int everyRounds, int slots) {
+		this(basePath, everyRounds, slots, null);
+	}
+
+	/**
+	 * Set up autosaving to a journal of deltas.
+	 *
+	 * @param journal     the journal to record saves in; its checkpoint path is
+	 *                    the only slot
+	 * @param everyRounds number of rounds between saves
+	 */
+	public Autosave(SaveJournal journal, int everyRounds) {
+		this(journal.getPath(), everyRounds, 1, journal);
+	}
+
+	private Autosave(String basePath, int everyRounds, int slots, SaveJournal journal) {
+		if (everyRounds < 1 || slots < 1)
+			throw new IllegalArgumentException("autosave needs at least one round between saves and one slot");
+		this.basePath = basePath;
+		this.everyRounds = everyRounds;
+		this.slots = slots;
+		this.journal = journal;
+		this.writer = Executors.newSingleThreadExecutor(r -> {
+			Thread t = new Thread(r, "autosave");
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+	/**
+	 * Called at the end of every turn; saves if enough rounds have gone by since
+	 * the last save.
+	 *
+	 * @param model the game being played
+	 */
+	public void turnEnded(CivModel model) {
+		if (model.roundNumber() - lastRound < everyRounds)
+			return;
+		if (save(model))
+			lastRound = model.roundNumber();
+	}
+
+	/**
+	 * Snapshot the game now and write it to the next slot in the background.
+	 *
+	 * @param model the game to save
+	 * @return true if the save was started, false if it was skipped because the
+	 *         previous one is still being written
+	 */
+	public boolean save(CivModel model) {
+		if (!writing.compareAndSet(false, true)) {
+			skipped.incrementAndGet();
+			return false;
+		}
+		long start = System.nanoTime();
+		Write write;
+		if (journal != null) {
+			write = journal.record(model)::write;
+		} else {
+			ByteBuffer[] snapshot = SaveFile.encode(model);
+			String slotPath = getSlotPath(nextSlot);
+			write = () -> SaveFile.write(snapshot, slotPath);
+		}
+		lastSnapshotNanos = System.nanoTime() - start;
+		String path = getSlotPath(nextSlot);
+		nextSlot = (nextSlot + 1) % slots;
+		pending = writer.submit(() -> {
+			try {
+				long writeStart = System.nanoTime();
+				lastBytes = write.write();
+				lastWriteNanos = System.nanoTime() - writeStart;
+				lastPath = path;
+				saves.incrementAndGet();
+			} catch (IOException e) {
+				lastError = e;
+				failures.incrementAndGet();
+			} finally {
+				writing.set(false);
+			}
+		});
+		return true;
+	}
+
+	/**
+	 * Wait for the save being written, if any, to finish.
+	 */
+	public void flush() {
+		if (pending == null)
+			return;
+		try {
+			pending.get();
+		} catch (ExecutionException e) {
+			// the write task catches its own errors
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Wait for any save being written to finish and stop the writer thread.
+	 */
+	public void close() {
+		writer.shutdown();
+		try {
+			writer.awaitTermination(10, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Stop autosaving and delete every slot's save, e.g. once the game is over.
+	 */
+	public void deleteSaves() {
+		close();
+		for (int slot = 0; slot < slots; slot++)
+			new File(getSlotPath(slot)).delete();
+		if (journal != null)
+			new File(SaveJournal.journalPath(journal.getPath())).delete();
+	}
+
+	/**
+	 * Get the file a slot is saved to.
+	 *
+	 * @param slot slot number, 0 up to the number of slots
+	 * @return path of the slot's save file (the checkpoint, for a journal)
+	 */
+	public String getSlotPath(int slot) {
+		if (journal != null)
+			return basePath;
+		return basePath + ".autosave" + slot;
+	}
+
+	/**
+	 * @return number of saves written successfully
+	 */
+	public int getSaveCount() {
+		return saves.get();
+	}
+
+	/**
+	 * @return number of saves skipped because the previous one was still being
+	 *         written
+	 */
+	public int getSkippedCount() {
+		return skipped.get();
+	}
+
+	/**
+	 * @return number of saves that failed to write
+	 */
+	public int getFailureCount() {
+		return failures.get();
+	}
+
+	/**
+	 * @return how long taking the last snapshot held up play, in nanoseconds
+	 */
+	public long getLastSnapshotNanos() {
+		return lastSnapshotNanos;
+	}
+
+	/**
+	 * @return how long writing the last successful save took on the writer
+	 *         thread, in nanoseconds
+	 */
+	public long getLastWriteNanos() {
+		return lastWriteNanos;
+	}
+
+	/**
+	 * @return size of the last successful save in bytes
+	 */
+	public long getLastBytes() {
+		return lastBytes;
+	}
+
+	/**
+	 * @return path of the last successful save, or null if there hasn't been one
+	 */
+	public String getLastPath() {
+		return lastPath;
+	}
+
+	/**
+	 * @return the error the last failed save threw, or null if none has failed
+	 */
+	public IOException getLastError() {
+		return lastError;
+	}
+
+	/**
+	 * Writes a snapshot out, returning the number of bytes written.
+	 */
+	private interface Write {
+		long write() throws IOException;
+	}
+
+}
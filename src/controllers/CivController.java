@@ -3,13 +3,18 @@ package controllers;
 import java.awt.Point;
 import java.util.ArrayList;
 import java.util.HashSet;
-import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
 
 import components.City;
 import components.Settler;
 import components.Tile;
 import components.Unit;
+import models.CivBoard;
 import models.CivModel;
+import models.EventBus;
+import models.GameEvent;
 import models.Player;
 
 /**
@@ -22,8 +27,19 @@ import models.Player;
  */
 public class CivController {
 
+	/** most moves a unit can have, one onto each neighbouring tile */
+	public static final int MAX_MOVES = 8;
+
 	private final CivModel model;
+	private final EventBus events;
+	private final PathFinder pathFinder;
+	private final FlowField flowField;
+	private boolean flowFieldReady;
+	private final int[] moves = new int[MAX_MOVES]; // scratch buffer for the computer's move queries
+	private final Random random;
 	private Player curPlayer;
+	private Autosave autosave;
+	private Consumer<GameEvent.TurnEnded> autosaveListener;
 
 	/**
 	 * Constructor for controller
@@ -33,6 +49,10 @@ public class CivController {
 	 */
 	public CivController(CivModel model) {
 		this.model = model;
+		this.events = model.getEvents();
+		this.pathFinder = new PathFinder(model);
+		this.flowField = new FlowField(model);
+		this.random = model.getRandom();
 		curPlayer = model.getCurPlayer();
 	}
 
@@ -52,6 +72,7 @@ public class CivController {
 			Settler settler = new Settler(model.getCurPlayer(), new Point(coord[0], coord[1]));
 			model.getTileAt(coord[0], coord[1]).setUnit(settler);
 			model.getCurPlayer().addUnit(settler);
+			events.publish(new GameEvent.UnitCreated(settler, coord[0], coord[1]));
 			revealTiles(settler);
 			model.nextPlayer();
 		}
@@ -77,23 +98,68 @@ public class CivController {
 	 * events for a player turn
 	 *
 	 * All Units have their movement reset, all Cities owned by a Player are
-	 * incremented and updated. Do computer turn if it is the computer's turn.
-	 * 
-	 * @param player
+	 * incremented and updated. If it is the computer's turn, the computer plays it
+	 * and play carries on through every following computer turn until it is a
+	 * human's turn again or the game is over. One ModelChanged event is published
+	 * when it's all done.
 	 */
 	public void startTurn() {
+		model.beginBatch();
+		try {
+			beginTurn();
+			while (!curPlayer.isHuman() && !gameOver()) {
+				computerTurn();
+				if (gameOver())
+					break;
+				passTurn();
+				beginTurn();
+			}
+			model.changeAndNotify();
+		} finally {
+			model.endBatch();
+		}
+	}
+
+	/**
+	 * Plays a single turn for the current player, who must be a computer, then
+	 * passes play on to the next player. Unlike startTurn(), this never carries on
+	 * into the following turns, so a game with no humans can be stepped through
+	 * (and stopped) one turn at a time.
+	 */
+	public void playComputerTurn() {
+		model.beginBatch();
+		try {
+			beginTurn();
+			computerTurn();
+			if (!gameOver())
+				passTurn();
+		} finally {
+			model.endBatch();
+		}
+	}
+
+	/**
+	 * Do the "housekeeping" for the start of the model's current player's turn:
+	 * reset and heal units, increment and update cities. Tiles whose unit or
+	 * city healed are marked changed, so the next ModelChange includes them.
+	 */
+	private void beginTurn() {
 		curPlayer = model.getCurPlayer();
+		CivBoard board = model.getCivBoard();
 		for (Unit u : curPlayer.getUnits()) {
 			u.resetMovement();
+			double hp = u.getHP();
 			u.healUnit();
+			if (u.getHP() != hp)
+				board.markChanged(u.getX(), u.getY());
 		}
 		for (City c : curPlayer.getCities()) {
+			double hp = c.getRemainingHP();
 			c.cityIncrement();
 			updateCity(c);
+			if (c.getRemainingHP() != hp)
+				board.markChanged(c.getX(), c.getY());
 		}
-		if (!curPlayer.isHuman())
-			computerTurn();
-		model.changeAndNotify();
 	}
 
 	/**
@@ -107,9 +173,25 @@ public class CivController {
 			model.changeAndNotify();
 			return;
 		}
+		model.beginBatch();
+		try {
+			passTurn();
+			startTurn();
+			model.changeAndNotify();
+		} finally {
+			model.endBatch();
+		}
+	}
+
+	/**
+	 * End the current player's turn: move the model on to the next player and
+	 * publish a TurnEnded event for the player whose turn it was.
+	 */
+	private void passTurn() {
+		Player ended = model.getCurPlayer();
+		int round = model.roundNumber();
 		model.nextPlayer();
-		startTurn();
-		model.changeAndNotify();
+		events.publish(new GameEvent.TurnEnded(ended, round));
 	}
 
 	/**
@@ -136,34 +218,40 @@ public class CivController {
 	 * The computer loops through all of its cities and does city actions, then
 	 * loops through all its units and does unit actions. Settlers found cities, the
 	 * first few units stay by their origin city and defend it, and the rest of the
-	 * units move towards enemy cities to attack them. Calls endTurn() automatically
-	 * when all actions are completed.
+	 * units move towards enemy cities to attack them. Does not end the turn;
+	 * startTurn() and playComputerTurn() move on to the next player. All the
+	 * moves of the turn reach listeners as one ModelChanged event.
 	 */
 	public void computerTurn() {
-		for (City c : curPlayer.getCities()) {
-			computerCityActions(c);
-		}
-		int firstFew = 2;
-		int i = 0;
-		while (i < curPlayer.getUnits().size()) {
-			int oldSize = curPlayer.getUnits().size();
-			Unit u = curPlayer.getUnits().get(i);
-			if (u instanceof Settler) {
-				computerSettlerActions((Settler) u);
+		model.beginBatch();
+		try {
+			flowFieldReady = false; // cities may have changed since the last computer turn
+			for (City c : curPlayer.getCities()) {
+				computerCityActions(c);
 			}
-			// these ones are defending the city
-			else if (firstFew > 0) {
-				computerDefenderActions(u);
-				firstFew--;
-			} else {
-				// move towards enemy city/attack it
-				computerAttackerActions(u);
+			int firstFew = 2;
+			int i = 0;
+			while (i < curPlayer.getUnits().size()) {
+				int oldSize = curPlayer.getUnits().size();
+				Unit u = curPlayer.getUnits().get(i);
+				if (u instanceof Settler) {
+					computerSettlerActions((Settler) u);
+				}
+				// these ones are defending the city
+				else if (firstFew > 0) {
+					computerDefenderActions(u);
+					firstFew--;
+				} else {
+					// move towards enemy city/attack it
+					computerAttackerActions(u);
+				}
+				if (curPlayer.getUnits().size() == oldSize)
+					i++;
 			}
-			if (curPlayer.getUnits().size() == oldSize)
-				i++;
+			model.changeAndNotify();
+		} finally {
+			model.endBatch();
 		}
-		model.changeAndNotify();
-		endTurn();
 	}
 
 	/**
@@ -179,18 +267,21 @@ public class CivController {
 	private void computerSettlerActions(Settler s) {
 		boolean founded = foundCity(s.getX(), s.getY()); // try to found a city
 		if (!founded) {
-			HashSet<int[]> validMoves = getValidMoves(s);
-			boolean moved = true;
-			while (validMoves.size() != 0 && moved) { // continue moving while able
-				moved = false;
-				for (int[] move : validMoves) { // random set of moves
-					if (getTileAt(move[0], move[1]).getUnit() == null) { // don't want to attack
-						moveUnit(s, move[0], move[1]);
-						moved = true;
+			CivBoard board = model.getCivBoard();
+			int size = board.getSize();
+			int count;
+			while ((count = getValidMoves(s, moves)) != 0) { // continue moving while able
+				int pick = -1;
+				int start = random.nextInt(count); // random move
+				for (int k = 0; k < count; k++) {
+					int move = moves[(start + k) % count];
+					if (board.getUnit(move % size, move / size) == null) { // don't want to attack
+						pick = move;
 						break;
 					}
 				}
-				validMoves = getValidMoves(s);
+				if (pick == -1 || !moveUnit(s, pick % size, pick / size))
+					return;
 			}
 		}
 	}
@@ -206,146 +297,131 @@ public class CivController {
 	 * @param u a Unit owned by the computer player defending computer's city
 	 */
 	private void computerDefenderActions(Unit u) {
-		HashSet<int[]> validMoves = getValidMoves(u);
-		if (getTileAt(u.getX(), u.getY()).isCityTile()) { // if newly created unit, move out of city
-			validMoves = getValidMoves(u);
-			for (int[] move : validMoves) {
-				moveUnit(u, move[0], move[1]);
-				break;
+		CivBoard board = model.getCivBoard();
+		int size = board.getSize();
+		int count;
+		if (board.getCity(u.getX(), u.getY()) != null) { // if newly created unit, move out of city
+			count = getValidMoves(u, moves);
+			if (count != 0) {
+				int move = moves[random.nextInt(count)];
+				moveUnit(u, move % size, move / size);
 			}
 		}
 		// the unit should be no more than one tile away from the city it's defending
-		Integer[] cityCoords = new Integer[] { -1, -1 };
-		for (int i = -1; i <= 1; i++) {
-			for (int j = -1; j <= 1; j++) {
-				Tile t = getTileAt(u.getX() + i, u.getY() + j);
-				if (t != null && t.isCityTile()) {
-					cityCoords[0] = u.getX() + i;
-					cityCoords[1] = u.getY() + j;
-				}
-			}
+		int cityX = -1, cityY = -1;
+		List<City> near = model.getSpatialIndex().citiesWithin(u.getX(), u.getY(), 1);
+		if (!near.isEmpty()) {
+			cityX = near.get(0).getX();
+			cityY = near.get(0).getY();
 		}
-		validMoves = getValidMoves(u);
-		while (validMoves.size() != 0) { // continue moving while able
-			boolean moved = false;
-			for (int[] move : validMoves) {
+		while ((count = getValidMoves(u, moves)) != 0) { // continue moving while able
+			int pick = -1;
+			int start = random.nextInt(count);
+			for (int k = 0; k < count; k++) {
+				int move = moves[(start + k) % count];
+				int x = move % size, y = move / size;
 				// don't move too far away from the city
-				if (Math.abs(cityCoords[0] - move[0]) > 1 || Math.abs(cityCoords[1] - move[1]) > 1)
+				if (Math.abs(cityX - x) > 1 || Math.abs(cityY - y) > 1)
 					continue;
 				// don't move into the city
-				if (cityCoords[0] == move[0] && cityCoords[1] == move[1])
+				if (cityX == x && cityY == y)
 					continue;
-				if (getTileAt(move[0], move[1]).getUnit() != null) { // always want to attack
-					moveUnit(u, move[0], move[1]);
-					moved = true;
+				if (board.getUnit(x, y) != null) { // always want to attack
+					pick = move;
 					break;
 				}
+				if (pick == -1)
+					pick = move; // otherwise take the first good move
 			}
-			if (!moved) {
-				for (int[] move : validMoves) {
-					// don't move too far away from the city
-					if (Math.abs(cityCoords[0] - move[0]) > 1 || Math.abs(cityCoords[1] - move[1]) > 1)
-						continue;
-					// don't move into the city
-					if (cityCoords[0] == move[0] && cityCoords[1] == move[1])
-						continue;
-					moveUnit(u, move[0], move[1]); // take the first good move
-					moved = true;
-					break;
-				}
-			}
-			if (!moved)
+			if (pick == -1 || !moveUnit(u, pick % size, pick / size))
 				return;
-			validMoves = getValidMoves(u);
 		}
 	}
 
 	/**
 	 * Actions for computer units that move towards and attack enemy cities.
 	 * 
-	 * Find the closest enemy city and move towards it by calling the moveTowards()
-	 * method.
+	 * All attackers share one FlowField towards every enemy city, built the
+	 * first time an attacker acts this turn and again after any attack destroys
+	 * a city. Each step moves the unit to the
+	 * reachable neighbour closest to an enemy city, attacking the city once it
+	 * is next to it. Stops when the unit is out of movement, has attacked, or no
+	 * neighbour gets it any closer.
 	 *
 	 * @param u a Unit owned by the computer player attacking enemy city
 	 */
 	private void computerAttackerActions(Unit u) {
-		// search the entire map for the user's closest city
-		Integer[] closest = new Integer[] { -1, -1 };
-		int minDist = Integer.MAX_VALUE;
-		for (int i = 0; i < model.getSize(); i++) {
-			for (int j = 0; j < model.getSize(); j++) {
-				Tile t = getTileAt(i, j);
-				if (t.isCityTile()) {
-					City c = t.getOwnerCity();
-					if (c.getOwner() != curPlayer) {
-						int dist = Math.max(Math.abs(c.getX() - u.getX()), Math.abs(c.getY() - u.getY()));
-						if (dist < minDist) {
-							minDist = dist;
-							closest[0] = c.getX();
-							closest[1] = c.getY();
-						}
-					}
+		if (!flowFieldReady) {
+			flowField.build(curPlayer);
+			flowFieldReady = true;
+		}
+		if (!flowField.hasTargets()) // no cities left to attack
+			return;
+		int size = model.getSize();
+		int count;
+		while ((count = getValidMoves(u, moves)) != 0) {
+			int best = flowField.getDistance(u.getX(), u.getY());
+			int bestX = -1, bestY = -1;
+			for (int k = 0; k < count; k++) {
+				int x = moves[k] % size, y = moves[k] / size;
+				if (flowField.getDistance(x, y) < best) {
+					best = flowField.getDistance(x, y);
+					bestX = x;
+					bestY = y;
 				}
 			}
+			if (bestX == -1 || !moveUnit(u, bestX, bestY))
+				return;
+			if (u.getX() != bestX || u.getY() != bestY)
+				return; // attacked instead of moving, so the unit is done
 		}
-		if (closest[0] == -1) // no cities left to attack
-			return;
-		moveTowards(u, closest);
 	}
 
 	/**
-	 * Moves the unit towards the target coords by searching for the ideal move
-	 * first, then choosing any good move, and moving randomly if there is no "good"
-	 * move. If target is in range, attack target.
-	 *
-	 * If y distance to target is greater than x distance, move in the y direction,
-	 * and vice versa. If equal, move diagonally. If no move exists for these
-	 * "better" choices, choose a random move. Continue moving until the unit's
-	 * movement is fully depleted.
-	 *
-	 * @param u      the Unit to be moved
-	 * @param target Integer[] of size 2 representing the x,y target location that
-	 *               the unit is to be moved towards
+	 * "Move to" command: walk one of the current player's units along the
+	 * shortest path to x, y, as far as its remaining movement allows this turn.
+	 *
+	 * <p>
+	 * Each step goes through moveUnit(), so an enemy unit or city at the end of
+	 * (or in the way of) the path is attacked.
+	 *
+	 * @param unit the Unit to move
+	 * @param x    int of x location of the destination
+	 * @param y    int of y location of the destination
+	 * @return true if the unit made at least one move/attack, false otherwise
 	 */
-	private void moveTowards(Unit u, Integer[] target) {
-		HashSet<int[]> validMoves = getValidMoves(u);
-		while (validMoves.size() != 0) {
-			if (getTileAt(target[0], target[1]).getOwnerCity() == null)
-				return;
-			int xDiff = target[0] - u.getX();
-			int yDiff = target[1] - u.getY();
-			int priority = 0; // give x direction priority
-			if (Math.abs(yDiff) > Math.abs(xDiff))
-				priority = 1; // y diff is greater, so give y priority
-			int goodX = Integer.signum(xDiff) + u.getX(); // ideal x to go to
-			int goodY = Integer.signum(yDiff) + u.getY(); // ideal y to go to
-			boolean moved = false;
-			for (int[] move : validMoves) { // loop for the ideal move
-				if ((move[0] == target[0] && move[1] == target[1]) || // city, attack
-						move[0] == goodX && move[1] == goodY) { // ideal move
-					moveUnit(u, move[0], move[1]);
-					moved = true;
+	public boolean moveUnitTo(Unit unit, int x, int y) {
+		if (unit.getOwner() != curPlayer)
+			return false;
+		return followPath(unit, x, y);
+	}
+
+	/**
+	 * Find the shortest path for a unit to x, y and take steps along it until the
+	 * unit runs out of movement, attacks, or is stopped.
+	 *
+	 * @param u the Unit to be moved
+	 * @param x int of x location of the destination
+	 * @param y int of y location of the destination
+	 * @return true if at least one step was taken
+	 */
+	private boolean followPath(Unit u, int x, int y) {
+		int steps = pathFinder.findPath(u, x, y);
+		boolean moved = false;
+		model.beginBatch(); // one notification for the whole walk
+		try {
+			for (int i = 0; i < steps; i++) {
+				int stepX = pathFinder.getStepX(i), stepY = pathFinder.getStepY(i);
+				if (!moveUnit(u, stepX, stepY))
 					break;
-				}
-			}
-			if (!moved) { // if not moved, loop again for good move
-				for (int[] move : validMoves) {
-					if ((priority == 0 && move[0] == goodX) || (priority == 1 && move[1] == goodY)) {
-						moveUnit(u, move[0], move[1]);
-						moved = true;
-						break;
-					}
-				}
+				moved = true;
+				if (u.getX() != stepX || u.getY() != stepY)
+					break; // attacked instead of moving, so the unit is done
 			}
-			// got through all the moves and didn't move, just make a random move
-			if (!moved) {
-				Iterator<int[]> iterator = validMoves.iterator();
-				int[] move = iterator.next();
-				moveUnit(u, move[0], move[1]);
-			}
-			validMoves = getValidMoves(u);
+		} finally {
+			model.endBatch();
 		}
-
+		return moved;
 	}
 
 	/**
@@ -396,6 +472,7 @@ public class CivController {
 			moveFrom.setUnit(null); // unit gone
 			moveTo.setUnit(toMove); // successfully moves to new tile
 			toMove.move(cost + 1, newX, newY); // update costs and unit location
+			events.publish(new GameEvent.UnitMoved(toMove, oldX, oldY, newX, newY));
 			revealTiles(toMove); // reveal tiles around unit
 		}
 		model.changeAndNotify();
@@ -414,16 +491,7 @@ public class CivController {
 	 * @param unit the Unit who is revealing tiles
 	 */
 	private void revealTiles(Unit unit) {
-		int sight = unit.getSight();
-		for (int i = -sight; i <= sight; i++) {
-			for (int j = -sight; j <= sight; j++) {
-				int toRevealRow = unit.getX() + i;
-				int toRevealCol = unit.getY() + j;
-				Tile toRevealTile = getTileAt(toRevealRow, toRevealCol);
-				if (toRevealTile != null && !toRevealTile.canSeeTile(unit.getOwner()))
-					toRevealTile.revealTile(unit.getOwner());
-			}
-		}
+		model.revealArea(unit.getOwner(), unit.getX(), unit.getY(), unit.getSight());
 	}
 
 	/**
@@ -445,9 +513,12 @@ public class CivController {
 		double attack = attacker.getAttackValue();
 		attack *= attackerTile.getAttackModifier();
 		defender.takeAttack(attack);
+		events.publish(new GameEvent.UnitAttacked(attacker, attacker.getX(), attacker.getY(), defender.getX(),
+				defender.getY()));
 		if ((int) defender.getHP() <= 0) {
 			defenderTile.setUnit(null);
 			defender.getOwner().removeUnit(defender);
+			events.publish(new GameEvent.UnitDied(defender, defender.getX(), defender.getY()));
 			return !defenderTile.isCityTile();
 		}
 		double counterattack = defender.getAttackValue();
@@ -457,6 +528,7 @@ public class CivController {
 			attacker.move(attacker.getMovement(), attacker.getX(), attacker.getY());
 			curPlayer.removeUnit(attacker);
 			attackerTile.setUnit(null);
+			events.publish(new GameEvent.UnitDied(attacker, attacker.getX(), attacker.getY()));
 			return false;
 		}
 		attacker.move(attacker.getMovement(), attacker.getX(), attacker.getY()); // failed move
@@ -479,10 +551,14 @@ public class CivController {
 		double attack = attacker.getAttackValue();
 		attack *= attackerTile.getAttackModifier();
 		defender.takeAttack(attack);
+		events.publish(new GameEvent.UnitAttacked(attacker, attacker.getX(), attacker.getY(), defender.getX(),
+				defender.getY()));
 		if ((int) defender.getRemainingHP() <= 0) {
 			getTileAt(defender.getX(), defender.getY()).destroyCity();
 			Player lostACity = defender.getOwner();
 			lostACity.removeCity(defender);
+			flowFieldReady = false; // the ruin is no longer a target
+			events.publish(new GameEvent.CityDestroyed(defender, defender.getX(), defender.getY()));
 			if (lostACity.getCities().size() == 0) {
 				model.removePlayer(lostACity); // player has no cities left, remove from game
 			}
@@ -515,6 +591,7 @@ public class CivController {
 			tile.setUnit(newUnit);
 			newUnit.move(newUnit.getMovement(), x, y);
 			city.getOwner().addUnit(newUnit);
+			events.publish(new GameEvent.UnitCreated(newUnit, x, y));
 			model.changeAndNotify();
 			return true;
 		}
@@ -536,12 +613,18 @@ public class CivController {
 		Tile tile = getTileAt(x, y);
 		Settler settler = (Settler) tile.getUnit();
 		if (settler != null && settler.getCharges() > 0 && tile.getOwnerCity() == null) {
-			City city = settler.foundCity();
-			tile.foundCity(city);
-			curPlayer.removeUnit(settler);
-			tile.setUnit(null);
-			createUnit(x, y, "Scout");
-			model.changeAndNotify();
+			model.beginBatch(); // the city and its scout are one change
+			try {
+				City city = settler.foundCity();
+				tile.foundCity(city);
+				curPlayer.removeUnit(settler);
+				tile.setUnit(null);
+				events.publish(new GameEvent.CityFounded(city, settler, x, y));
+				createUnit(x, y, "Scout");
+				model.changeAndNotify();
+			} finally {
+				model.endBatch();
+			}
 			return true;
 		}
 		return false;
@@ -582,35 +665,57 @@ public class CivController {
 
 	/**
 	 * Returns a set of all the valid moves that the given unit can currently make.
-	 *
-	 * A unit can move onto a tile if it has enough movement left based on the cost
-	 * of moving (1) and the movement modifier for the tile. A unit can "move" onto
-	 * (attack) a tile with an enemy unit or enemy city but cannot move onto a tile
-	 * with a friendly unit.
+	 * Convenience wrapper around getValidMoves(Unit, int[]) for the view; prefer
+	 * that one anywhere moves are queried often.
 	 *
 	 * @param unit the Unit whose valid moves are to be retrieved
 	 * @return HashSet of int[]s representing all the valid moves for the given
 	 *         unit, where each int[] is of length two holding (x, y) coords
 	 */
 	public HashSet<int[]> getValidMoves(Unit unit) {
+		int[] packed = new int[MAX_MOVES];
+		int count = getValidMoves(unit, packed);
+		int size = model.getSize();
 		HashSet<int[]> moves = new HashSet<int[]>();
+		for (int k = 0; k < count; k++)
+			moves.add(new int[] { packed[k] % size, packed[k] / size });
+		return moves;
+	}
+
+	/**
+	 * Writes all the valid moves that the given unit can currently make into a
+	 * caller-supplied buffer, without allocating anything.
+	 *
+	 * A unit can move onto a tile if it has enough movement left based on the cost
+	 * of moving (1) and the movement modifier for the tile. A unit can "move" onto
+	 * (attack) a tile with an enemy unit or enemy city but cannot move onto a tile
+	 * with a friendly unit.
+	 *
+	 * @param unit  the Unit whose valid moves are to be retrieved
+	 * @param moves buffer of at least MAX_MOVES ints that receives each move
+	 *              packed as y * size + x, in a fixed neighbour order
+	 * @return the number of moves written to the buffer
+	 */
+	public int getValidMoves(Unit unit, int[] moves) {
+		CivBoard board = model.getCivBoard();
+		int size = board.getSize();
 		int curX = unit.getX(), curY = unit.getY();
+		int movement = unit.getMovement();
+		int count = 0;
 		for (int i = -1; i < 2; i++) {
 			for (int j = -1; j < 2; j++) {
 				int newX = curX + i, newY = curY + j;
-				int movement = unit.getMovement();
-				Tile moveTo = getTileAt(newX, newY);
-				if (moveTo != null) {
-					int cost = -moveTo.getMovementModifier();
-					if (cost + 1 <= movement) {
-						Unit unitOnMoveTile = moveTo.getUnit();
-						if (unitOnMoveTile == null || unitOnMoveTile.getOwner() != curPlayer)
-							moves.add(new int[] { newX, newY });
-					}
-				}
+				if ((i == 0 && j == 0) || newX < 0 || newX >= size || newY < 0 || newY >= size)
+					continue;
+				int cost = -board.getMovementModifier(newX, newY);
+				if (cost + 1 > movement)
+					continue;
+				Unit unitOnMoveTile = board.getUnit(newX, newY);
+				if (unitOnMoveTile == null || unitOnMoveTile.getOwner() != curPlayer)
+					moves[count++] = newY * size + newX;
 			}
 		}
-		return moves;
+		return count;
 	}
 
 	/**
@@ -619,7 +724,35 @@ public class CivController {
 	 * @return true if the game was successfully saved, false otherwise
 	 */
 	public boolean close() {
+		if (autosave != null)
+			autosave.close();
 		return this.model.done();
 	}
 
+	/**
+	 * Save the game in the background as it is played. The autosave is handed
+	 * the model every time a TurnEnded event is published, replacing any
+	 * autosave set before.
+	 *
+	 * @param autosave the Autosave to give each ended turn to, or null to stop
+	 *                 autosaving
+	 */
+	public void setAutosave(Autosave autosave) {
+		if (autosaveListener != null)
+			events.unsubscribe(GameEvent.TurnEnded.class, autosaveListener);
+		this.autosave = autosave;
+		this.autosaveListener = null;
+		if (autosave != null) {
+			autosaveListener = e -> autosave.turnEnded(model);
+			events.subscribe(GameEvent.TurnEnded.class, autosaveListener);
+		}
+	}
+
+	/**
+	 * @return the Autosave the game is saved with, or null if there isn't one
+	 */
+	public Autosave getAutosave() {
+		return autosave;
+	}
+
 }
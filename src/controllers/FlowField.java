@@ -0,0 +1,124 @@
+package controllers;
+
+import components.City;
+import components.Unit;
+import models.CivBoard;
+import models.CivModel;
+import models.Player;
+
+/**
+ * A distance field towards every enemy city of one player, shared by all of
+ * that player's attacking units for a turn.
+ *
+ * <p>
+ * The field is built with a single multi-source Dijkstra pass seeded from
+ * every enemy city, so each tile ends up holding the movement cost of the
+ * cheapest route from it to the nearest enemy city. Costs are the same as
+ * moveUnit() charges for entering a tile; units are left out since they move
+ * during the turn. A unit then reaches the nearest city by repeatedly stepping
+ * to whichever neighbour has the lowest distance, which only costs a few array
+ * lookups per step however many units or cities there are.
+ *
+ * <p>
+ * The pass stops as soon as the tile of every one of the player's units has
+ * been settled. Units only ever step to a neighbour closer than where they
+ * are, and every tile closer than the farthest unit is settled by then, so
+ * stopping early doesn't change any move; it just means the search (and, on a
+ * paged board, the chunks it faults in) stays between the enemy cities and the
+ * player's own units. Distances are kept in a TileInts, so only the parts of
+ * the board the search reaches take up memory.
+ *
+ * @author Connie Sun, Ryan Smith, Luke Hankins, Tim Gavlick
+ */
+public class FlowField {
+
+	/** distance of tiles no enemy city can be reached from */
+	public static final int UNREACHABLE = Integer.MAX_VALUE;
+
+	private final CivModel model;
+	private final IntMinHeap open = new IntMinHeap();
+	private int size;
+	private final TileInts dist = new TileInts(UNREACHABLE);
+	private boolean hasTargets;
+
+	/**
+	 * Make an (empty) flow field for the given model's board.
+	 *
+	 * @param model the model whose board the field covers
+	 */
+	public FlowField(CivModel model) {
+		this.model = model;
+	}
+
+	/**
+	 * Rebuild the field towards every city not owned by the given player.
+	 *
+	 * @param player the player whose units will follow the field
+	 */
+	public void build(Player player) {
+		CivBoard board = model.getCivBoard();
+		size = board.getSize();
+		if (!dist.resize(size))
+			dist.reset();
+		open.clear();
+		hasTargets = false;
+		int unsettled = player.getUnits().size();
+
+		for (Player other : model.getAllPlayers()) {
+			if (other == player)
+				continue;
+			for (City c : other.getCities()) {
+				dist.set(c.getX(), c.getY(), 0);
+				open.push(c.getY() * size + c.getX(), 0);
+				hasTargets = true;
+			}
+		}
+
+		while (!open.isEmpty()) {
+			int d = open.peekKey();
+			int cur = open.pop();
+			int curX = cur % size, curY = cur / size;
+			if (d > dist.get(curX, curY))
+				continue; // stale heap entry
+			Unit here = board.getUnit(curX, curY);
+			if (here != null && here.getOwner() == player && --unsettled == 0)
+				break; // every unit that follows the field has its distance
+			// units step *into* cur from its neighbours, so that's the cost paid
+			int enterCost = 1 - board.getMovementModifier(curX, curY);
+			if (enterCost > 1000)
+				continue; // impassable, nothing can come through here
+			for (int i = -1; i < 2; i++) {
+				for (int j = -1; j < 2; j++) {
+					int x = curX + i, y = curY + j;
+					if ((i == 0 && j == 0) || x < 0 || x >= size || y < 0 || y >= size)
+						continue;
+					if (d + enterCost < dist.get(x, y)) {
+						dist.set(x, y, d + enterCost);
+						open.push(y * size + x, d + enterCost);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Determine whether the last build() found any enemy city at all.
+	 *
+	 * @return true if there was at least one city to path towards
+	 */
+	public boolean hasTargets() {
+		return hasTargets;
+	}
+
+	/**
+	 * Get the movement cost from x, y to the nearest enemy city.
+	 *
+	 * @param x x location on the board
+	 * @param y y location on the board
+	 * @return the cost, 0 on an enemy city, or UNREACHABLE if there is no route
+	 */
+	public int getDistance(int x, int y) {
+		return dist.get(x, y);
+	}
+
+}
@@ -0,0 +1,91 @@
+package controllers;
+
+import java.util.Arrays;
+
+/**
+ * Binary min-heap of int values ordered by int keys, backed by flat arrays
+ * that are kept (and only ever grown) between uses so searches run without
+ * allocating. Decrease-key isn't supported; callers push a value again with
+ * its better key and skip stale entries when they pop them.
+ *
+ * @author Connie Sun, Ryan Smith, Luke Hankins, Tim Gavlick
+ */
+class IntMinHeap {
+
+	private int[] values = new int[64];
+	private int[] keys = new int[64];
+	private int size;
+
+	/**
+	 * Remove every entry, keeping the backing arrays.
+	 */
+	void clear() {
+		size = 0;
+	}
+
+	/**
+	 * @return true if there are no entries left
+	 */
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * @return the key of the entry pop() would return next
+	 */
+	int peekKey() {
+		return keys[0];
+	}
+
+	/**
+	 * Add a value with the given key.
+	 *
+	 * @param value the value to store
+	 * @param key   the priority of the value; lower keys pop first
+	 */
+	void push(int value, int key) {
+		if (size == values.length) {
+			values = Arrays.copyOf(values, size * 2);
+			keys = Arrays.copyOf(keys, size * 2);
+		}
+		int i = size++;
+		while (i > 0) {
+			int parent = (i - 1) / 2;
+			if (keys[parent] <= key)
+				break;
+			values[i] = values[parent];
+			keys[i] = keys[parent];
+			i = parent;
+		}
+		values[i] = value;
+		keys[i] = key;
+	}
+
+	/**
+	 * Remove and return the value with the lowest key.
+	 *
+	 * @return the value with the lowest key
+	 */
+	int pop() {
+		int result = values[0];
+		int lastValue = values[--size];
+		int lastKey = keys[size];
+		int i = 0;
+		while (true) {
+			int child = i * 2 + 1;
+			if (child >= size)
+				break;
+			if (child + 1 < size && keys[child + 1] < keys[child])
+				child++;
+			if (keys[child] >= lastKey)
+				break;
+			values[i] = values[child];
+			keys[i] = keys[child];
+			i = child;
+		}
+		values[i] = lastValue;
+		keys[i] = lastKey;
+		return result;
+	}
+
+}
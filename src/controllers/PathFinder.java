@@ -0,0 +1,190 @@
+package controllers;
+
+import components.City;
+import components.Unit;
+import models.CivBoard;
+import models.CivModel;
+
+/**
+ * Finds shortest paths across the board with A*.
+ *
+ * <p>
+ * Entering a tile costs 1 plus whatever the tile's movement modifier takes
+ * away, the same cost moveUnit() charges. Impassable terrain, tiles that cost
+ * more than the unit could ever pay in one turn, friendly units and enemy
+ * cities (other than the target) block the path. Enemy units on the way are
+ * allowed, since moving into them is an attack.
+ *
+ * <p>
+ * All search state lives in flat arrays that are kept between queries. Instead
+ * of clearing them, each query bumps a generation counter and treats entries
+ * stamped with an older generation as unvisited. The arrays are TileInts, so
+ * they only take up memory for the parts of the board searches have reached.
+ *
+ * @author Connie Sun, Ryan Smith, Luke Hankins, Tim Gavlick
+ */
+public class PathFinder {
+
+	private final CivModel model;
+
+	private int size;
+	private int generation;
+	// generation in which gScore/cameFrom were last written
+	private final TileInts seen = new TileInts(0);
+	// generation in which the tile was expanded
+	private final TileInts closed = new TileInts(0);
+	private final TileInts gScore = new TileInts(0);
+	private final TileInts cameFrom = new TileInts(0);
+
+	// open set: tile indices ordered by f score
+	private final IntMinHeap open = new IntMinHeap();
+
+	// result of the last query, start excluded, target included
+	private int[] path = new int[64];
+	private int pathLength;
+
+	/**
+	 * Make a path finder for the given model's board.
+	 *
+	 * @param model the model whose board paths are found on
+	 */
+	public PathFinder(CivModel model) {
+		this.model = model;
+	}
+
+	/**
+	 * Find the cheapest path for a unit from its current tile to x, y.
+	 *
+	 * @param unit    the Unit that would take the path
+	 * @param targetX x location of the destination
+	 * @param targetY y location of the destination
+	 * @return the number of steps in the path (retrieve them with getStepX() and
+	 *         getStepY()), 0 if the unit is already there, or -1 if there is no
+	 *         path
+	 */
+	public int findPath(Unit unit, int targetX, int targetY) {
+		CivBoard board = model.getCivBoard();
+		prepare(board.getSize());
+		pathLength = 0;
+		if (targetX < 0 || targetX >= size || targetY < 0 || targetY >= size)
+			return -1;
+		int start = unit.getY() * size + unit.getX();
+		int target = targetY * size + targetX;
+		if (start == target)
+			return 0;
+
+		gScore.set(unit.getX(), unit.getY(), 0);
+		seen.set(unit.getX(), unit.getY(), generation);
+		open.push(start, heuristic(unit.getX(), unit.getY(), targetX, targetY));
+
+		while (!open.isEmpty()) {
+			int cur = open.pop();
+			int curX = cur % size, curY = cur / size;
+			if (closed.get(curX, curY) == generation)
+				continue; // stale heap entry
+			if (cur == target) {
+				buildPath(start, target);
+				return pathLength;
+			}
+			closed.set(curX, curY, generation);
+			for (int i = -1; i < 2; i++) {
+				for (int j = -1; j < 2; j++) {
+					int x = curX + i, y = curY + j;
+					if ((i == 0 && j == 0) || x < 0 || x >= size || y < 0 || y >= size)
+						continue;
+					int next = y * size + x;
+					if (closed.get(x, y) == generation)
+						continue;
+					int cost = stepCost(board, unit, x, y, next == target);
+					if (cost < 0)
+						continue;
+					int g = gScore.get(curX, curY) + cost;
+					if (seen.get(x, y) != generation || g < gScore.get(x, y)) {
+						seen.set(x, y, generation);
+						gScore.set(x, y, g);
+						cameFrom.set(x, y, cur);
+						open.push(next, g + heuristic(x, y, targetX, targetY));
+					}
+				}
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Retrieve the x location of a step of the last path found.
+	 *
+	 * @param step index of the step, 0 being the first tile moved onto
+	 * @return x location of the step
+	 */
+	public int getStepX(int step) {
+		return path[step] % size;
+	}
+
+	/**
+	 * Retrieve the y location of a step of the last path found.
+	 *
+	 * @param step index of the step, 0 being the first tile moved onto
+	 * @return y location of the step
+	 */
+	public int getStepY(int step) {
+		return path[step] / size;
+	}
+
+	/**
+	 * Cost for the unit to enter the tile at x, y, or -1 if it can't.
+	 */
+	private int stepCost(CivBoard board, Unit unit, int x, int y, boolean isTarget) {
+		int cost = 1 - board.getMovementModifier(x, y);
+		if (cost > unit.getMaxMovement())
+			return -1; // impassable terrain, or too rough for this unit to ever enter
+		Unit other = board.getUnit(x, y);
+		if (other != null && other.getOwner() == unit.getOwner())
+			return -1;
+		City city = board.getCity(x, y);
+		if (city != null && city.getOwner() != unit.getOwner() && !isTarget)
+			return -1; // attacking a city stops the unit, so only path into it at the end
+		return cost;
+	}
+
+	/**
+	 * Chebyshev distance: every step costs at least 1 and diagonals are allowed,
+	 * so this never overestimates.
+	 */
+	private int heuristic(int x, int y, int targetX, int targetY) {
+		return Math.max(Math.abs(targetX - x), Math.abs(targetY - y));
+	}
+
+	/**
+	 * Size the buffers for the board and start a new generation.
+	 */
+	private void prepare(int boardSize) {
+		if (seen.resize(boardSize)) {
+			size = boardSize;
+			closed.resize(size);
+			gScore.resize(size);
+			cameFrom.resize(size);
+			generation = 0;
+		}
+		generation++;
+		if (generation == Integer.MAX_VALUE) { // wrapped around, stamps are stale
+			seen.reset();
+			closed.reset();
+			generation = 1;
+		}
+		open.clear();
+	}
+
+	private void buildPath(int start, int target) {
+		int length = 0;
+		for (int cur = target; cur != start; cur = cameFrom.get(cur % size, cur / size))
+			length++;
+		if (length > path.length)
+			path = new int[Math.max(length, path.length * 2)];
+		int step = length;
+		for (int cur = target; cur != start; cur = cameFrom.get(cur % size, cur / size))
+			path[--step] = cur;
+		pathLength = length;
+	}
+
+}
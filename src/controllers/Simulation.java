@@ -0,0 +1,177 @@
+package controllers;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import models.CivModel;
+import models.Player;
+
+/**
+ * Plays whole games between computer players, with no view attached, for
+ * balance tuning and catching slowdowns in the computer's turn logic.
+ *
+ * <p>
+ * Each call to play() sets up a fresh model and controller and steps through
+ * computer turns until only one player is left or the round cap is reached.
+ * Maps 1-3 are read from ./src/models, so run from the project root.
+ *
+ * @author Connie Sun, Ryan Smith, Luke Hankins, Tim Gavlick
+ */
+public class Simulation {
+
+	private final int cpuCount;
+	private final int map;
+	private final int size;
+	private final int maxRounds;
+
+	/**
+	 * Set up a simulation of games between computer players.
+	 *
+	 * @param cpuCount  number of computer players in each game
+	 * @param map       int specifying which map to play on (1-5)
+	 * @param size      int specifying the size of the map (only applicable to
+	 *                  maps 4 and 5)
+	 * @param maxRounds number of rounds after which a game is called off
+	 */
+	public Simulation(int cpuCount, int map, int size, int maxRounds) {
+		this.cpuCount = cpuCount;
+		this.map = map;
+		this.size = size;
+		this.maxRounds = maxRounds;
+	}
+
+	/**
+	 * Play one game with a random seed to completion (or the round cap).
+	 *
+	 * @return the Result of the game
+	 */
+	public Result play() {
+		return play(new Random().nextLong());
+	}
+
+	/**
+	 * Play one game to completion (or the round cap). Games with the same seed
+	 * play out move for move the same.
+	 *
+	 * @param seed seed for the game's Random
+	 * @return the Result of the game
+	 */
+	public Result play(long seed) {
+		long start = System.nanoTime();
+		CivModel model = new CivModel(0, cpuCount, map, size, seed);
+		CivController controller = new CivController(model);
+		controller.placeStartingUnits();
+		List<Player> seats = model.getAllPlayers(); // in starting position order
+		long[] turnNanos = new long[64];
+		int turns = 0;
+		while (!controller.gameOver() && model.roundNumber() < maxRounds) {
+			long turnStart = System.nanoTime();
+			controller.playComputerTurn();
+			if (turns == turnNanos.length)
+				turnNanos = Arrays.copyOf(turnNanos, turns * 2);
+			turnNanos[turns++] = System.nanoTime() - turnStart;
+		}
+		String winner = null;
+		int winnerSeat = -1;
+		if (controller.gameOver()) {
+			Player last = model.getAllPlayers().get(0);
+			winner = last.getID();
+			winnerSeat = seats.indexOf(last);
+		}
+		return new Result(map, seed, winner, winnerSeat, model.roundNumber(), Arrays.copyOf(turnNanos, turns),
+				System.nanoTime() - start);
+	}
+
+	/**
+	 * Outcome of one simulated game.
+	 *
+	 * @field map        map the game was played on
+	 * @field seed       seed the game was played with
+	 * @field winner     ID of the last player standing, or null if the game hit
+	 *                   the round cap
+	 * @field winnerSeat starting position (0 = first to move) of the winner, or -1
+	 * @field rounds     number of full rounds played
+	 * @field turnNanos  how long each player turn took, in order
+	 * @field nanos      wall clock time the game took, setup included
+	 */
+	public static class Result {
+		private final int map;
+		private final long seed;
+		private final String winner;
+		private final int winnerSeat;
+		private final int rounds;
+		private final long[] turnNanos;
+		private final long nanos;
+
+		private Result(int map, long seed, String winner, int winnerSeat, int rounds, long[] turnNanos,
+				long nanos) {
+			this.map = map;
+			this.seed = seed;
+			this.winner = winner;
+			this.winnerSeat = winnerSeat;
+			this.rounds = rounds;
+			this.turnNanos = turnNanos;
+			this.nanos = nanos;
+		}
+
+		/**
+		 * @return the map the game was played on
+		 */
+		public int getMap() {
+			return map;
+		}
+
+		/**
+		 * @return the seed the game was played with, to replay it
+		 */
+		public long getSeed() {
+			return seed;
+		}
+
+		/**
+		 * @return ID of the winning player, or null if nobody won
+		 */
+		public String getWinner() {
+			return winner;
+		}
+
+		/**
+		 * @return starting position of the winner (0 moved first), or -1 if nobody
+		 *         won
+		 */
+		public int getWinnerSeat() {
+			return winnerSeat;
+		}
+
+		/**
+		 * @return number of full rounds played
+		 */
+		public int getRounds() {
+			return rounds;
+		}
+
+		/**
+		 * @return number of player turns played
+		 */
+		public int getTurns() {
+			return turnNanos.length;
+		}
+
+		/**
+		 * @param turn index of a player turn, 0 being the first turn of the game
+		 * @return how long that turn took in nanoseconds
+		 */
+		public long getTurnNanos(int turn) {
+			return turnNanos[turn];
+		}
+
+		/**
+		 * @return how long the game took in nanoseconds
+		 */
+		public long getNanos() {
+			return nanos;
+		}
+	}
+
+}
@@ -0,0 +1,105 @@
+package controllers;
+
+import java.util.Arrays;
+
+/**
+ * An int for every tile of a board, allocated a block of tiles at a time.
+ *
+ * <p>
+ * The board is split into the same CHUNK x CHUNK squares as a paged board, and
+ * a square's block is only allocated the first time one of its tiles is
+ * written. Searches that stay near a few units (see FlowField and PathFinder)
+ * then only pay for the part of the board they actually visit, however big the
+ * board is. Boards up to FLAT_SIZE across are small enough that a single flat
+ * array is cheaper to index than blocks, so they get one of those instead.
+ *
+ * @author Connie Sun, Ryan Smith, Luke Hankins, Tim Gavlick
+ */
+class TileInts {
+
+	private static final int SHIFT = 6;
+	private static final int CHUNK = 1 << SHIFT;
+	private static final int MASK = CHUNK - 1;
+	/** largest board kept in one flat array */
+	static final int FLAT_SIZE = 512;
+
+	private final int initial;
+	private int size = -1;
+	private int[] flat;
+	private int chunksAcross;
+	private int[][] blocks;
+	// ids of the allocated blocks, in allocation order, for reset()
+	private int[] allocated = new int[16];
+	private int allocatedCount;
+
+	/**
+	 * Make an empty array; resize() must be called before use.
+	 *
+	 * @param initial value of every tile until it's written
+	 */
+	TileInts(int initial) {
+		this.initial = initial;
+	}
+
+	/**
+	 * Cover a board of the given size, dropping every block if the size changed.
+	 *
+	 * @param boardSize width and height of the board in tiles
+	 * @return true if the blocks were dropped
+	 */
+	boolean resize(int boardSize) {
+		if (boardSize == size)
+			return false;
+		size = boardSize;
+		allocatedCount = 0;
+		if (size <= FLAT_SIZE) {
+			flat = new int[size * size];
+			blocks = null;
+			reset();
+		} else {
+			flat = null;
+			chunksAcross = (size + MASK) >> SHIFT;
+			blocks = new int[chunksAcross * chunksAcross][];
+		}
+		return true;
+	}
+
+	/**
+	 * Set every tile back to the initial value, only touching allocated blocks.
+	 */
+	void reset() {
+		if (flat != null) {
+			Arrays.fill(flat, initial);
+			return;
+		}
+		for (int b = 0; b < allocatedCount; b++)
+			Arrays.fill(blocks[allocated[b]], initial);
+	}
+
+	int get(int x, int y) {
+		if (flat != null)
+			return flat[y * size + x];
+		int[] block = blocks[(y >> SHIFT) * chunksAcross + (x >> SHIFT)];
+		return block == null ? initial : block[(y & MASK) << SHIFT | (x & MASK)];
+	}
+
+	void set(int x, int y, int value) {
+		if (flat != null) {
+			flat[y * size + x] = value;
+			return;
+		}
+		int id = (y >> SHIFT) * chunksAcross + (x >> SHIFT);
+		int[] block = blocks[id];
+		if (block == null) {
+			block = new int[CHUNK * CHUNK];
+			if (initial != 0)
+				Arrays.fill(block, initial);
+			blocks[id] = block;
+			if (allocatedCount == allocated.length)
+				allocated = Arrays.copyOf(allocated, allocatedCount * 2);
+			allocated[allocatedCount++] = id;
+		}
+		block[(y & MASK) << SHIFT | (x & MASK)] = value;
+	}
+
+}
@@ -0,0 +1,265 @@
+package controllers;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Runs many independent computer-vs-computer games at once across a
+ * ForkJoinPool and merges their results.
+ *
+ * <p>
+ * Every game gets its own model and controller, and a model keeps all of its
+ * state (board, players, Random, save path) to itself, so games on different
+ * threads never touch each other. The set of games is split in half
+ * recursively until each task plays a single game; the partial Stats are
+ * merged back up the same tree.
+ *
+ * @author Connie Sun, Ryan Smith, Luke Hankins, Tim Gavlick
+ */
+public class Tournament {
+
+	private final int[] maps;
+	private final int size;
+	private final int cpuCount;
+	private final int gamesPerMap;
+	private final int maxRounds;
+	private final long seed;
+
+	/**
+	 * Set up a tournament with a random seed.
+	 *
+	 * @param maps        maps to play on (1-5); each one gets gamesPerMap games
+	 * @param size        int specifying the size of the map (only applicable to
+	 *                    maps 4 and 5)
+	 * @param cpuCount    number of computer players in each game
+	 * @param gamesPerMap number of games to play on each map
+	 * @param maxRounds   number of rounds after which a game is called off
+	 */
+	public Tournament(int[] maps, int size, int cpuCount, int gamesPerMap, int maxRounds) {
+		this(maps, size, cpuCount, gamesPerMap, maxRounds, new Random().nextLong());
+	}
+
+	/**
+	 * Set up a tournament. Game g is played with seed + g, so a tournament with
+	 * the same seed plays out the same games however the pool schedules them.
+	 *
+	 * @param maps        maps to play on (1-5); each one gets gamesPerMap games
+	 * @param size        int specifying the size of the map (only applicable to
+	 *                    maps 4 and 5)
+	 * @param cpuCount    number of computer players in each game
+	 * @param gamesPerMap number of games to play on each map
+	 * @param maxRounds   number of rounds after which a game is called off
+	 * @param seed        seed of the first game
+	 */
+	public Tournament(int[] maps, int size, int cpuCount, int gamesPerMap, int maxRounds, long seed) {
+		this.maps = maps.clone();
+		this.size = size;
+		this.cpuCount = cpuCount;
+		this.gamesPerMap = gamesPerMap;
+		this.maxRounds = maxRounds;
+		this.seed = seed;
+	}
+
+	/**
+	 * Play every game of the tournament on the common pool.
+	 *
+	 * @return the merged Stats of all games
+	 */
+	public Stats run() {
+		return run(ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Play every game of the tournament on the given pool.
+	 *
+	 * @param pool the ForkJoinPool to run the games on
+	 * @return the merged Stats of all games
+	 */
+	public Stats run(ForkJoinPool pool) {
+		return pool.invoke(new Games(0, maps.length * gamesPerMap));
+	}
+
+	/**
+	 * Plays games [from, to) of the tournament, game g being on map
+	 * maps[g / gamesPerMap]. An empty range (no maps, or no games per map) gives
+	 * empty Stats.
+	 */
+	private class Games extends RecursiveTask<Stats> {
+		private final int from, to;
+
+		private Games(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected Stats compute() {
+			if (to - from <= 1) {
+				Stats stats = new Stats(cpuCount);
+				if (to > from)
+					stats.add(new Simulation(cpuCount, maps[from / gamesPerMap], size, maxRounds).play(seed + from));
+				return stats;
+			}
+			int mid = (from + to) >>> 1;
+			Games left = new Games(from, mid);
+			left.fork();
+			Stats stats = new Games(mid, to).compute();
+			stats.merge(left.join());
+			return stats;
+		}
+	}
+
+	/**
+	 * Merged results of any number of simulated games.
+	 *
+	 * @field games     games played, per map
+	 * @field wins      wins per starting position, per map
+	 * @field rounds    total rounds played, over every game
+	 * @field turnNanos how long each player turn took, over every game (only
+	 *                  the first turnCount entries are used)
+	 */
+	public static class Stats {
+		private final int seats;
+		private final Map<Integer, Integer> games = new TreeMap<Integer, Integer>();
+		private final Map<Integer, int[]> wins = new TreeMap<Integer, int[]>();
+		private long rounds;
+		private long[] turnNanos = new long[0];
+		private int turnCount;
+		private boolean sorted = true;
+
+		/**
+		 * Make empty stats for games of the given number of players.
+		 *
+		 * @param seats number of players (starting positions) per game
+		 */
+		public Stats(int seats) {
+			this.seats = seats;
+		}
+
+		/**
+		 * Add the outcome of one game.
+		 *
+		 * @param result the Result to add
+		 */
+		public void add(Simulation.Result result) {
+			games.merge(result.getMap(), 1, Integer::sum);
+			int[] mapWins = wins.computeIfAbsent(result.getMap(), m -> new int[seats]);
+			if (result.getWinnerSeat() >= 0)
+				mapWins[result.getWinnerSeat()]++;
+			rounds += result.getRounds();
+			ensureTurnCapacity(result.getTurns());
+			for (int i = 0; i < result.getTurns(); i++)
+				turnNanos[turnCount++] = result.getTurnNanos(i);
+			sorted = false;
+		}
+
+		/**
+		 * Add everything in other to these stats.
+		 *
+		 * @param other Stats of games played with the same number of players
+		 */
+		public void merge(Stats other) {
+			for (Map.Entry<Integer, Integer> e : other.games.entrySet())
+				games.merge(e.getKey(), e.getValue(), Integer::sum);
+			for (Map.Entry<Integer, int[]> e : other.wins.entrySet()) {
+				int[] mapWins = wins.computeIfAbsent(e.getKey(), m -> new int[seats]);
+				for (int s = 0; s < seats; s++)
+					mapWins[s] += e.getValue()[s];
+			}
+			rounds += other.rounds;
+			ensureTurnCapacity(other.turnCount);
+			System.arraycopy(other.turnNanos, 0, turnNanos, turnCount, other.turnCount);
+			turnCount += other.turnCount;
+			sorted = false;
+		}
+
+		/**
+		 * @return the maps games were played on, in increasing order
+		 */
+		public Integer[] getMaps() {
+			return games.keySet().toArray(new Integer[0]);
+		}
+
+		/**
+		 * @return number of games played over every map
+		 */
+		public int getGames() {
+			int total = 0;
+			for (int g : games.values())
+				total += g;
+			return total;
+		}
+
+		/**
+		 * @param map a map number
+		 * @return number of games played on that map
+		 */
+		public int getGames(int map) {
+			return games.getOrDefault(map, 0);
+		}
+
+		/**
+		 * @param map  a map number
+		 * @param seat a starting position, 0 moving first
+		 * @return number of games on that map won from that starting position
+		 */
+		public int getWins(int map, int seat) {
+			int[] mapWins = wins.get(map);
+			return mapWins == null ? 0 : mapWins[seat];
+		}
+
+		/**
+		 * @param map a map number
+		 * @return number of games on that map that hit the round cap
+		 */
+		public int getUnfinished(int map) {
+			int finished = 0;
+			for (int s = 0; s < seats; s++)
+				finished += getWins(map, s);
+			return getGames(map) - finished;
+		}
+
+		/**
+		 * @return mean number of rounds per game
+		 */
+		public double getMeanRounds() {
+			int total = getGames();
+			return total == 0 ? 0 : (double) rounds / total;
+		}
+
+		/**
+		 * @return number of player turns played over every game
+		 */
+		public int getTurns() {
+			return turnCount;
+		}
+
+		/**
+		 * Get a percentile of how long a single player turn took, over every game.
+		 *
+		 * @param p the percentile, between 0 and 100
+		 * @return the turn latency in nanoseconds at that percentile (nearest rank),
+		 *         or 0 if no turns were played
+		 */
+		public long getTurnNanosPercentile(double p) {
+			if (turnCount == 0)
+				return 0;
+			if (!sorted) {
+				Arrays.sort(turnNanos, 0, turnCount);
+				sorted = true;
+			}
+			int rank = (int) Math.ceil(p / 100 * turnCount);
+			return turnNanos[Math.min(Math.max(rank - 1, 0), turnCount - 1)];
+		}
+
+		private void ensureTurnCapacity(int extra) {
+			if (turnCount + extra > turnNanos.length)
+				turnNanos = Arrays.copyOf(turnNanos, Math.max(turnCount + extra, turnNanos.length * 2));
+		}
+	}
+
+}
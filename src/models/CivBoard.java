@@ -1,21 +1,24 @@
 package models;
 
-import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Random;
-import java.util.Scanner;
 
+import components.City;
+import components.PagedTileStore;
 import components.Tile;
+import components.TileStore;
+import components.Unit;
 
 /**
  * Holds the collection of individual tiles that make up a single Civ map.
  *
- * @field tiles 2D array containing our tile objects
+ * @field tiles packed storage for every tile on the board; getTile() hands out
+ *        lightweight Tile views onto it
  * @field size int specifying the size of our board --> board is size x size
  *        tiles
  * @field playerStartingCoords ArrayList of int[2] specifying the starting coordinates
@@ -27,7 +30,12 @@ import components.Tile;
  */
 public class CivBoard implements Serializable {
 
-	public Tile[][] tiles;
+	/** binary maps more than this many tiles across are paged, not loaded whole */
+	public static final int PAGED_SIZE = 2048;
+	/** chunks a paged board keeps in memory (PagedTileStore.CHUNK_BYTES each) */
+	public static final int RESIDENT_CHUNKS = 256;
+
+	private TileStore tiles;
 	public int size;
 	private ArrayList<int[]> playerStartingCoords;
 
@@ -39,14 +47,14 @@ public class CivBoard implements Serializable {
 	 * 	This constructor takes a size and creates a size x size map with these areas. 
 	 * 
 	 * @param size size provides a size for the board; given size board is size x size
+	 * @param rng  source of randomness for the generated areas (the model's)
 	 * 
 	 */
-	public CivBoard(int size) {
+	public CivBoard(int size, Random rng) {
 		this.size = size;
-		Tile[][] board = new Tile[size][size];
+		this.tiles = new TileStore(size);
 		int i = 0;
 		int j;
-		Random rng = new Random();
 		int oneThird = size/3;
 		int twoThird = size * 2/3;
 		while (i < size - 1) {
@@ -60,28 +68,28 @@ public class CivBoard implements Serializable {
 				boolean resource = (type == 4 && (i % 2 == 1) && (j % 2 == 1));
 				if (type > 2  && (isTopCorner || isBottomCorner)){// top left and bot. right
 					if (resource) 
-						board[i][j] = new Tile(Tile.terrainTypes.SWAMP,"horse"); // corners are swamp or water
+						tiles.setTile(j, i, Tile.terrainTypes.SWAMP, "horse"); // corners are swamp or water
 					else if (type < 8)
-						board[i][j] = new Tile(Tile.terrainTypes.SWAMP,"");
+						tiles.setTile(j, i, Tile.terrainTypes.SWAMP, "");
 					else
-						board[i][j] = new Tile(Tile.terrainTypes.FIELD,"");
+						tiles.setTile(j, i, Tile.terrainTypes.FIELD, "");
 				}
 				else if (type <= 2  && (isTopCorner || isBottomCorner)) { 
-					board[i][j] = new Tile(Tile.terrainTypes.WATER, "");
+					tiles.setTile(j, i, Tile.terrainTypes.WATER, "");
 				}
 				else if (type > 3 && isMiddleStrip) { // diagonal strip down the middle is mostly hills
 					if (resource)
-						board[i][j] = new Tile(Tile.terrainTypes.HILL, "iron");
+						tiles.setTile(j, i, Tile.terrainTypes.HILL, "iron");
 					else if (type < 9)
-						board[i][j] = new Tile(Tile.terrainTypes.HILL, "");
+						tiles.setTile(j, i, Tile.terrainTypes.HILL, "");
 					else
-						board[i][j] = new Tile(Tile.terrainTypes.MOUNTAIN, "");
+						tiles.setTile(j, i, Tile.terrainTypes.MOUNTAIN, "");
 				}
 				else { // rest are fields. 
 					if (resource)
-						board[i][j] = new Tile(Tile.terrainTypes.FIELD, "wheat");
+						tiles.setTile(j, i, Tile.terrainTypes.FIELD, "wheat");
 					else
-						board[i][j] = new Tile(Tile.terrainTypes.FIELD, "");
+						tiles.setTile(j, i, Tile.terrainTypes.FIELD, "");
 				}
 				j++;
 			}
@@ -90,45 +98,59 @@ public class CivBoard implements Serializable {
 		i = 0;
 		j = 0;
 		while (i < size) { // set border to water
-			board[i][0] = new Tile(Tile.terrainTypes.WATER, "");
-			board[0][i] = new Tile(Tile.terrainTypes.WATER, "");
-			board[size - 1][i] = new Tile(Tile.terrainTypes.WATER, "");
-			board[i][size - 1] = new Tile(Tile.terrainTypes.WATER, "");
+			tiles.setTile(0, i, Tile.terrainTypes.WATER, "");
+			tiles.setTile(i, 0, Tile.terrainTypes.WATER, "");
+			tiles.setTile(i, size - 1, Tile.terrainTypes.WATER, "");
+			tiles.setTile(size - 1, i, Tile.terrainTypes.WATER, "");
 			i++;
 		}
 		
-		board[size-2][size-2] = new Tile(Tile.terrainTypes.FIELD, ""); // guarantee players dont start on water blocks
-		board[1][1] = new Tile(Tile.terrainTypes.FIELD, "");
-		board[size-2][1] = new Tile(Tile.terrainTypes.FIELD, "");
-		board[1][size-2] = new Tile(Tile.terrainTypes.FIELD, "");
+		tiles.setTile(size-2, size-2, Tile.terrainTypes.FIELD, ""); // guarantee players dont start on water blocks
+		tiles.setTile(1, 1, Tile.terrainTypes.FIELD, "");
+		tiles.setTile(1, size-2, Tile.terrainTypes.FIELD, "");
+		tiles.setTile(size-2, 1, Tile.terrainTypes.FIELD, "");
 		
-		board[1][2] = new Tile(Tile.terrainTypes.FIELD, "");
-		board[1][3] = new Tile(Tile.terrainTypes.FIELD, "");
-		board[2][1] = new Tile(Tile.terrainTypes.FIELD, "");
-		board[2][2] = new Tile(Tile.terrainTypes.FIELD, "");
-		board[2][3] = new Tile(Tile.terrainTypes.FIELD, "");
-		board[3][1] = new Tile(Tile.terrainTypes.FIELD, "");
-		board[3][2] = new Tile(Tile.terrainTypes.FIELD, "");
-		board[3][3] = new Tile(Tile.terrainTypes.FIELD, "");
+		tiles.setTile(2, 1, Tile.terrainTypes.FIELD, "");
+		tiles.setTile(3, 1, Tile.terrainTypes.FIELD, "");
+		tiles.setTile(1, 2, Tile.terrainTypes.FIELD, "");
+		tiles.setTile(2, 2, Tile.terrainTypes.FIELD, "");
+		tiles.setTile(3, 2, Tile.terrainTypes.FIELD, "");
+		tiles.setTile(1, 3, Tile.terrainTypes.FIELD, "");
+		tiles.setTile(2, 3, Tile.terrainTypes.FIELD, "");
+		tiles.setTile(3, 3, Tile.terrainTypes.FIELD, "");
 		
-		board[size-2][size-3] = new Tile(Tile.terrainTypes.FIELD, "");
-		board[size-2][size-4] = new Tile(Tile.terrainTypes.FIELD, "");
-		board[size-3][size-2] = new Tile(Tile.terrainTypes.FIELD, "");
-		board[size-3][size-3] = new Tile(Tile.terrainTypes.FIELD, "");
-		board[size-3][size-4] = new Tile(Tile.terrainTypes.FIELD, "");
-		board[size-4][size-2] = new Tile(Tile.terrainTypes.FIELD, "");
-		board[size-4][size-3] = new Tile(Tile.terrainTypes.FIELD, "");
-		board[size-4][size-4] = new Tile(Tile.terrainTypes.FIELD, ""); // spawn coding for AI shenanigans
-		this.tiles = board;
+		tiles.setTile(size-3, size-2, Tile.terrainTypes.FIELD, "");
+		tiles.setTile(size-4, size-2, Tile.terrainTypes.FIELD, "");
+		tiles.setTile(size-2, size-3, Tile.terrainTypes.FIELD, "");
+		tiles.setTile(size-3, size-3, Tile.terrainTypes.FIELD, "");
+		tiles.setTile(size-4, size-3, Tile.terrainTypes.FIELD, "");
+		tiles.setTile(size-2, size-4, Tile.terrainTypes.FIELD, "");
+		tiles.setTile(size-3, size-4, Tile.terrainTypes.FIELD, "");
+		tiles.setTile(size-4, size-4, Tile.terrainTypes.FIELD, ""); // spawn coding for AI shenanigans
+	}
+	/**
+	 * Build a board out of terrain and resource ids laid out as
+	 * 	TileStore.writeMapTo() writes them (used by generators).
+	 * @param size size of the board; board is size x size
+	 * @param map buffer positioned at the terrain ids
+	 */
+	CivBoard(int size, ByteBuffer map) {
+		this.size = size;
+		this.tiles = new TileStore(size);
+		tiles.readMapFrom(map);
 	}
 	/**
-	 * Second constructor that will build itself out of a save file
-	 * @param ois ois is an ObjectInputStream for deserializing an instance of the board class
-	 * @throws ClassNotFoundException if class cannot be found
-	 * @throws IOException if unsuccessful read from ois
+	 * Second constructor that will build itself out of the board section of a save file.
+	 * 	Boards larger than PAGED_SIZE give a paged board reading its tiles out of in,
+	 * 	so in should be a mapping of the save rather than a copy on the heap.
+	 * @param in buffer positioned at what writeTo() wrote
 	 */
-	public CivBoard(ObjectInputStream ois) throws ClassNotFoundException, IOException {
-		unserializeBoard(ois);
+	public CivBoard(ByteBuffer in) {
+		if (in.getInt(in.position()) > PAGED_SIZE)
+			this.tiles = PagedTileStore.readFrom(in, RESIDENT_CHUNKS);
+		else
+			this.tiles = TileStore.readFrom(in);
+		this.size = tiles.getSize();
 	}
 	/**
 	 * getTile returns the Tile object at CivBoard's x,y location
@@ -137,8 +159,29 @@ public class CivBoard implements Serializable {
 	 * @return a Tile object that is the tile on our board at x,y
 	 */
 	public Tile getTile(int x, int y) {
-		if (x < 0 || x >= size || y < 0 || y >= size) return null;
-		return this.tiles[y][x];
+		return this.tiles.getTile(x, y);
+	}
+	/**
+	 * Build a board out of a binary map file, copying its terrain straight out
+	 * of the mapping.
+	 * @param map the opened map file
+	 */
+	public CivBoard(MapFile map) {
+		this.size = map.getSize();
+		this.tiles = new TileStore(size);
+		map.loadInto(tiles);
+	}
+	/**
+	 * Build a paged board on top of a binary map file: the board is split into
+	 * chunks that are read out of the mapping the first time they're used, and
+	 * only the most recently used chunks are kept in memory (see
+	 * PagedTileStore). Nothing is read up front, so this is instant for any size.
+	 * @param map the opened map file
+	 * @param residentChunks most chunks to keep in memory at once
+	 */
+	public CivBoard(MapFile map, int residentChunks) {
+		this.size = map.getSize();
+		this.tiles = new PagedTileStore(size, map.mapBuffer(), residentChunks);
 	}
 	/**
 	 * Third constructor for our board that takes a file which contains
@@ -147,63 +190,38 @@ public class CivBoard implements Serializable {
 	 * Takes files of the form
 	 * 	"tile_type resource_type\n"
 	 * 
-	 * 	where each line provides information about one tile and its resource 
+	 * 	where each line provides information about one tile and its resource
+	 * 	(see TextMapReader), or binary map files (see MapFile). Binary maps
+	 * 	larger than PAGED_SIZE give a paged board.
 	 * 
 	 * @param file file with format specified above.
+	 * @throws UncheckedIOException if the file can't be read
+	 * @throws IllegalArgumentException if the file isn't a valid map; the message
+	 * 	gives the line and column of the problem
 	 */
 	public CivBoard(String file) {
-		Scanner sc = null;
-		try {
-			File fileObj = new File(file);
-			sc = new Scanner(fileObj);
-		} catch (Exception e) {
-			e.printStackTrace();
-		}
-		String line = null;
-		if (sc.hasNextLine()) {
-			line = sc.nextLine();
-		}
-		this.size = Integer.valueOf(line);
-		Tile[][] board = new Tile[size][size];
-		int i = 0;
-		int j = 0;
-		Tile.terrainTypes type = null;
-		String resource = "";
-		while (sc.hasNextLine()) {
-			line = sc.nextLine();
-			String[] type_res = line.split(" ");
-			if (type_res[0].equals("field"))
-					type = Tile.terrainTypes.FIELD;
-			else if (type_res[0].equals("swamp"))
-				type = Tile.terrainTypes.SWAMP;
-			else if (type_res[0].equals("hill"))
-				type = Tile.terrainTypes.HILL;
-			else if (type_res[0].equals("water"))
-				type = Tile.terrainTypes.WATER;
-			else if (type_res[0].equals("mountain"))
-				type = Tile.terrainTypes.MOUNTAIN;
-			if (type_res[1].equals("w"))
-				resource = "wheat";
-			else if (type_res[1].equals("h"))
-				resource = "horse";
-			else if (type_res[1].equals("i"))
-				resource = "iron";
-			else
-				resource = "";
-			board[j][i] = new Tile(type, resource);
-			j++;
-			if (j == size) {
-				i++;
-				j = 0;
+		if (MapFile.isMapFile(file)) {
+			MapFile map;
+			try {
+				map = new MapFile(file);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
 			}
-			if (i == size) {
-				break;
-				//System.out.println("error with passed size");
+			this.size = map.getSize();
+			if (size > PAGED_SIZE) {
+				this.tiles = new PagedTileStore(size, map.mapBuffer(), RESIDENT_CHUNKS);
+			} else {
+				this.tiles = new TileStore(size);
+				map.loadInto(tiles);
 			}
+			return;
 		}
-		this.tiles = board;
-		
-		
+		try {
+			this.tiles = TextMapReader.read(file);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		this.size = tiles.getSize();
 	}
 
 	/**
@@ -215,27 +233,145 @@ public class CivBoard implements Serializable {
 	}
 
 	/**
-	 * serializeBoard() is called when saving the game state to capture all of the board's
-	 * 	attributes. 
-	 * @param oos AnObjectOutputStream to write this board's fields to.
-	 * @throws IOException If error when writing to output stream
+	 * getMovementModifier() reads a tile's movement modifier straight out of the
+	 * packed storage. x, y must be on the board.
+	 * @param x int specifying x location on our board
+	 * @param y int specifying y location on our board
+	 * @return int representing terrain bonus to be added to unit movement value
+	 */
+	public int getMovementModifier(int x, int y) {
+		return this.tiles.getMovementModifier(x, y);
+	}
+
+	/**
+	 * getUnit() reads the unit on a tile straight out of the packed storage.
+	 * x, y must be on the board.
+	 * @param x int specifying x location on our board
+	 * @param y int specifying y location on our board
+	 * @return the Unit at x,y or null if there is none
+	 */
+	public Unit getUnit(int x, int y) {
+		return this.tiles.getUnit(x, y);
+	}
+
+	/**
+	 * getCity() reads the city on a tile straight out of the packed storage.
+	 * x, y must be on the board.
+	 * @param x int specifying x location on our board
+	 * @param y int specifying y location on our board
+	 * @return the City at x,y or null if the tile isn't a city tile
+	 */
+	public City getCity(int x, int y) {
+		return this.tiles.getCity(x, y);
+	}
+
+	/**
+	 * getRevealed() gives the fog of war of a player as one bit per tile, where
+	 * tile x, y is bit y * size + x. The set is live and must not be modified.
+	 * @param player the player whose revealed tiles to get
+	 * @return BitSet with a bit set for each tile the player can see
+	 */
+	public BitSet getRevealed(Player player) {
+		return this.tiles.getRevealed(player);
+	}
+
+	/**
+	 * getSpatialIndex() gives the index of every unit and city on the board by
+	 * position, for finding what's near a tile. It's kept up to date by the
+	 * board as units and cities come and go.
+	 * @return the board's SpatialIndex
+	 */
+	public SpatialIndex getSpatialIndex() {
+		return this.tiles.getSpatialIndex();
+	}
+
+	/**
+	 * revealArea() reveals the square of tiles within radius of x, y to a player
+	 * @param player the player to reveal tiles to
+	 * @param x int specifying x location of the center of the area
+	 * @param y int specifying y location of the center of the area
+	 * @param radius number of tiles out from the center to reveal
+	 */
+	public void revealArea(Player player, int x, int y, int radius) {
+		this.tiles.revealArea(player, x, y, radius);
+	}
+
+	/**
+	 * revealedSince() finds the tiles a player has revealed since an earlier copy
+	 * of their fog of war was taken, in a single XOR pass over the bitsets.
+	 * Tiles are never hidden again, so every differing bit is a new reveal.
+	 * @param player the player whose fog of war to compare
+	 * @param before a copy of getRevealed(player) taken earlier
+	 * @return BitSet of the tiles revealed since before was taken
+	 */
+	public BitSet revealedSince(Player player, BitSet before) {
+		BitSet diff = (BitSet) getRevealed(player).clone();
+		diff.xor(before);
+		return diff;
+	}
+
+	/**
+	 * saveBytes() gives the size of the board section writeTo() writes.
+	 * @return number of bytes
+	 */
+	public int saveBytes() {
+		return tiles.saveBytes();
+	}
+	/**
+	 * writeTo() is called when saving the game state to capture all of the board's
+	 * 	tiles. Units and cities are written as ids (see getTiles().idOf()).
+	 * @param out buffer with at least saveBytes() remaining
+	 */
+	public void writeTo(ByteBuffer out) {
+		tiles.writeTo(out);
+	}
+	/**
+	 * markChanged() reports a tile as changed in the next ModelChange, for
+	 * changes to its unit or city that the board doesn't see (like HP).
+	 * @param x int specifying x location of the tile
+	 * @param y int specifying y location of the tile
+	 */
+	public void markChanged(int x, int y) {
+		tiles.markChanged(x, y);
+	}
+	/**
+	 * takeChangedTiles() gives the tiles whose unit, city or owning city changed
+	 * since it was last called, and starts collecting afresh.
+	 * @return BitSet of the changed tile indexes (y * size + x)
+	 */
+	BitSet takeChangedTiles() {
+		return tiles.takeChangedTiles();
+	}
+	/**
+	 * Get the packed storage behind the board, for saving and loading.
+	 * @return the board's TileStore
+	 */
+	TileStore getTiles() {
+		return tiles;
+	}
+
+	/**
+	 * isPaged() tells whether the board keeps its tiles in paged chunks rather
+	 * than all in memory.
+	 * @return true if the board is backed by a PagedTileStore
 	 */
-	public void serializeBoard(ObjectOutputStream oos) throws IOException {
-		oos.writeObject(this.tiles);
-		oos.writeObject(this.size);
-		oos.writeObject(this.playerStartingCoords);
+	public boolean isPaged() {
+		return tiles instanceof PagedTileStore;
 	}
+
 	/**
-	 * unserializeBoard() is called when attempting to load a saved game state
-	 * 	into this board. 
-	 * @param ois an ObjectInputSteam to load CivBoard attributes from
-	 * @throws ClassNotFoundException if class not found
-	 * @throws IOException if error reading from input stream
+	 * close() releases the page file of a paged board. The board mustn't be used
+	 * afterwards. Does nothing for boards that aren't paged.
+	 * @throws UncheckedIOException if the page file can't be deleted
 	 */
-	public void unserializeBoard(ObjectInputStream ois) throws ClassNotFoundException, IOException {
-		this.tiles = (Tile[][]) ois.readObject();
-		this.size = (int) ois.readObject();
-		this.playerStartingCoords = (ArrayList<int[]>) ois.readObject();
+	public void close() {
+		if (tiles instanceof PagedTileStore) {
+			try {
+				((PagedTileStore) tiles).close();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
 	}
 
 }
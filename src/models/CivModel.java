@@ -1,13 +1,10 @@
 package models;
 
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
-import java.util.Observable;
+import java.util.Random;
 
 import components.Tile;
 
@@ -16,8 +13,10 @@ import components.Tile;
  *
  * @author Connie Sun, Ryan Smith, Luke Hankins, Tim Gavlick
  */
-@SuppressWarnings("deprecation")
-public class CivModel extends Observable implements Serializable {
+public class CivModel implements Serializable {
+
+	/** where games are saved to and loaded from unless told otherwise */
+	public static final String DEFAULT_SAVE_PATH = "save_game.dat";
 
 	private CivBoard board;
 	private Node curPlayer;
@@ -26,39 +25,91 @@ public class CivModel extends Observable implements Serializable {
 	private int round;
 	private int numPlayers;
 	private ArrayList<int[]> playerStartingCoords;
+	private String savePath = DEFAULT_SAVE_PATH;
+	private long seed;
+	private SplitMix64 random;
+	// changeAndNotify() batching, see beginBatch()
+	private int batchDepth;
+	private int pendingChanges;
+	private Player notifiedPlayer;
+	private transient EventBus events = new EventBus();
 
 	/**
 	 * Initialize a new model.
 	 *
-	 * @param playerCount indicates how many players this game will have
+	 * @param playerCount indicates how many players this game will have; 1 means a
+	 *                    single human against a CPU player
+	 * @param map         int specifying which map to play on (1-5)
+	 * @param size        int specifying the size of the map (only applicable to
+	 *                    maps 4 and 5)
 	 */
 	public CivModel(int playerCount, int map, int size) {
-		head = new Node(new Player(1, new String("Player " + 1))); // make a human player
-		curPlayer = head;
-		if (playerCount == 1) { // if singleplayer
-			numPlayers = 2;
-			singlePlayer = true;
-			Node cpu = new Node(new Player(0, "CPU Player")); // make a cpu player
-			head.next = cpu;
-			cpu.next = head; // have them wrap around
-		} else {
-			numPlayers = playerCount;
-			singlePlayer = false;
-			for (int i = 0; i < playerCount - 1; i++) { // if not singleplayer, add playerCount - 1 more players
-				String playerID = "Player " + (i + 2);
-				Node player = new Node(new Player(1, playerID)); // that are human
-				curPlayer.next = player; // set next
-				curPlayer = curPlayer.next; // iter
-			}
-			curPlayer.next = head; // have it wrap around
+		this(playerCount, playerCount == 1 ? 1 : 0, map, size);
+	}
+
+	/**
+	 * Initialize a new model with any mix of human and CPU players. The humans
+	 * take the first turns (and starting spots), followed by the CPU players.
+	 *
+	 * @param humanCount indicates how many human players this game will have
+	 * @param cpuCount   indicates how many CPU players this game will have
+	 * @param map        int specifying which map to play on (1-5)
+	 * @param size       int specifying the size of the map (only applicable to
+	 *                   maps 4 and 5)
+	 * @throws IllegalArgumentException if there are fewer than 2 players, or more
+	 *                                  than the map has starting spots for
+	 */
+	public CivModel(int humanCount, int cpuCount, int map, int size) {
+		this(humanCount, cpuCount, map, size, new Random().nextLong());
+	}
+
+	/**
+	 * Initialize a new model whose every random choice (map generation, computer
+	 * moves) comes from a SplitMix64 seeded with the given seed, so the same seed and
+	 * the same inputs always play out the same game.
+	 *
+	 * @param humanCount indicates how many human players this game will have
+	 * @param cpuCount   indicates how many CPU players this game will have
+	 * @param map        int specifying which map to play on (1-5)
+	 * @param size       int specifying the size of the map (only applicable to
+	 *                   maps 4 and 5)
+	 * @param seed       seed for the game's Random
+	 * @throws IllegalArgumentException if there are fewer than 2 players, or more
+	 *                                  than the map has starting spots for
+	 */
+	public CivModel(int humanCount, int cpuCount, int map, int size, long seed) {
+		this.seed = seed;
+		this.random = new SplitMix64(seed);
+		numPlayers = humanCount + cpuCount;
+		if (humanCount < 0 || cpuCount < 0 || numPlayers < 2)
+			throw new IllegalArgumentException("a game needs at least 2 players");
+		singlePlayer = humanCount <= 1;
+		Node tail = null;
+		for (int i = 0; i < numPlayers; i++) {
+			Player player;
+			if (i < humanCount)
+				player = new Player(1, "Player " + (i + 1));
+			else if (cpuCount == 1)
+				player = new Player(0, "CPU Player");
+			else
+				player = new Player(0, "CPU Player " + (i - humanCount + 1));
+			Node node = new Node(player);
+			if (tail == null)
+				head = node;
+			else
+				tail.next = node;
+			tail = node;
 		}
+		tail.next = head; // have it wrap around
 		String mapStr = initPlayerStartingCoords(map, size);
 		round = 0;
 		// System.out.println(mapStr);
-		if (map != 4) {
-			this.board = new CivBoard(mapStr);
+		if (map == 4) {
+			this.board = new CivBoard(size, random);
+		} else if (map == 5) {
+			this.board = new NoiseMapGenerator(random.nextLong()).generate(size);
 		} else {
-			this.board = new CivBoard(size);
+			this.board = new CivBoard(mapStr);
 		}
 		curPlayer = head;
 	}
@@ -74,31 +125,61 @@ public class CivModel extends Observable implements Serializable {
 	 *                              be opened
 	 */
 	public CivModel() throws NullPointerException {
-		try {
-			FileInputStream fileStream = new FileInputStream("save_game.dat");
-			ObjectInputStream ois = new ObjectInputStream(fileStream);
-			this.board = new CivBoard(ois);
-			this.head = (Node) ois.readObject();
-			this.singlePlayer = (boolean) ois.readObject();
-			this.round = (int) ois.readObject();
-			this.numPlayers = (int) ois.readObject();
-			this.playerStartingCoords = (ArrayList<int[]>) ois.readObject();
-			this.curPlayer = (Node) ois.readObject();
-			Node endIter = (Node) ois.readObject();
-			curPlayer.next = endIter;
-			int i = 0;
-			while (i < numPlayers - 2) {
-				endIter.next = (Node) ois.readObject();
-				endIter = endIter.next;
-				i++;
-			}
-			endIter.next = curPlayer;
+		this(DEFAULT_SAVE_PATH);
+	}
 
+	/**
+	 * Load a previously saved game state from the given file. The model keeps
+	 * saving to that same file.
+	 *
+	 * @param savePath path of the save file to load
+	 * @throws NullPointerException if the file does not exist/ can't be opened
+	 */
+	public CivModel(String savePath) throws NullPointerException {
+		this.savePath = savePath;
+		try {
+			SaveFile.read(this, savePath);
 		} catch (Exception e) {
 			throw new NullPointerException();
 		}
 	}
 
+	/**
+	 * Fill in a freshly constructed model with a loaded game. Used by SaveFile.
+	 *
+	 * @param board          the loaded board
+	 * @param players        the players still in the game, in turn order
+	 *                       starting from the head
+	 * @param cur            index in players of the player whose turn it is
+	 * @param singlePlayer   whether this is a single-player game
+	 * @param round          the current round number
+	 * @param seed           the seed the game started from
+	 * @param randomState    the state the game's SplitMix64 continues from
+	 * @param startingCoords the players' starting coordinates
+	 */
+	void restore(CivBoard board, List<Player> players, int cur, boolean singlePlayer, int round, long seed,
+			long randomState, ArrayList<int[]> startingCoords) {
+		this.board = board;
+		this.singlePlayer = singlePlayer;
+		this.round = round;
+		this.seed = seed;
+		this.random = new SplitMix64(randomState);
+		this.playerStartingCoords = startingCoords;
+		this.numPlayers = players.size();
+		Node tail = null;
+		for (int i = 0; i < players.size(); i++) {
+			Node node = new Node(players.get(i));
+			if (tail == null)
+				head = node;
+			else
+				tail.next = node;
+			tail = node;
+			if (i == cur)
+				curPlayer = node;
+		}
+		tail.next = head;
+	}
+
 	/**
 	 * getter method for the tile held at row, col in our Board
 	 *
@@ -111,7 +192,46 @@ public class CivModel extends Observable implements Serializable {
 	}
 
 	/**
-	 * for JUnit testing
+	 * Reveal the square of tiles within radius of x, y to a player.
+	 *
+	 * @param player the player to reveal tiles to
+	 * @param x      x location of the center of the area
+	 * @param y      y location of the center of the area
+	 * @param radius number of tiles out from the center to reveal
+	 */
+	public void revealArea(Player player, int x, int y, int radius) {
+		this.board.revealArea(player, x, y, radius);
+		int last = getSize() - 1;
+		events.publish(new GameEvent.TilesRevealed(player, Math.max(x - radius, 0), Math.max(y - radius, 0),
+				Math.min(x + radius, last), Math.min(y + radius, last)));
+	}
+
+	/**
+	 * Get a player's fog of war as a bitset with one bit per tile, where tile x, y
+	 * is bit y * size + x. The set is live and must not be modified.
+	 *
+	 * @param player the player whose revealed tiles to get
+	 * @return BitSet of every tile the player can see
+	 */
+	public BitSet getRevealed(Player player) {
+		return this.board.getRevealed(player);
+	}
+
+	/**
+	 * Get the index of every unit and city on the board by position, for
+	 * finding enemies or cities near a tile without scanning.
+	 *
+	 * @return the board's SpatialIndex
+	 */
+	public SpatialIndex getSpatialIndex() {
+		return this.board.getSpatialIndex();
+	}
+
+	/**
+	 * Get the board backing this model, for callers that scan many tiles at once
+	 * (and for JUnit testing)
+	 *
+	 * @return this model's CivBoard
 	 */
 	public CivBoard getCivBoard() {
 		return this.board;
@@ -127,12 +247,65 @@ public class CivModel extends Observable implements Serializable {
 	}
 
 	/**
-	 * Set the state of the model to changed and notify Observers that the model has
-	 * been updated. Pass the current game state (board) to all Observers.
+	 * Get the bus this game's events are published on. The view, autosave and
+	 * anything else interested subscribe to it for the events they need.
+	 *
+	 * @return the model's EventBus
+	 */
+	public EventBus getEvents() {
+		return events;
+	}
+
+	/**
+	 * Record that the model changed and publish a ModelChanged event saying what
+	 * changed. Inside a batch the event is held back until the batch ends.
 	 */
 	public void changeAndNotify() {
-		this.setChanged();
-		this.notifyObservers(this.board);
+		pendingChanges++;
+		if (batchDepth == 0)
+			notifyChange();
+	}
+
+	/**
+	 * Start a batch of changes. Until the matching endBatch(), changeAndNotify()
+	 * only records that something changed; listeners then hear about everything
+	 * at once, in a single ModelChanged event. Finer events are still published
+	 * as they happen. Batches can be nested, and only the
+	 * outermost endBatch() notifies. Always pair the two with try/finally.
+	 */
+	public void beginBatch() {
+		batchDepth++;
+	}
+
+	/**
+	 * End a batch started by beginBatch(). If this ends the outermost batch and
+	 * anything changed during it, one ModelChanged event is published.
+	 *
+	 * @throws IllegalStateException if no batch was started
+	 */
+	public void endBatch() {
+		if (batchDepth == 0)
+			throw new IllegalStateException("endBatch() without beginBatch()");
+		if (--batchDepth == 0 && pendingChanges > 0)
+			notifyChange();
+	}
+
+	/**
+	 * Determine whether a batch is open.
+	 *
+	 * @return true if changeAndNotify() is currently holding notifications back
+	 */
+	public boolean isBatching() {
+		return batchDepth > 0;
+	}
+
+	private void notifyChange() {
+		Player player = getCurPlayer();
+		ModelChange change = new ModelChange(pendingChanges, board.takeChangedTiles(), player != notifiedPlayer,
+				player, round);
+		pendingChanges = 0;
+		notifiedPlayer = player;
+		events.publish(new GameEvent.ModelChanged(change));
 	}
 
 	/**
@@ -146,6 +319,8 @@ public class CivModel extends Observable implements Serializable {
 
 	/**
 	 * void function allowing turn logic control. Sets cur player to next player.
+	 * This publishes nothing, since it's also how setup goes round the players;
+	 * the controller publishes TurnEnded when a turn that was played ends.
 	 */
 	public void nextPlayer() {
 		curPlayer = curPlayer.next;
@@ -197,6 +372,9 @@ public class CivModel extends Observable implements Serializable {
 		}
 		numPlayers--;
 		prev.next = next;
+		if (cur == head) // keep the turn order (and round count) anchored to a live player
+			head = next;
+		events.publish(new GameEvent.PlayerDefeated(deadGuy));
 		return true;
 	}
 
@@ -229,6 +407,46 @@ public class CivModel extends Observable implements Serializable {
 		return result;
 	}
 
+	/**
+	 * Get the file this model's game is saved to.
+	 *
+	 * @return path of the save file
+	 */
+	public String getSavePath() {
+		return savePath;
+	}
+
+	/**
+	 * Set the file this model's game is saved to, so games running side by side
+	 * don't overwrite each other's saves.
+	 *
+	 * @param savePath path of the save file
+	 */
+	public void setSavePath(String savePath) {
+		this.savePath = savePath;
+	}
+
+	/**
+	 * Get the seed this game's random number generator started from.
+	 *
+	 * @return the game's seed
+	 */
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Get this game's random number generator. Everything random in a game draws
+	 * from it rather than a shared or global source, so games running at the same
+	 * time don't affect each other. Its state is saved with the game (see
+	 * SaveFile), so a loaded game carries on the same sequence.
+	 *
+	 * @return the model's SplitMix64
+	 */
+	public SplitMix64 getRandom() {
+		return random;
+	}
+
 	/**
 	 * Determine whether this is a single-player game (one with a human vs a CPU
 	 * player).
@@ -242,10 +460,10 @@ public class CivModel extends Observable implements Serializable {
 	/**
 	 * Initialize player starting coordinates based on map and number of players
 	 * 
-	 * @param map  int specifying which map the user has selected (1-4)
-	 * @param size int specifying the size of the map (only applicable if map 4)
-	 * @return a String that will be the location of the map to open, unless map ==
-	 *         4
+	 * @param map  int specifying which map the user has selected (1-5)
+	 * @param size int specifying the size of the map (only applicable to maps 4 and 5)
+	 * @return a String that will be the location of the map to open, unless map is
+	 *         generated (4 or 5)
 	 */
 	private String initPlayerStartingCoords(int map, int size) {
 		ArrayList<int[]> allStartingCoords = new ArrayList<int[]>();
@@ -266,13 +484,16 @@ public class CivModel extends Observable implements Serializable {
 			allStartingCoords.add(new int[] { 15, 2 });
 			allStartingCoords.add(new int[] { 2, 13 });
 			mapName = "./src/models/Thermopylae.txt";
-		} else if (map == 4) {
+		} else if (map == 4 || map == 5) { // generated maps
 			allStartingCoords.add(new int[] { 2, 2 });
 			allStartingCoords.add(new int[] { size - 3, size - 3 });
 			allStartingCoords.add(new int[] { size - 3, 2 });
 			allStartingCoords.add(new int[] { 2, size - 3 });
 			mapName = "";
 		}
+		if (numPlayers > allStartingCoords.size())
+			throw new IllegalArgumentException(
+					"map " + map + " only has room for " + allStartingCoords.size() + " players");
 		for (int i = 0; i < numPlayers; i++) {
 			playerStartingCoords.add(allStartingCoords.get(i));
 		}
@@ -302,28 +523,13 @@ public class CivModel extends Observable implements Serializable {
 
 	/**
 	 * Controller calls done in its close() method. done() saves the whole game
-	 * state by writing it to an ObjectOutputStream.
+	 * state to the save path in the binary format described in SaveFile.
 	 * 
 	 * @return true if the save was successful, false if it failed.
 	 */
 	public boolean done() {
 		try {
-			FileOutputStream fileStream = new FileOutputStream("save_game.dat");
-			ObjectOutputStream oos = new ObjectOutputStream(fileStream);
-			this.board.serializeBoard(oos);
-			oos.writeObject(this.head);
-			oos.writeObject(this.singlePlayer);
-			oos.writeObject(this.round);
-			oos.writeObject(this.numPlayers);
-			oos.writeObject(this.playerStartingCoords);
-			Node playerWhoseTurnItIs = curPlayer;
-			oos.writeObject(curPlayer);
-			nextPlayer();
-			while (!(curPlayer.equals(playerWhoseTurnItIs))) {
-				oos.writeObject(curPlayer);
-				nextPlayer();
-			}
-			oos.close();
+			SaveFile.write(this, savePath);
 			return true;
 		} catch (Exception e) {
 			e.printStackTrace();
@@ -0,0 +1,79 @@
+package models;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Hands GameEvents to whoever subscribed to them. Listeners subscribe to one
+ * kind of event (e.g. GameEvent.UnitMoved.class) and are only called with that
+ * kind, already cast; subscribing to GameEvent.class gets every event.
+ *
+ * <p>
+ * Events are delivered on the thread that publishes them, straight away, in
+ * the order listeners subscribed, before publish() returns. A listener may
+ * subscribe, unsubscribe or publish from inside a delivery; the listeners a
+ * publish() started with are the ones it delivers to. Publishing with nobody
+ * listening costs a map lookup, so the controller can publish every move even
+ * in headless games no one watches.
+ *
+ * @author Connie Sun, Ryan Smith, Luke Hankins, Tim Gavlick
+ */
+public class EventBus {
+
+	private final Map<Class<?>, List<Consumer<Object>>> listeners = new HashMap<Class<?>, List<Consumer<Object>>>();
+	private int listenerCount;
+
+	/**
+	 * Call a listener with every event of the given kind from now on.
+	 *
+	 * @param <E>      the kind of event
+	 * @param type     class of the events to listen to, or GameEvent.class for
+	 *                 all of them
+	 * @param listener called with each event
+	 */
+	@SuppressWarnings("unchecked")
+	public <E extends GameEvent> void subscribe(Class<E> type, Consumer<? super E> listener) {
+		listeners.computeIfAbsent(type, k -> new CopyOnWriteArrayList<Consumer<Object>>())
+				.add((Consumer<Object>) listener);
+		listenerCount++;
+	}
+
+	/**
+	 * Stop calling a listener subscribed with subscribe().
+	 *
+	 * @param type     class the listener was subscribed to
+	 * @param listener the same listener that was subscribed
+	 * @return true if the listener was subscribed
+	 */
+	public boolean unsubscribe(Class<? extends GameEvent> type, Consumer<?> listener) {
+		List<Consumer<Object>> list = listeners.get(type);
+		if (list == null || !list.remove(listener))
+			return false;
+		listenerCount--;
+		return true;
+	}
+
+	/**
+	 * Deliver an event to everyone listening to its kind, then to everyone
+	 * listening to all events.
+	 *
+	 * @param event the event
+	 */
+	public void publish(GameEvent event) {
+		if (listenerCount == 0)
+			return;
+		deliver(listeners.get(event.getClass()), event);
+		deliver(listeners.get(GameEvent.class), event);
+	}
+
+	private static void deliver(List<Consumer<Object>> list, GameEvent event) {
+		if (list == null)
+			return;
+		for (Consumer<Object> listener : list)
+			listener.accept(event);
+	}
+
+}
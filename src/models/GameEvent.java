@@ -0,0 +1,128 @@
+package models;
+
+import components.City;
+import components.Unit;
+
+/**
+ * Something that happened in a game, published on the model's EventBus (see
+ * CivModel.getEvents()). Each kind of event is a record nested in here, and
+ * every event that happens somewhere on the board says where, so a listener
+ * can redraw, save or count just what it cares about without rescanning the
+ * board.
+ *
+ * <p>
+ * Everything but ModelChanged is published the moment it happens, batch or
+ * not. ModelChanged is the old whole-model notification: inside a batch (see
+ * CivModel.beginBatch()) it's held back and published once at the end, saying
+ * everything that changed in between.
+ *
+ * @author Connie Sun, Ryan Smith, Luke Hankins, Tim Gavlick
+ */
+public interface GameEvent {
+
+	/**
+	 * A unit stepped from one tile onto a neighbouring one.
+	 *
+	 * @param unit  the unit that moved
+	 * @param fromX x location it moved from
+	 * @param fromY y location it moved from
+	 * @param toX   x location it moved to
+	 * @param toY   y location it moved to
+	 */
+	record UnitMoved(Unit unit, int fromX, int fromY, int toX, int toY) implements GameEvent {
+	}
+
+	/**
+	 * A unit was put on the board, either at the start of the game or by a city.
+	 *
+	 * @param unit the new unit
+	 * @param x    x location of its tile
+	 * @param y    y location of its tile
+	 */
+	record UnitCreated(Unit unit, int x, int y) implements GameEvent {
+	}
+
+	/**
+	 * A unit attacked the unit or city on a neighbouring tile. Published before
+	 * the fight's outcome: whatever died gets its own event afterwards, and a
+	 * winner moving onto the tile gets a UnitMoved.
+	 *
+	 * @param attacker the attacking unit
+	 * @param fromX    x location of the attacker
+	 * @param fromY    y location of the attacker
+	 * @param targetX  x location of the tile attacked
+	 * @param targetY  y location of the tile attacked
+	 */
+	record UnitAttacked(Unit attacker, int fromX, int fromY, int targetX, int targetY) implements GameEvent {
+	}
+
+	/**
+	 * A unit was killed and taken off the board.
+	 *
+	 * @param unit the dead unit
+	 * @param x    x location of the tile it died on
+	 * @param y    y location of the tile it died on
+	 */
+	record UnitDied(Unit unit, int x, int y) implements GameEvent {
+	}
+
+	/**
+	 * A settler founded a city, using itself up.
+	 *
+	 * @param city    the new city
+	 * @param settler the settler, now off the board
+	 * @param x       x location of the city tile
+	 * @param y       y location of the city tile
+	 */
+	record CityFounded(City city, Unit settler, int x, int y) implements GameEvent {
+	}
+
+	/**
+	 * A city was destroyed and its tiles released.
+	 *
+	 * @param city the destroyed city
+	 * @param x    x location of the city tile
+	 * @param y    y location of the city tile
+	 */
+	record CityDestroyed(City city, int x, int y) implements GameEvent {
+	}
+
+	/**
+	 * A rectangle of tiles was revealed to a player. Some or all of them may
+	 * have been revealed already.
+	 *
+	 * @param player the player who can now see the tiles
+	 * @param left   smallest x in the rectangle
+	 * @param top    smallest y in the rectangle
+	 * @param right  largest x in the rectangle
+	 * @param bottom largest y in the rectangle
+	 */
+	record TilesRevealed(Player player, int left, int top, int right, int bottom) implements GameEvent {
+	}
+
+	/**
+	 * A player lost their last city and is out of the game.
+	 *
+	 * @param player the defeated player
+	 */
+	record PlayerDefeated(Player player) implements GameEvent {
+	}
+
+	/**
+	 * A player's turn ended and play passed to the next player.
+	 *
+	 * @param player the player whose turn ended
+	 * @param round  the round the turn was in
+	 */
+	record TurnEnded(Player player, int round) implements GameEvent {
+	}
+
+	/**
+	 * The model changed; published once per batch. See ModelChange.
+	 *
+	 * @param change what changed since the last ModelChanged
+	 */
+	record ModelChanged(ModelChange change) implements GameEvent {
+	}
+
+}
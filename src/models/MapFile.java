@@ -0,0 +1,180 @@
+package models;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import components.Tile;
+import components.TileStore;
+
+/**
+ * A map in the binary map format, opened as a memory-mapped file.
+ *
+ * <p>
+ * The format is a header (magic number, format version, board size) followed
+ * by one byte of terrain id per tile and then one byte of resource id per
+ * tile, both in the board's tile index order (y * size + x). That is exactly
+ * how a TileStore keeps them, so building a board is two bulk copies out of
+ * the mapping. Nothing is read when the file is opened; getTerrainType() and
+ * getResourceType() read single tiles straight out of the mapping, so a huge
+ * map can be looked at (e.g. for a preview) without building a board at all.
+ *
+ * <p>
+ * Text maps (size on the first line, then "terrain resource" per tile) can be
+ * converted with convert(), or with the CivMapConverter launcher.
+ *
+ * @author Connie Sun, Ryan Smith, Luke Hankins, Tim Gavlick
+ */
+public class MapFile {
+
+	/** "CIVM" */
+	public static final int MAGIC = 0x4349564D;
+	/** version written by this code; loaders refuse anything newer */
+	public static final int VERSION = 1;
+
+	private static final int HEADER_BYTES = 12;
+
+	private final String path;
+	private final MappedByteBuffer buffer;
+	private final int size;
+
+	/**
+	 * Open and map a binary map file.
+	 *
+	 * @param path file to open
+	 * @throws IOException if the file can't be read, isn't a binary map, or is
+	 *                     the wrong length for its size
+	 */
+	public MapFile(String path) throws IOException {
+		this.path = path;
+		try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+			if (channel.size() < HEADER_BYTES)
+				throw new IOException(path + " is not a binary map");
+			this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		if (buffer.getInt(0) != MAGIC)
+			throw new IOException(path + " is not a binary map");
+		int version = buffer.getInt(4);
+		if (version > VERSION)
+			throw new IOException(path + " was saved by a newer version (" + version + ")");
+		this.size = buffer.getInt(8);
+		if (size < 1 || (long) HEADER_BYTES + 2L * size * size != buffer.capacity())
+			throw new IOException(path + " is the wrong length for a size " + size + " map");
+	}
+
+	/**
+	 * Check whether a file starts like a binary map, without mapping it.
+	 *
+	 * @param path file to check
+	 * @return true if the file starts with the binary map magic number
+	 */
+	public static boolean isMapFile(String path) {
+		try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+			ByteBuffer magic = ByteBuffer.allocate(4);
+			while (magic.hasRemaining() && channel.read(magic) >= 0)
+				;
+			return !magic.hasRemaining() && magic.getInt(0) == MAGIC;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Get the width (and height) of the map.
+	 *
+	 * @return int giving the dimension of the map
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * Read the terrain of one tile straight from the file.
+	 *
+	 * @param x int specifying x location on the map
+	 * @param y int specifying y location on the map
+	 * @return the terrain type of the tile
+	 * @throws IllegalArgumentException if the file holds an unknown terrain id
+	 */
+	public Tile.terrainTypes getTerrainType(int x, int y) {
+		return TileStore.terrainOf(buffer.get(HEADER_BYTES + y * size + x));
+	}
+
+	/**
+	 * Read the resource of one tile straight from the file.
+	 *
+	 * @param x int specifying x location on the map
+	 * @param y int specifying y location on the map
+	 * @return resource name ("wheat", "horse", "iron") or "" for none
+	 * @throws IllegalArgumentException if the file holds an unknown resource id
+	 */
+	public String getResourceType(int x, int y) {
+		return TileStore.resourceOf(buffer.get(HEADER_BYTES + size * size + y * size + x));
+	}
+
+	/**
+	 * Fill in a store's terrain and resources from the file.
+	 *
+	 * @param tiles a store of the same size as the map
+	 * @throws IllegalArgumentException if the file holds an unknown terrain or
+	 *                                  resource id
+	 */
+	void loadInto(TileStore tiles) {
+		tiles.readMapFrom(mapBuffer());
+	}
+
+	/**
+	 * Get the terrain and resource ids as a read-only view of the mapping, laid
+	 * out as TileStore.writeMapTo() writes them.
+	 *
+	 * @return buffer positioned at the first terrain id
+	 */
+	ByteBuffer mapBuffer() {
+		ByteBuffer map = buffer.asReadOnlyBuffer();
+		map.position(HEADER_BYTES);
+		return map.slice();
+	}
+
+	/**
+	 * Write a board's terrain and resources as a binary map.
+	 *
+	 * @param board the board to write; cities, units and fog are left out
+	 * @param path  file to write, replaced if it exists
+	 * @throws IOException if the file can't be written
+	 */
+	public static void write(CivBoard board, String path) throws IOException {
+		int size = board.getSize();
+		try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+					HEADER_BYTES + 2L * size * size);
+			out.putInt(MAGIC).putInt(VERSION).putInt(size);
+			board.getTiles().writeMapTo(out);
+			out.force();
+		}
+	}
+
+	/**
+	 * Convert a text map into a binary map.
+	 *
+	 * @param textPath the text map to read
+	 * @param mapPath  the binary map to write, replaced if it exists
+	 * @throws IOException if either file can't be read or written
+	 */
+	public static void convert(String textPath, String mapPath) throws IOException {
+		write(new CivBoard(textPath), mapPath);
+	}
+
+	/**
+	 * Get the file the map was opened from.
+	 *
+	 * @return path of the map
+	 */
+	public String getPath() {
+		return path;
+	}
+
+}
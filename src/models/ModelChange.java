@@ -0,0 +1,79 @@
+package models;
+
+import java.util.BitSet;
+
+/**
+ * What changed in a CivModel since it last published a ModelChanged event (see
+ * GameEvent). This is what that event carries.
+ *
+ * <p>
+ * Inside a batch (see CivModel.beginBatch()) any number of changes are folded
+ * into one event, so a ModelChange can stand for a whole computer turn
+ * or more. Changed tiles are the ones whose unit, city or owning city changed,
+ * plus the ones whose unit or city healed at the start of a turn (see
+ * CivBoard.markChanged()). Fog of war isn't included (see
+ * CivBoard.revealedSince()), and neither is damage from a fight (see
+ * GameEvent.UnitAttacked).
+ *
+ * @field changes      number of changeAndNotify() calls folded into this one
+ * @field changedTiles indexes (y * size + x) of the tiles that changed
+ * @field newPlayer    whether the current player is different from the last
+ *                     event's
+ * @field player       the current player when the event was published
+ * @field round        the round number when the event was published
+ * @author Connie Sun, Ryan Smith, Luke Hankins, Tim Gavlick
+ */
+public class ModelChange {
+
+	private final int changes;
+	private final BitSet changedTiles;
+	private final boolean newPlayer;
+	private final Player player;
+	private final int round;
+
+	ModelChange(int changes, BitSet changedTiles, boolean newPlayer, Player player, int round) {
+		this.changes = changes;
+		this.changedTiles = changedTiles;
+		this.newPlayer = newPlayer;
+		this.player = player;
+		this.round = round;
+	}
+
+	/**
+	 * @return number of changes folded into this event, at least 1
+	 */
+	public int getChangeCount() {
+		return changes;
+	}
+
+	/**
+	 * @return BitSet of the tile indexes (y * size + x) whose unit, city or owning
+	 *         city changed
+	 */
+	public BitSet getChangedTiles() {
+		return changedTiles;
+	}
+
+	/**
+	 * @return true if play has passed to another player since the last
+	 *         event
+	 */
+	public boolean isNewPlayer() {
+		return newPlayer;
+	}
+
+	/**
+	 * @return the player whose turn it was when the event was published
+	 */
+	public Player getPlayer() {
+		return player;
+	}
+
+	/**
+	 * @return the round number when the event was published
+	 */
+	public int getRound() {
+		return round;
+	}
+
+}
@@ -0,0 +1,297 @@
+package models;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import components.Tile;
+
+/**
+ * Generates maps of any size from seeded value noise, in parallel.
+ *
+ * <p>
+ * Every tile is worked out from its own coordinates and the seed alone: the
+ * noise at a tile comes from hashing the corners of the lattice cells around
+ * it, not from a shared Random. So rows can be generated in any order on any
+ * number of threads and the map is always the same for the same seed. Rows are
+ * split in half recursively across a ForkJoinPool until each task has a small
+ * band of rows to fill.
+ *
+ * <p>
+ * Generation runs in passes:
+ * <ol>
+ * <li>terrain: two layers of fractal value noise, elevation and moisture.
+ * Low elevation is water, high is hills and then mountains, and wet lowland
+ * is swamp. Everything else is field.</li>
+ * <li>resources: a few tiles, picked by hash, get the resource that goes with
+ * their terrain (wheat on fields, iron on hills, horses in swamps).</li>
+ * <li>regions: the border becomes water, the four starting areas (the same
+ * spots as map 4) are cleared to fields, and any starting area that can't be
+ * walked to from the first one gets a field corridor carved to it.</li>
+ * </ol>
+ * The first two passes run in parallel; the last is quick and runs after them.
+ *
+ * @author Connie Sun, Ryan Smith, Luke Hankins, Tim Gavlick
+ */
+public class NoiseMapGenerator {
+
+	/** smallest map that has room for the starting areas */
+	public static final int MIN_SIZE = 8;
+
+	private static final int OCTAVES = 4;
+	private static final int ROWS_PER_TASK = 16;
+	private static final int START_RADIUS = 2;
+
+	private static final double SEA_LEVEL = 0.36;
+	private static final double HILL_LEVEL = 0.6;
+	private static final double MOUNTAIN_LEVEL = 0.68;
+	private static final double SWAMP_MOISTURE = 0.6;
+	private static final double SWAMP_LEVEL = 0.48;
+	/** chance of a tile whose terrain has a resource getting it */
+	private static final double RESOURCE_CHANCE = 0.05;
+
+	// noise layers
+	private static final int ELEVATION = 1;
+	private static final int MOISTURE = 2;
+	private static final int RESOURCES = 3;
+
+	private static final byte FIELD = (byte) Tile.terrainTypes.FIELD.ordinal();
+	private static final byte HILL = (byte) Tile.terrainTypes.HILL.ordinal();
+	private static final byte SWAMP = (byte) Tile.terrainTypes.SWAMP.ordinal();
+	private static final byte WATER = (byte) Tile.terrainTypes.WATER.ordinal();
+	private static final byte MOUNTAIN = (byte) Tile.terrainTypes.MOUNTAIN.ordinal();
+	// resource ids, as in TileStore
+	private static final byte WHEAT = 1;
+	private static final byte HORSE = 2;
+	private static final byte IRON = 3;
+
+	private final long seed;
+
+	/**
+	 * Set up a generator.
+	 *
+	 * @param seed the seed every map from this generator is made from
+	 */
+	public NoiseMapGenerator(long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * Generate a map on the common pool.
+	 *
+	 * @param size width and height of the map in tiles
+	 * @return the generated board
+	 * @throws IllegalArgumentException if size is less than MIN_SIZE
+	 */
+	public CivBoard generate(int size) {
+		return generate(size, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Generate a map on the given pool. The result doesn't depend on the pool.
+	 *
+	 * @param size width and height of the map in tiles
+	 * @param pool the ForkJoinPool to generate rows on
+	 * @return the generated board
+	 * @throws IllegalArgumentException if size is less than MIN_SIZE
+	 */
+	public CivBoard generate(int size, ForkJoinPool pool) {
+		if (size < MIN_SIZE)
+			throw new IllegalArgumentException("generated maps must be at least " + MIN_SIZE + " tiles across");
+		byte[] map = new byte[2 * size * size]; // terrain ids, then resource ids
+		pool.invoke(new Rows(map, size, 0, size));
+		placeRegions(map, size);
+		return new CivBoard(size, ByteBuffer.wrap(map));
+	}
+
+	/**
+	 * Fills rows [from, to) of the terrain and resource passes.
+	 */
+	private class Rows extends RecursiveAction {
+		private final byte[] map;
+		private final int size, from, to;
+
+		private Rows(byte[] map, int size, int from, int to) {
+			this.map = map;
+			this.size = size;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= ROWS_PER_TASK) {
+				int cell = Math.max(MIN_SIZE, size / 8);
+				int count = size * size;
+				for (int y = from; y < to; y++) {
+					for (int x = 0; x < size; x++) {
+						byte terrain = terrainAt(x, y, cell);
+						map[y * size + x] = terrain;
+						map[count + y * size + x] = resourceAt(x, y, terrain);
+					}
+				}
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			invokeAll(new Rows(map, size, from, mid), new Rows(map, size, mid, to));
+		}
+	}
+
+	private byte terrainAt(int x, int y, int cell) {
+		double elevation = fractalNoise(ELEVATION, x, y, cell);
+		if (elevation < SEA_LEVEL)
+			return WATER;
+		if (elevation >= MOUNTAIN_LEVEL)
+			return MOUNTAIN;
+		if (elevation >= HILL_LEVEL)
+			return HILL;
+		if (elevation < SWAMP_LEVEL && fractalNoise(MOISTURE, x, y, cell) >= SWAMP_MOISTURE)
+			return SWAMP;
+		return FIELD;
+	}
+
+	private byte resourceAt(int x, int y, byte terrain) {
+		if (hashToUnit(RESOURCES, x, y) >= RESOURCE_CHANCE)
+			return 0;
+		if (terrain == FIELD)
+			return WHEAT;
+		if (terrain == HILL)
+			return IRON;
+		if (terrain == SWAMP)
+			return HORSE;
+		return 0;
+	}
+
+	/**
+	 * Border, starting areas and the corridors between them.
+	 */
+	private void placeRegions(byte[] map, int size) {
+		for (int i = 0; i < size; i++) {
+			setTile(map, size, i, 0, WATER);
+			setTile(map, size, i, size - 1, WATER);
+			setTile(map, size, 0, i, WATER);
+			setTile(map, size, size - 1, i, WATER);
+		}
+		int[][] starts = { { 2, 2 }, { size - 3, size - 3 }, { size - 3, 2 }, { 2, size - 3 } };
+		for (int[] start : starts) {
+			for (int dx = -START_RADIUS; dx <= START_RADIUS; dx++) {
+				for (int dy = -START_RADIUS; dy <= START_RADIUS; dy++) {
+					int x = start[0] + dx, y = start[1] + dy;
+					if (x > 0 && x < size - 1 && y > 0 && y < size - 1)
+						setTile(map, size, x, y, FIELD);
+				}
+			}
+		}
+		boolean[] reached = reachable(map, size, starts[0][0], starts[0][1]);
+		for (int s = 1; s < starts.length; s++) {
+			if (reached[starts[s][1] * size + starts[s][0]])
+				continue;
+			// walk from the stranded start towards the first, clearing the way
+			int x = starts[s][0], y = starts[s][1];
+			while (!reached[y * size + x]) {
+				if (x != starts[0][0])
+					x += Integer.signum(starts[0][0] - x);
+				else
+					y += Integer.signum(starts[0][1] - y);
+				if (!passable(map[y * size + x]))
+					setTile(map, size, x, y, FIELD);
+			}
+			reached = reachable(map, size, starts[0][0], starts[0][1]);
+		}
+	}
+
+	/**
+	 * Flood fill over the tiles units can walk on.
+	 */
+	private static boolean[] reachable(byte[] map, int size, int fromX, int fromY) {
+		boolean[] reached = new boolean[size * size];
+		int[] queue = new int[size * size];
+		int head = 0, tail = 0;
+		reached[fromY * size + fromX] = true;
+		queue[tail++] = fromY * size + fromX;
+		while (head < tail) {
+			int i = queue[head++];
+			int x = i % size, y = i / size;
+			for (int dx = -1; dx <= 1; dx++) {
+				for (int dy = -1; dy <= 1; dy++) {
+					int nx = x + dx, ny = y + dy;
+					if (nx < 0 || nx >= size || ny < 0 || ny >= size)
+						continue;
+					int n = ny * size + nx;
+					if (!reached[n] && passable(map[n])) {
+						reached[n] = true;
+						queue[tail++] = n;
+					}
+				}
+			}
+		}
+		return reached;
+	}
+
+	private static boolean passable(byte terrain) {
+		return terrain != WATER && terrain != MOUNTAIN;
+	}
+
+	private static void setTile(byte[] map, int size, int x, int y, byte terrain) {
+		map[y * size + x] = terrain;
+		map[size * size + y * size + x] = 0;
+	}
+
+	/**
+	 * Sum OCTAVES layers of value noise, each with half the cell size and half
+	 * the weight of the last.
+	 *
+	 * @return noise between 0 and 1
+	 */
+	private double fractalNoise(int layer, int x, int y, int cell) {
+		double total = 0, weight = 1, weights = 0;
+		for (int octave = 0; octave < OCTAVES && cell >= 1; octave++) {
+			total += weight * valueNoise(layer * OCTAVES + octave, x, y, cell);
+			weights += weight;
+			weight /= 2;
+			cell /= 2;
+		}
+		return total / weights;
+	}
+
+	/**
+	 * Value noise: a random value at each corner of a grid of cell x cell squares,
+	 * smoothly interpolated in between.
+	 *
+	 * @return noise between 0 and 1
+	 */
+	private double valueNoise(int layer, int x, int y, int cell) {
+		int cx = x / cell, cy = y / cell;
+		double fx = smooth((double) (x - cx * cell) / cell);
+		double fy = smooth((double) (y - cy * cell) / cell);
+		double top = lerp(hashToUnit(layer, cx, cy), hashToUnit(layer, cx + 1, cy), fx);
+		double bottom = lerp(hashToUnit(layer, cx, cy + 1), hashToUnit(layer, cx + 1, cy + 1), fx);
+		return lerp(top, bottom, fy);
+	}
+
+	private static double smooth(double t) {
+		return t * t * (3 - 2 * t);
+	}
+
+	private static double lerp(double a, double b, double t) {
+		return a + (b - a) * t;
+	}
+
+	/**
+	 * Hash a lattice point of a layer, with the seed, to a value in [0, 1).
+	 */
+	private double hashToUnit(int layer, int x, int y) {
+		long h = mix(seed ^ mix(layer * 0x9E3779B97F4A7C15L + x * 0xC2B2AE3D27D4EB4FL + y * 0x165667B19E3779F9L));
+		return (h >>> 11) * 0x1.0p-53;
+	}
+
+	/**
+	 * The SplitMix64 finalizer.
+	 */
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+}
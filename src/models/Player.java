@@ -22,6 +22,8 @@ public class Player implements Serializable {
 	private ArrayList<Unit> units;
 	private ArrayList<City> cities;
 	private boolean isHuman;
+	// unit or city list changed since the last save (see SaveJournal)
+	boolean dirty = true;
 
 	String ID;
 	/**
@@ -43,6 +45,7 @@ public class Player implements Serializable {
 	 * @param city the city object to add
 	 */
 	public void addCity(City city) {
+		dirty = true;
 		this.cities.add(city);
 	}
 	/**
@@ -50,6 +53,7 @@ public class Player implements Serializable {
 	 * @param unit the unit object to add
 	 */
 	public void addUnit(Unit unit) {
+		dirty = true;
 		units.add(unit);
 	}
 	/**
@@ -78,14 +82,14 @@ public class Player implements Serializable {
 	 * @param unit Unit to be removed from this Player's Unit collection
 	 */
 	public void removeUnit(Unit unit) {
-		this.units.remove(unit);
+		dirty |= this.units.remove(unit);
 	}
 	/**
 	 * Remove a City from this Player's City collection (for use when City dies)
 	 * @param city City to be removed from this Player's Unit collection
 	 */
 	public void removeCity(City city) {
-		this.cities.remove(city);
+		dirty |= this.cities.remove(city);
 	}
 	/**
 	 * Gives access to this Player's ID/name for displaying in the View or specifying in the Controller
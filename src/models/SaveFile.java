@@ -0,0 +1,558 @@
+package models;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import components.City;
+import components.TileStore;
+import components.Unit;
+
+/**
+ * Reads and writes games in the binary save format.
+ *
+ * <p>
+ * A save starts with a header (magic number, format version, section count)
+ * followed by one section per part of the game, each a 4 byte tag and a 4 byte
+ * length followed by that many bytes of payload:
+ *
+ * <pre>
+ * GAME  round, single player flag, seed, RNG state, current player,
+ *       starting coordinates
+ * PLYR  every player: human flag, still-in-game flag, ID
+ * BORD  the board's packed tile arrays (TileStore.writeTo())
+ * UNIT  every unit: owner, listed-by-owner flag, registry id, unit data
+ * CITY  every city: owner, listed-by-owner flag, registry id, city data
+ * FOG   every player's revealed tiles as the words of a BitSet
+ * CKPT  (optional) id of the SaveJournal checkpoint this save is
+ * </pre>
+ *
+ * Players are numbered by their order in PLYR: the players still in the game
+ * in turn order, then any eliminated players who still own something on the
+ * board. Units and cities are written in their owners' list order, then any
+ * that only the board still refers to. Everything is big-endian and written
+ * and read through a FileChannel. Loaders skip sections they don't use by
+ * seeking past them, so new sections can be added without breaking old code.
+ * The BORD section of a board bigger than CivBoard.PAGED_SIZE is mapped
+ * rather than read, and the board pages its tiles out of the mapping.
+ *
+ * <p>
+ * A game's random number generator is a SplitMix64, whose whole state is one
+ * long, so its state is saved as is and saving never draws from it: a game
+ * plays out the same whether or not it's saved along the way.
+ *
+ * @author Connie Sun, Ryan Smith, Luke Hankins, Tim Gavlick
+ */
+public class SaveFile {
+
+	/** "CIV5" */
+	public static final int MAGIC = 0x43495635;
+	/** version written by this code; loaders refuse anything newer */
+	public static final int VERSION = 1;
+
+	static final int GAME = tag("GAME");
+	static final int PLAYERS = tag("PLYR");
+	static final int BOARD = tag("BORD");
+	static final int UNITS = tag("UNIT");
+	static final int CITIES = tag("CITY");
+	static final int FOG = tag("FOG ");
+	static final int CHECKPOINT = tag("CKPT");
+	static final int TILES = tag("TILE");
+	static final int LISTS = tag("LIST");
+
+	static final int HEADER_BYTES = 12;
+	static final int SECTION_HEADER_BYTES = 8;
+	/** BORD length for a PAGED_SIZE board; longer ones are mapped, not read */
+	static final long PAGED_BOARD_BYTES = 4 + 11L * CivBoard.PAGED_SIZE * CivBoard.PAGED_SIZE;
+
+	private SaveFile() {
+	}
+
+	/**
+	 * Save a game.
+	 *
+	 * @param model the game to save
+	 * @param path  file to write, replaced if it exists
+	 * @throws IOException if the file can't be written
+	 */
+	public static void write(CivModel model, String path) throws IOException {
+		write(encode(model), path);
+	}
+
+	/**
+	 * Write an encoded save to a file. The save goes to a temporary file next to
+	 * it first, which is then renamed over the target, so a crash mid-write never
+	 * leaves a half-written save behind.
+	 *
+	 * @param save buffers returned by encode(); they are used up
+	 * @param path file to write, replaced if it exists
+	 * @return number of bytes written
+	 * @throws IOException if the file can't be written
+	 */
+	public static long write(ByteBuffer[] save, String path) throws IOException {
+		Path target = Paths.get(path).toAbsolutePath();
+		Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+		long total = 0;
+		try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			for (ByteBuffer b : save)
+				total += b.remaining();
+			long remaining = total;
+			while (remaining > 0)
+				remaining -= channel.write(save);
+			channel.force(true);
+		}
+		try {
+			Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+		return total;
+	}
+
+	/**
+	 * Encode a game into the header and sections of a save. This is the only
+	 * part of saving that reads the model, and it just copies state into fresh
+	 * buffers, so the result is a consistent snapshot that can be written out on
+	 * another thread while play carries on.
+	 *
+	 * @param model the game to save
+	 * @return the header followed by each section, ready to be written in order
+	 */
+	public static ByteBuffer[] encode(CivModel model) {
+		return encode(model, 0);
+	}
+
+	/**
+	 * Encode a game, tagged as the checkpoint a SaveJournal's deltas apply to.
+	 *
+	 * @param model      the game to save
+	 * @param checkpoint the checkpoint's id, or 0 to leave the save untagged
+	 * @return the header followed by each section, ready to be written in order
+	 */
+	static ByteBuffer[] encode(CivModel model, long checkpoint) {
+		CivBoard board = model.getCivBoard();
+		TileStore tiles = board.getTiles();
+		List<Player> players = model.getAllPlayers();
+		int inGame = players.size();
+
+		// gather every unit and city, in owner list order first
+		Map<Unit, Boolean> units = new IdentityHashMap<Unit, Boolean>();
+		List<Unit> unitOrder = new ArrayList<Unit>();
+		Map<City, Boolean> cities = new IdentityHashMap<City, Boolean>();
+		List<City> cityOrder = new ArrayList<City>();
+		for (Player p : players) {
+			for (Unit u : p.getUnits()) {
+				if (units.put(u, true) == null)
+					unitOrder.add(u);
+			}
+			for (City c : p.getCities()) {
+				if (cities.put(c, true) == null)
+					cityOrder.add(c);
+			}
+		}
+		int size = board.getSize();
+		for (int x = 0; x < size; x++) {
+			for (int y = 0; y < size; y++) {
+				Unit u = tiles.getUnit(x, y);
+				if (u != null && !units.containsKey(u)) {
+					units.put(u, false);
+					unitOrder.add(u);
+				}
+				City c = tiles.getOwnerCity(x, y);
+				if (c != null && !cities.containsKey(c)) {
+					cities.put(c, false);
+					cityOrder.add(c);
+				}
+			}
+		}
+		// eliminated players who still own something on the board
+		for (Unit u : unitOrder) {
+			if (!players.contains(u.getOwner()))
+				players.add(u.getOwner());
+		}
+		for (City c : cityOrder) {
+			if (!players.contains(c.getOwner()))
+				players.add(c.getOwner());
+		}
+
+		ByteBuffer game = gameSection(model, players);
+		ByteBuffer playerSection = playerSection(players, inGame);
+
+		ByteBuffer boardSection = section(BOARD, board.saveBytes());
+		board.writeTo(boardSection);
+
+		ByteBuffer unitSection = section(UNITS, 4 + unitOrder.size() * (4 + 1 + 4 + Unit.SAVE_BYTES));
+		unitSection.putInt(unitOrder.size());
+		for (Unit u : unitOrder) {
+			unitSection.putInt(players.indexOf(u.getOwner()));
+			unitSection.put((byte) (units.get(u) ? 1 : 0));
+			unitSection.putInt(tiles.idOf(u));
+			u.writeTo(unitSection);
+		}
+
+		ByteBuffer citySection = section(CITIES, 4 + cityOrder.size() * (4 + 1 + 4 + City.SAVE_BYTES));
+		citySection.putInt(cityOrder.size());
+		for (City c : cityOrder) {
+			citySection.putInt(players.indexOf(c.getOwner()));
+			citySection.put((byte) (cities.get(c) ? 1 : 0));
+			citySection.putInt(tiles.idOf(c));
+			c.writeTo(citySection);
+		}
+
+		ByteBuffer fogSection = fogSection(board, players);
+
+		List<ByteBuffer> sections = new ArrayList<ByteBuffer>(Arrays.asList(game, playerSection, boardSection,
+				unitSection, citySection, fogSection));
+		if (checkpoint != 0)
+			sections.add(section(CHECKPOINT, 8).putLong(checkpoint));
+		ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+		header.putInt(MAGIC).putInt(VERSION).putInt(sections.size()).flip();
+		ByteBuffer[] result = new ByteBuffer[sections.size() + 1];
+		result[0] = header;
+		for (int i = 0; i < sections.size(); i++)
+			result[i + 1] = sections.get(i).flip();
+		return result;
+	}
+
+	/**
+	 * Encode the GAME section.
+	 *
+	 * @param players the players being saved, in PLYR order
+	 * @return the section, not yet flipped
+	 */
+	static ByteBuffer gameSection(CivModel model, List<Player> players) {
+		ByteBuffer game = section(GAME, 4 + 1 + 8 + 8 + 4 + 4 + 8 * model.getPlayerStartingCoords().size());
+		game.putInt(model.roundNumber());
+		game.put((byte) (model.isSinglePlayer() ? 1 : 0));
+		game.putLong(model.getSeed());
+		game.putLong(model.getRandom().getState());
+		game.putInt(players.indexOf(model.getCurPlayer()));
+		game.putInt(model.getPlayerStartingCoords().size());
+		for (int[] coord : model.getPlayerStartingCoords()) {
+			game.putInt(coord[0]);
+			game.putInt(coord[1]);
+		}
+		return game;
+	}
+
+	/**
+	 * Encode the PLYR section.
+	 *
+	 * @param players the players being saved, those still in the game first
+	 * @param inGame  how many of them are still in the game
+	 * @return the section, not yet flipped
+	 */
+	static ByteBuffer playerSection(List<Player> players, int inGame) {
+		byte[][] ids = new byte[players.size()][];
+		int playerBytes = 4;
+		for (int i = 0; i < players.size(); i++) {
+			ids[i] = players.get(i).getID().getBytes(StandardCharsets.UTF_8);
+			playerBytes += 1 + 1 + 4 + ids[i].length;
+		}
+		ByteBuffer playerSection = section(PLAYERS, playerBytes);
+		playerSection.putInt(players.size());
+		for (int i = 0; i < players.size(); i++) {
+			playerSection.put((byte) (players.get(i).isHuman() ? 1 : 0));
+			playerSection.put((byte) (i < inGame ? 1 : 0));
+			playerSection.putInt(ids[i].length);
+			playerSection.put(ids[i]);
+		}
+		return playerSection;
+	}
+
+	/**
+	 * Encode the FOG section.
+	 *
+	 * @param players the players being saved, in PLYR order
+	 * @return the section, not yet flipped
+	 */
+	static ByteBuffer fogSection(CivBoard board, List<Player> players) {
+		long[][] fog = new long[players.size()][];
+		int fogBytes = 4;
+		for (int i = 0; i < players.size(); i++) {
+			fog[i] = board.getRevealed(players.get(i)).toLongArray();
+			fogBytes += 4 + 8 * fog[i].length;
+		}
+		ByteBuffer fogSection = section(FOG, fogBytes);
+		fogSection.putInt(players.size());
+		for (long[] words : fog) {
+			fogSection.putInt(words.length);
+			for (long w : words)
+				fogSection.putLong(w);
+		}
+		return fogSection;
+	}
+
+	/**
+	 * Load a saved game into a model. If the save is a SaveJournal checkpoint and
+	 * its journal is next to it, the journal's deltas are replayed on top.
+	 *
+	 * @param model the (freshly constructed) model to restore the game into
+	 * @param path  file to read
+	 * @throws IOException              if the file can't be read or isn't a save
+	 * @throws IllegalArgumentException if the save's contents don't add up
+	 */
+	static void read(CivModel model, String path) throws IOException {
+		Map<Integer, ByteBuffer> sections = readSections(path, GAME, PLAYERS, BOARD, UNITS, CITIES, FOG,
+				CHECKPOINT);
+		for (int tag : new int[] { GAME, PLAYERS, BOARD, UNITS, CITIES, FOG }) {
+			if (!sections.containsKey(tag))
+				throw new IOException("save is missing a section");
+		}
+
+		Loaded loaded = new Loaded();
+		readPlayers(loaded, sections.get(PLAYERS));
+		loaded.board = new CivBoard(sections.get(BOARD));
+
+		ByteBuffer unitSection = sections.get(UNITS);
+		int unitCount = unitSection.getInt();
+		for (int i = 0; i < unitCount; i++) {
+			Player owner = loaded.player(unitSection.getInt());
+			boolean listed = unitSection.get() == 1;
+			int id = unitSection.getInt();
+			if (id == 0) // not on the board, so nothing else refers to it
+				id = --loaded.unboardedIds;
+			loaded.units.put(id, Unit.readFrom(unitSection, owner));
+			if (listed)
+				loaded.unitList(owner).add(id);
+		}
+
+		ByteBuffer citySection = sections.get(CITIES);
+		int cityCount = citySection.getInt();
+		for (int i = 0; i < cityCount; i++) {
+			Player owner = loaded.player(citySection.getInt());
+			boolean listed = citySection.get() == 1;
+			int id = citySection.getInt();
+			if (id == 0)
+				id = --loaded.unboardedIds;
+			loaded.cities.put(id, City.readFrom(citySection, owner));
+			if (listed)
+				loaded.cityList(owner).add(id);
+		}
+
+		readFog(loaded, sections.get(FOG));
+		readGame(loaded, sections.get(GAME));
+
+		ByteBuffer checkpoint = sections.get(CHECKPOINT);
+		if (checkpoint != null)
+			SaveJournal.replay(loaded, checkpoint.getLong(), SaveJournal.journalPath(path));
+
+		loaded.restore(model);
+	}
+
+	/**
+	 * Read a PLYR section, matching players to ones already loaded by ID.
+	 */
+	static void readPlayers(Loaded loaded, ByteBuffer playerSection) {
+		loaded.players = new ArrayList<Player>();
+		loaded.inGame = 0;
+		int playerCount = playerSection.getInt();
+		for (int i = 0; i < playerCount; i++) {
+			int human = playerSection.get();
+			if (playerSection.get() == 1)
+				loaded.inGame++;
+			byte[] bytes = new byte[playerSection.getInt()];
+			playerSection.get(bytes);
+			String id = new String(bytes, StandardCharsets.UTF_8);
+			Player p = loaded.playersById.get(id);
+			if (p == null) {
+				p = new Player(human, id);
+				loaded.playersById.put(id, p);
+			}
+			loaded.players.add(p);
+		}
+	}
+
+	/**
+	 * Read a FOG section, replacing the fog of every player in it.
+	 */
+	static void readFog(Loaded loaded, ByteBuffer fogSection) {
+		int fogCount = fogSection.getInt();
+		for (int i = 0; i < fogCount; i++) {
+			long[] words = new long[fogSection.getInt()];
+			for (int w = 0; w < words.length; w++)
+				words[w] = fogSection.getLong();
+			loaded.fog.put(loaded.player(i), BitSet.valueOf(words));
+		}
+	}
+
+	/**
+	 * Read a GAME section.
+	 */
+	static void readGame(Loaded loaded, ByteBuffer game) {
+		loaded.round = game.getInt();
+		loaded.singlePlayer = game.get() == 1;
+		loaded.seed = game.getLong();
+		loaded.randomState = game.getLong();
+		loaded.curPlayer = game.getInt();
+		loaded.startingCoords = new ArrayList<int[]>();
+		int coordCount = game.getInt();
+		for (int i = 0; i < coordCount; i++)
+			loaded.startingCoords.add(new int[] { game.getInt(), game.getInt() });
+	}
+
+	/**
+	 * A game part way through being loaded: a checkpoint, possibly with journal
+	 * deltas applied, that hasn't been put into a model yet. Units and cities
+	 * are kept by registry id and players' lists as ids, so a delta can replace
+	 * any of them.
+	 */
+	static class Loaded {
+		final Map<String, Player> playersById = new HashMap<String, Player>();
+		List<Player> players;
+		int inGame;
+		CivBoard board;
+		final Map<Integer, Unit> units = new HashMap<Integer, Unit>();
+		final Map<Integer, City> cities = new HashMap<Integer, City>();
+		final Map<Player, List<Integer>> unitLists = new HashMap<Player, List<Integer>>();
+		final Map<Player, List<Integer>> cityLists = new HashMap<Player, List<Integer>>();
+		final Map<Player, BitSet> fog = new HashMap<Player, BitSet>();
+		int unboardedIds; // keys for entities with no registry id, counting down from -1
+		int round;
+		boolean singlePlayer;
+		long seed;
+		long randomState;
+		int curPlayer;
+		ArrayList<int[]> startingCoords;
+
+		/**
+		 * @throws IllegalArgumentException if there's no such player
+		 */
+		Player player(int index) {
+			if (index < 0 || index >= players.size())
+				throw new IllegalArgumentException("no player " + index + " in save");
+			return players.get(index);
+		}
+
+		List<Integer> unitList(Player p) {
+			return unitLists.computeIfAbsent(p, k -> new ArrayList<Integer>());
+		}
+
+		List<Integer> cityList(Player p) {
+			return cityLists.computeIfAbsent(p, k -> new ArrayList<Integer>());
+		}
+
+		/**
+		 * Hook everything up and put it into a freshly constructed model.
+		 *
+		 * @throws IllegalArgumentException if anything refers to a missing unit,
+		 *                                  city or player
+		 */
+		void restore(CivModel model) {
+			if (curPlayer < 0 || curPlayer >= inGame)
+				throw new IllegalArgumentException("current player is not in the game");
+			board.getTiles().bind(units, cities);
+			for (Player p : playersById.values()) {
+				for (int id : unitList(p)) {
+					Unit u = units.get(id);
+					if (u == null)
+						throw new IllegalArgumentException(p.getID() + " lists missing unit " + id);
+					p.addUnit(u);
+				}
+				for (int id : cityList(p)) {
+					City c = cities.get(id);
+					if (c == null)
+						throw new IllegalArgumentException(p.getID() + " lists missing city " + id);
+					p.addCity(c);
+				}
+			}
+			for (Map.Entry<Player, BitSet> e : fog.entrySet())
+				board.getRevealed(e.getKey()).or(e.getValue());
+			model.restore(board, players.subList(0, inGame), curPlayer, singlePlayer, round, seed, randomState,
+					startingCoords);
+		}
+	}
+
+	/**
+	 * Load only the board of a saved game (terrain, cities and units as ids, no
+	 * players), without reading any other section.
+	 *
+	 * @param path file to read
+	 * @return the saved board; its tiles' units and cities aren't filled in
+	 * @throws IOException if the file can't be read or isn't a save
+	 */
+	public static CivBoard readBoard(String path) throws IOException {
+		ByteBuffer board = readSections(path, BOARD).get(BOARD);
+		if (board == null)
+			throw new IOException("save has no board section");
+		return new CivBoard(board);
+	}
+
+	/**
+	 * Read the payloads of the wanted sections of a save, seeking past the rest.
+	 *
+	 * @param path   file to read
+	 * @param wanted tags of the sections to read
+	 * @return each wanted section that was found, by tag, positioned at its start
+	 * @throws IOException if the file can't be read, or the header is wrong
+	 */
+	private static Map<Integer, ByteBuffer> readSections(String path, int... wanted) throws IOException {
+		Map<Integer, ByteBuffer> sections = new HashMap<Integer, ByteBuffer>();
+		try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+			ByteBuffer header = readFully(channel, HEADER_BYTES);
+			if (header.getInt() != MAGIC)
+				throw new IOException(path + " is not a save file");
+			int version = header.getInt();
+			if (version > VERSION)
+				throw new IOException(path + " was saved by a newer version (" + version + ")");
+			int count = header.getInt();
+			for (int s = 0; s < count; s++) {
+				ByteBuffer sectionHeader = readFully(channel, SECTION_HEADER_BYTES);
+				int tag = sectionHeader.getInt();
+				int length = sectionHeader.getInt();
+				boolean want = false;
+				for (int w : wanted)
+					want |= w == tag;
+				if (want && tag == BOARD && length > PAGED_BOARD_BYTES) {
+					sections.put(tag, channel.map(FileChannel.MapMode.READ_ONLY, channel.position(), length));
+					channel.position(channel.position() + length);
+				} else if (want) {
+					sections.put(tag, readFully(channel, length));
+				} else {
+					channel.position(channel.position() + length);
+				}
+			}
+		}
+		return sections;
+	}
+
+	static ByteBuffer readFully(FileChannel channel, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer) < 0)
+				throw new IOException("save file is truncated");
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	/**
+	 * Allocate a section with its header already written.
+	 */
+	static ByteBuffer section(int tag, int length) {
+		ByteBuffer buffer = ByteBuffer.allocate(SECTION_HEADER_BYTES + length);
+		buffer.putInt(tag).putInt(length);
+		return buffer;
+	}
+
+	static int tag(String name) {
+		byte[] b = name.getBytes(StandardCharsets.US_ASCII);
+		return (b[0] << 24) | (b[1] << 16) | (b[2] << 8) | b[3];
+	}
+
+}
@@ -0,0 +1,475 @@
+package models;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.CRC32;
+
+import components.City;
+import components.TileStore;
+import components.Unit;
+
+/**
+ * Saves a game as a full checkpoint followed by a journal of per-turn deltas.
+ *
+ * <p>
+ * A turn only touches a handful of tiles, units and cities, so instead of
+ * rewriting the whole game every time, record() normally encodes just what has
+ * been marked dirty since the last record, and the delta is appended to the
+ * journal (path + ".journal"). Once the journal has grown past the compaction
+ * threshold, the next record is a new checkpoint instead: a regular save (see
+ * SaveFile) tagged with a fresh checkpoint id, after which the journal is
+ * started over. Loading the checkpoint with SaveFile replays every complete
+ * delta in its journal on top of it.
+ *
+ * <p>
+ * The journal starts with a header (magic number, format version, id of the
+ * checkpoint it belongs to), so a journal left over from an older checkpoint
+ * is ignored. Each delta is a length, a CRC32 of the payload, and the payload:
+ * a section count followed by sections in the same tag/length format as a
+ * save:
+ *
+ * <pre>
+ * GAME  as in a save
+ * PLYR  as in a save: the players in the game, then every eliminated player
+ *       the journal knows about
+ * TILE  every changed tile (TileStore.writeChangesTo())
+ * UNIT  every changed unit: owner, registry id, unit data
+ * CITY  every changed city: owner, registry id, city data
+ * LIST  every player in the game whose units or cities changed: the registry
+ *       ids of all of their units, then of all of their cities
+ * FOG   as in a save (a bit per tile, so it isn't worth diffing)
+ * </pre>
+ *
+ * A delta cut short by a crash fails its length or CRC check, and replay stops
+ * there. Deltas refer to units and cities by the ids their tiles use, so a game
+ * where a player's unit isn't on the board gets a checkpoint every time.
+ *
+ * <p>
+ * Entries must be written in the order they were recorded, one at a time
+ * (Autosave does this). If a write fails, the next record is a checkpoint.
+ *
+ * @author Connie Sun, Ryan Smith, Luke Hankins, Tim Gavlick
+ */
+public class SaveJournal {
+
+	/** "CIVJ" */
+	public static final int MAGIC = 0x4349564A;
+	/** version written by this code; loaders refuse anything newer */
+	public static final int VERSION = 1;
+
+	private static final int HEADER_BYTES = 4 + 4 + 8;
+	private static final int RECORD_HEADER_BYTES = 4 + 4;
+
+	private final String path;
+	private final long compactBytes;
+
+	private long checkpoint; // id of the last checkpoint recorded, 0 before the first
+	private long journalBytes;
+	private volatile boolean failed;
+	private int checkpoints;
+	private int deltas;
+
+	// players that can own something changed, in or out of the game
+	private final List<Player> known = new ArrayList<Player>();
+	// units on the board that no player still in the game lists
+	private final List<Unit> strays = new ArrayList<Unit>();
+
+	/**
+	 * Set up a journal. Nothing is written until the first record, which is
+	 * always a checkpoint.
+	 *
+	 * @param path         file to write checkpoints to; the journal goes next to
+	 *                     it
+	 * @param compactBytes size the journal may reach before the next record is
+	 *                     a checkpoint instead of a delta
+	 */
+	public SaveJournal(String path, long compactBytes) {
+		this.path = path;
+		this.compactBytes = compactBytes;
+	}
+
+	/**
+	 * Get the journal file that goes with a checkpoint.
+	 *
+	 * @param path the checkpoint's path
+	 * @return path of the journal
+	 */
+	public static String journalPath(String path) {
+		return path + ".journal";
+	}
+
+	/**
+	 * Encode whatever has changed since the last record, or a full checkpoint if
+	 * one is due, and mark everything in it saved. Like SaveFile.encode(), this
+	 * only copies state, so the entry can be written on another thread.
+	 *
+	 * @param model the game to save
+	 * @return the entry to write
+	 */
+	public Entry record(CivModel model) {
+		if (checkpoint == 0 || failed || journalBytes >= compactBytes || !everyListedOnBoard(model))
+			return recordCheckpoint(model);
+		return recordDelta(model);
+	}
+
+	private Entry recordCheckpoint(CivModel model) {
+		long id;
+		do {
+			id = ThreadLocalRandom.current().nextLong();
+		} while (id == 0 || id == checkpoint);
+		ByteBuffer[] save = SaveFile.encode(model, id);
+		markSaved(model);
+		checkpoint = id;
+		journalBytes = HEADER_BYTES;
+		failed = false;
+		checkpoints++;
+		return new Entry(true, save, id);
+	}
+
+	private Entry recordDelta(CivModel model) {
+		CivBoard board = model.getCivBoard();
+		TileStore tiles = board.getTiles();
+		List<Player> players = model.getAllPlayers();
+		int inGame = players.size();
+		for (Player p : known) {
+			if (!players.contains(p))
+				players.add(p);
+		}
+
+		List<Unit> units = new ArrayList<Unit>();
+		List<City> cities = new ArrayList<City>();
+		List<Player> lists = new ArrayList<Player>();
+		for (int i = 0; i < players.size(); i++) {
+			Player p = players.get(i);
+			if (p.dirty && i < inGame)
+				lists.add(p);
+			p.dirty = false;
+			for (Unit u : p.getUnits())
+				takeDirty(u, tiles, units);
+			for (City c : p.getCities()) {
+				if (c.isDirty() && tiles.idOf(c) != 0)
+					cities.add(c);
+				c.clearDirty();
+			}
+		}
+		for (Unit u : strays)
+			takeDirty(u, tiles, units);
+
+		ByteBuffer game = SaveFile.gameSection(model, players);
+		ByteBuffer playerSection = SaveFile.playerSection(players, inGame);
+
+		ByteBuffer tileSection = SaveFile.section(SaveFile.TILES, tiles.changeBytes());
+		tiles.writeChangesTo(tileSection);
+
+		ByteBuffer unitSection = SaveFile.section(SaveFile.UNITS, 4 + units.size() * (4 + 4 + Unit.SAVE_BYTES));
+		unitSection.putInt(units.size());
+		for (Unit u : units) {
+			unitSection.putInt(players.indexOf(u.getOwner()));
+			unitSection.putInt(tiles.idOf(u));
+			u.writeTo(unitSection);
+		}
+
+		ByteBuffer citySection = SaveFile.section(SaveFile.CITIES, 4 + cities.size() * (4 + 4 + City.SAVE_BYTES));
+		citySection.putInt(cities.size());
+		for (City c : cities) {
+			citySection.putInt(players.indexOf(c.getOwner()));
+			citySection.putInt(tiles.idOf(c));
+			c.writeTo(citySection);
+		}
+
+		int listBytes = 4;
+		for (Player p : lists)
+			listBytes += 4 + 4 + 4 * p.getUnits().size() + 4 + 4 * p.getCities().size();
+		ByteBuffer listSection = SaveFile.section(SaveFile.LISTS, listBytes);
+		listSection.putInt(lists.size());
+		for (Player p : lists) {
+			listSection.putInt(players.indexOf(p));
+			listSection.putInt(p.getUnits().size());
+			for (Unit u : p.getUnits())
+				listSection.putInt(tiles.idOf(u));
+			listSection.putInt(p.getCities().size());
+			for (City c : p.getCities())
+				listSection.putInt(tiles.idOf(c));
+		}
+
+		ByteBuffer fogSection = SaveFile.fogSection(board, players);
+
+		ByteBuffer[] sections = { game, playerSection, tileSection, unitSection, citySection, listSection,
+				fogSection };
+		int length = 4;
+		for (ByteBuffer s : sections) {
+			s.flip();
+			length += s.remaining();
+		}
+		ByteBuffer payload = ByteBuffer.allocate(length);
+		payload.putInt(sections.length);
+		for (ByteBuffer s : sections)
+			payload.put(s);
+		payload.flip();
+		CRC32 crc = new CRC32();
+		crc.update(payload.duplicate());
+		ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+		header.putInt(length).putInt((int) crc.getValue()).flip();
+
+		journalBytes += RECORD_HEADER_BYTES + length;
+		deltas++;
+		return new Entry(false, new ByteBuffer[] { header, payload }, checkpoint);
+	}
+
+	private static void takeDirty(Unit u, TileStore tiles, List<Unit> units) {
+		if (u.isDirty() && tiles.idOf(u) != 0)
+			units.add(u);
+		u.clearDirty();
+	}
+
+	/**
+	 * Deltas can only list units and cities that have a registry id.
+	 */
+	private static boolean everyListedOnBoard(CivModel model) {
+		TileStore tiles = model.getCivBoard().getTiles();
+		for (Player p : model.getAllPlayers()) {
+			for (Unit u : p.getUnits()) {
+				if (tiles.idOf(u) == 0)
+					return false;
+			}
+			for (City c : p.getCities()) {
+				if (tiles.idOf(c) == 0)
+					return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Clear every dirty flag after a checkpoint, and work out which players and
+	 * units later deltas need to look at.
+	 */
+	private void markSaved(CivModel model) {
+		known.clear();
+		strays.clear();
+		Map<Unit, Boolean> listed = new IdentityHashMap<Unit, Boolean>();
+		for (Player p : model.getAllPlayers()) {
+			known.add(p);
+			p.dirty = false;
+			for (Unit u : p.getUnits()) {
+				u.clearDirty();
+				listed.put(u, true);
+			}
+			for (City c : p.getCities())
+				c.clearDirty();
+		}
+		CivBoard board = model.getCivBoard();
+		TileStore tiles = board.getTiles();
+		int size = board.getSize();
+		for (int x = 0; x < size; x++) {
+			for (int y = 0; y < size; y++) {
+				Unit u = tiles.getUnit(x, y);
+				if (u != null && listed.put(u, true) == null) {
+					u.clearDirty();
+					strays.add(u);
+					if (!known.contains(u.getOwner()))
+						known.add(u.getOwner());
+				}
+				City c = tiles.getOwnerCity(x, y);
+				if (c != null)
+					c.clearDirty();
+			}
+		}
+		tiles.clearChanges();
+	}
+
+	/**
+	 * Replay the deltas of a checkpoint's journal onto the loaded checkpoint.
+	 * Does nothing if there's no journal or it belongs to another checkpoint.
+	 *
+	 * @param loaded      the loaded checkpoint
+	 * @param checkpoint  the checkpoint's id
+	 * @param journalPath the journal file
+	 * @throws IOException              if the journal can't be read or isn't one
+	 * @throws IllegalArgumentException if a delta's contents don't add up
+	 */
+	static void replay(SaveFile.Loaded loaded, long checkpoint, String journalPath) throws IOException {
+		Path file = Paths.get(journalPath);
+		if (!Files.exists(file))
+			return;
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size < HEADER_BYTES)
+				return;
+			ByteBuffer header = SaveFile.readFully(channel, HEADER_BYTES);
+			if (header.getInt() != MAGIC)
+				throw new IOException(journalPath + " is not a save journal");
+			int version = header.getInt();
+			if (version > VERSION)
+				throw new IOException(journalPath + " was saved by a newer version (" + version + ")");
+			if (header.getLong() != checkpoint)
+				return;
+			while (channel.position() + RECORD_HEADER_BYTES <= size) {
+				ByteBuffer recordHeader = SaveFile.readFully(channel, RECORD_HEADER_BYTES);
+				int length = recordHeader.getInt();
+				int expected = recordHeader.getInt();
+				if (length < 4 || channel.position() + length > size)
+					break; // cut short
+				ByteBuffer record = SaveFile.readFully(channel, length);
+				CRC32 crc = new CRC32();
+				crc.update(record.duplicate());
+				if ((int) crc.getValue() != expected)
+					break;
+				applyDelta(loaded, record);
+			}
+		}
+	}
+
+	private static void applyDelta(SaveFile.Loaded loaded, ByteBuffer record) {
+		Map<Integer, ByteBuffer> sections = new HashMap<Integer, ByteBuffer>();
+		int count = record.getInt();
+		for (int s = 0; s < count; s++) {
+			int tag = record.getInt();
+			int length = record.getInt();
+			ByteBuffer section = record.slice();
+			section.limit(length);
+			record.position(record.position() + length);
+			sections.put(tag, section);
+		}
+		for (int tag : new int[] { SaveFile.GAME, SaveFile.PLAYERS, SaveFile.TILES, SaveFile.UNITS,
+				SaveFile.CITIES, SaveFile.LISTS, SaveFile.FOG }) {
+			if (!sections.containsKey(tag))
+				throw new IllegalArgumentException("journal delta is missing a section");
+		}
+
+		SaveFile.readPlayers(loaded, sections.get(SaveFile.PLAYERS));
+		SaveFile.readGame(loaded, sections.get(SaveFile.GAME));
+		loaded.board.getTiles().readChangesFrom(sections.get(SaveFile.TILES));
+
+		ByteBuffer unitSection = sections.get(SaveFile.UNITS);
+		int unitCount = unitSection.getInt();
+		for (int i = 0; i < unitCount; i++) {
+			Player owner = loaded.player(unitSection.getInt());
+			int id = unitSection.getInt();
+			loaded.units.put(id, Unit.readFrom(unitSection, owner));
+		}
+
+		ByteBuffer citySection = sections.get(SaveFile.CITIES);
+		int cityCount = citySection.getInt();
+		for (int i = 0; i < cityCount; i++) {
+			Player owner = loaded.player(citySection.getInt());
+			int id = citySection.getInt();
+			loaded.cities.put(id, City.readFrom(citySection, owner));
+		}
+
+		ByteBuffer listSection = sections.get(SaveFile.LISTS);
+		int listCount = listSection.getInt();
+		for (int i = 0; i < listCount; i++) {
+			Player p = loaded.player(listSection.getInt());
+			List<Integer> unitIds = loaded.unitList(p);
+			unitIds.clear();
+			int units = listSection.getInt();
+			for (int u = 0; u < units; u++)
+				unitIds.add(listSection.getInt());
+			List<Integer> cityIds = loaded.cityList(p);
+			cityIds.clear();
+			int cities = listSection.getInt();
+			for (int c = 0; c < cities; c++)
+				cityIds.add(listSection.getInt());
+		}
+
+		SaveFile.readFog(loaded, sections.get(SaveFile.FOG));
+	}
+
+	/**
+	 * Get the file checkpoints are written to; loading it picks up the journal.
+	 *
+	 * @return path of the checkpoint
+	 */
+	public String getPath() {
+		return path;
+	}
+
+	/**
+	 * @return number of checkpoints recorded
+	 */
+	public int getCheckpointCount() {
+		return checkpoints;
+	}
+
+	/**
+	 * @return number of deltas recorded
+	 */
+	public int getDeltaCount() {
+		return deltas;
+	}
+
+	/**
+	 * @return size the journal will be once every recorded entry is written
+	 */
+	public long getJournalBytes() {
+		return journalBytes;
+	}
+
+	/**
+	 * A recorded checkpoint or delta, ready to be written.
+	 */
+	public class Entry {
+		private final boolean isCheckpoint;
+		private final ByteBuffer[] buffers;
+		private final long checkpointId;
+
+		private Entry(boolean isCheckpoint, ByteBuffer[] buffers, long checkpointId) {
+			this.isCheckpoint = isCheckpoint;
+			this.buffers = buffers;
+			this.checkpointId = checkpointId;
+		}
+
+		/**
+		 * @return true if this is a full checkpoint, false if it's a delta
+		 */
+		public boolean isCheckpoint() {
+			return isCheckpoint;
+		}
+
+		/**
+		 * Write the entry: a checkpoint replaces the checkpoint file and starts a
+		 * new journal, a delta is appended to the journal.
+		 *
+		 * @return number of bytes written
+		 * @throws IOException if the entry can't be written; the next record will
+		 *                     be a checkpoint
+		 */
+		public long write() throws IOException {
+			try {
+				if (isCheckpoint) {
+					long written = SaveFile.write(buffers, path);
+					ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+					header.putInt(MAGIC).putInt(VERSION).putLong(checkpointId).flip();
+					return written + SaveFile.write(new ByteBuffer[] { header }, journalPath(path));
+				}
+				long total = 0;
+				for (ByteBuffer b : buffers)
+					total += b.remaining();
+				try (FileChannel channel = FileChannel.open(Paths.get(journalPath(path)), StandardOpenOption.WRITE,
+						StandardOpenOption.APPEND)) {
+					long remaining = total;
+					while (remaining > 0)
+						remaining -= channel.write(buffers);
+					channel.force(false);
+				}
+				return total;
+			} catch (IOException e) {
+				failed = true;
+				throw e;
+			}
+		}
+	}
+
+}
@@ -0,0 +1,280 @@
+package models;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import components.City;
+import components.Unit;
+
+/**
+ * A uniform grid of buckets holding every unit and city on a board, for
+ * finding what's near a position without scanning tiles or player lists.
+ *
+ * <p>
+ * The board is split into CELL x CELL squares. Each square that has ever held
+ * anything gets a bucket listing the units and city tiles inside it, with the
+ * tile each one is on. A radius query only visits the squares the radius
+ * overlaps, and a nearest city query works outwards one ring of squares at a
+ * time, stopping as soon as no farther ring could hold anything closer. Both
+ * cost about the number of squares (and entries in them) near the position,
+ * however big the board or however many units there are.
+ *
+ * <p>
+ * The index is kept up to date by the board itself: every time a unit is put
+ * on or taken off a tile, or a city is founded or destroyed (see TileStore),
+ * the index is told. So moves, new units, new cities and deaths all show up
+ * without the controller having to remember to update it. Distances are
+ * Chebyshev distances (the number of moves between tiles, diagonals included),
+ * the same squares as sight ranges.
+ *
+ * @author Connie Sun, Ryan Smith, Luke Hankins, Tim Gavlick
+ */
+public class SpatialIndex implements Serializable {
+
+	/** width and height of a grid square in tiles */
+	public static final int CELL = 16;
+
+	private final int size;
+	private final int cellsAcross;
+	private final Bucket[] buckets;
+	private int unitCount;
+	private int cityCount;
+
+	/**
+	 * Make an empty index for a board.
+	 *
+	 * @param size width and height of the board in tiles
+	 */
+	public SpatialIndex(int size) {
+		this.size = size;
+		this.cellsAcross = (size + CELL - 1) / CELL;
+		this.buckets = new Bucket[cellsAcross * cellsAcross];
+	}
+
+	/**
+	 * The units and city tiles in one grid square, each with its tile.
+	 */
+	private static class Bucket implements Serializable {
+		Unit[] units = new Unit[4];
+		int[] unitX = new int[4];
+		int[] unitY = new int[4];
+		int unitsUsed;
+		City[] cities = new City[1];
+		int[] cityX = new int[1];
+		int[] cityY = new int[1];
+		int citiesUsed;
+	}
+
+	private Bucket bucket(int x, int y) {
+		int cell = (y / CELL) * cellsAcross + x / CELL;
+		Bucket b = buckets[cell];
+		if (b == null) {
+			b = new Bucket();
+			buckets[cell] = b;
+		}
+		return b;
+	}
+
+	/**
+	 * Record a unit standing on tile x, y. Called by the board.
+	 *
+	 * @param u the unit
+	 * @param x x location of its tile
+	 * @param y y location of its tile
+	 */
+	public void addUnit(Unit u, int x, int y) {
+		Bucket b = bucket(x, y);
+		if (b.unitsUsed == b.units.length) {
+			b.units = Arrays.copyOf(b.units, b.unitsUsed * 2);
+			b.unitX = Arrays.copyOf(b.unitX, b.unitsUsed * 2);
+			b.unitY = Arrays.copyOf(b.unitY, b.unitsUsed * 2);
+		}
+		b.units[b.unitsUsed] = u;
+		b.unitX[b.unitsUsed] = x;
+		b.unitY[b.unitsUsed] = y;
+		b.unitsUsed++;
+		unitCount++;
+	}
+
+	/**
+	 * Forget a unit standing on tile x, y. Called by the board.
+	 *
+	 * @param u the unit
+	 * @param x x location of the tile it was recorded on
+	 * @param y y location of the tile it was recorded on
+	 */
+	public void removeUnit(Unit u, int x, int y) {
+		Bucket b = bucket(x, y);
+		for (int k = 0; k < b.unitsUsed; k++) {
+			if (b.units[k] == u && b.unitX[k] == x && b.unitY[k] == y) {
+				b.unitsUsed--;
+				b.units[k] = b.units[b.unitsUsed];
+				b.unitX[k] = b.unitX[b.unitsUsed];
+				b.unitY[k] = b.unitY[b.unitsUsed];
+				b.units[b.unitsUsed] = null;
+				unitCount--;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Record a city standing on tile x, y. Called by the board.
+	 *
+	 * @param c the city
+	 * @param x x location of the city tile
+	 * @param y y location of the city tile
+	 */
+	public void addCity(City c, int x, int y) {
+		Bucket b = bucket(x, y);
+		if (b.citiesUsed == b.cities.length) {
+			b.cities = Arrays.copyOf(b.cities, b.citiesUsed * 2);
+			b.cityX = Arrays.copyOf(b.cityX, b.citiesUsed * 2);
+			b.cityY = Arrays.copyOf(b.cityY, b.citiesUsed * 2);
+		}
+		b.cities[b.citiesUsed] = c;
+		b.cityX[b.citiesUsed] = x;
+		b.cityY[b.citiesUsed] = y;
+		b.citiesUsed++;
+		cityCount++;
+	}
+
+	/**
+	 * Forget a city standing on tile x, y. Called by the board.
+	 *
+	 * @param c the city
+	 * @param x x location of the city tile
+	 * @param y y location of the city tile
+	 */
+	public void removeCity(City c, int x, int y) {
+		Bucket b = bucket(x, y);
+		for (int k = 0; k < b.citiesUsed; k++) {
+			if (b.cities[k] == c && b.cityX[k] == x && b.cityY[k] == y) {
+				b.citiesUsed--;
+				b.cities[k] = b.cities[b.citiesUsed];
+				b.cityX[k] = b.cityX[b.citiesUsed];
+				b.cityY[k] = b.cityY[b.citiesUsed];
+				b.cities[b.citiesUsed] = null;
+				cityCount--;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Find every unit not owned by a player within radius of x, y.
+	 *
+	 * @param player the player whose enemies to look for
+	 * @param x      x location of the center
+	 * @param y      y location of the center
+	 * @param radius most moves away a unit may be
+	 * @return the enemy units in range, in no particular order
+	 */
+	public List<Unit> enemyUnitsWithin(Player player, int x, int y, int radius) {
+		List<Unit> found = new ArrayList<Unit>();
+		int left = Math.max(x - radius, 0) / CELL, right = Math.min(x + radius, size - 1) / CELL;
+		int top = Math.max(y - radius, 0) / CELL, bottom = Math.min(y + radius, size - 1) / CELL;
+		for (int cy = top; cy <= bottom; cy++) {
+			for (int cx = left; cx <= right; cx++) {
+				Bucket b = buckets[cy * cellsAcross + cx];
+				if (b == null)
+					continue;
+				for (int k = 0; k < b.unitsUsed; k++) {
+					if (b.units[k].getOwner() != player && Math.abs(b.unitX[k] - x) <= radius
+							&& Math.abs(b.unitY[k] - y) <= radius)
+						found.add(b.units[k]);
+				}
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Find every city, whoever owns it, within radius of x, y.
+	 *
+	 * @param x      x location of the center
+	 * @param y      y location of the center
+	 * @param radius most moves away a city may be
+	 * @return the cities in range, in no particular order
+	 */
+	public List<City> citiesWithin(int x, int y, int radius) {
+		List<City> found = new ArrayList<City>();
+		int left = Math.max(x - radius, 0) / CELL, right = Math.min(x + radius, size - 1) / CELL;
+		int top = Math.max(y - radius, 0) / CELL, bottom = Math.min(y + radius, size - 1) / CELL;
+		for (int cy = top; cy <= bottom; cy++) {
+			for (int cx = left; cx <= right; cx++) {
+				Bucket b = buckets[cy * cellsAcross + cx];
+				if (b == null)
+					continue;
+				for (int k = 0; k < b.citiesUsed; k++) {
+					if (Math.abs(b.cityX[k] - x) <= radius && Math.abs(b.cityY[k] - y) <= radius)
+						found.add(b.cities[k]);
+				}
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Find the closest city not owned by a player. Ties go to whichever city
+	 * the search reaches first.
+	 *
+	 * @param player the player whose enemies to look for
+	 * @param x      x location to search from
+	 * @param y      y location to search from
+	 * @return the nearest enemy city, or null if there are none
+	 */
+	public City nearestEnemyCity(Player player, int x, int y) {
+		City best = null;
+		int bestDist = Integer.MAX_VALUE;
+		int homeX = x / CELL, homeY = y / CELL;
+		for (int ring = 0; ring < cellsAcross; ring++) {
+			// tiles in this ring of squares are at least this far away
+			int nearest = ring == 0 ? 0 : (ring - 1) * CELL + 1;
+			if (nearest >= bestDist)
+				break;
+			for (int cy = homeY - ring; cy <= homeY + ring; cy++) {
+				if (cy < 0 || cy >= cellsAcross)
+					continue;
+				// whole rows at the top and bottom of the ring, just the ends in between
+				int step = (cy == homeY - ring || cy == homeY + ring) ? 1 : Math.max(2 * ring, 1);
+				for (int cx = homeX - ring; cx <= homeX + ring; cx += step) {
+					if (cx < 0 || cx >= cellsAcross)
+						continue;
+					Bucket b = buckets[cy * cellsAcross + cx];
+					if (b == null)
+						continue;
+					for (int k = 0; k < b.citiesUsed; k++) {
+						int dist = Math.max(Math.abs(b.cityX[k] - x), Math.abs(b.cityY[k] - y));
+						if (b.cities[k].getOwner() != player && dist < bestDist) {
+							best = b.cities[k];
+							bestDist = dist;
+						}
+					}
+				}
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Get the number of units on the board.
+	 *
+	 * @return units in the index
+	 */
+	public int getUnitCount() {
+		return unitCount;
+	}
+
+	/**
+	 * Get the number of cities on the board.
+	 *
+	 * @return cities in the index
+	 */
+	public int getCityCount() {
+		return cityCount;
+	}
+
+}
@@ -0,0 +1,95 @@
+package models;
+
+import java.util.Random;
+
+/**
+ * A Random whose whole state is one long, so a game's random sequence can be
+ * saved and restored exactly without drawing from it.
+ *
+ * <p>
+ * This is the SplitMix64 generator: each draw adds a constant to the state
+ * and scrambles the result. Every method of Random is built on next(), so
+ * they all come from that one long; nextGaussian() is overridden too, since
+ * Random would otherwise keep a spare value outside it. Like the rest of a
+ * game, it isn't meant to be shared between threads.
+ *
+ * @field state the generator's state; the next draw depends only on it
+ * @author Connie Sun, Ryan Smith, Luke Hankins, Tim Gavlick
+ */
+public class SplitMix64 extends Random {
+
+	private static final long serialVersionUID = 1L;
+
+	private long state;
+
+	/**
+	 * Start a generator from a seed. The seed is the initial state, so
+	 * new SplitMix64(getState()) carries on the same sequence.
+	 *
+	 * @param seed the initial state
+	 */
+	public SplitMix64(long seed) {
+		super(0);
+		this.state = seed;
+	}
+
+	/**
+	 * Get the generator's state, to save it.
+	 *
+	 * @return the state; a generator set to it draws what this one will
+	 */
+	public long getState() {
+		return state;
+	}
+
+	/**
+	 * Set the generator's state, e.g. to one saved from getState().
+	 *
+	 * @param state the new state
+	 */
+	public void setState(long state) {
+		this.state = state;
+	}
+
+	/**
+	 * Same as setState(); Random's constructor calls this, and anything that
+	 * reseeds a Random gets the same behaviour.
+	 *
+	 * @param seed the new state
+	 */
+	@Override
+	public void setSeed(long seed) {
+		this.state = seed;
+	}
+
+	@Override
+	public long nextLong() {
+		long z = (state += 0x9E3779B97F4A7C15L);
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	@Override
+	protected int next(int bits) {
+		return (int) (nextLong() >>> (64 - bits));
+	}
+
+	/**
+	 * A normally distributed value, by the polar method like Random's, but
+	 * without keeping the second value it generates.
+	 *
+	 * @return the next Gaussian value, mean 0 and standard deviation 1
+	 */
+	@Override
+	public double nextGaussian() {
+		double v1, v2, s;
+		do {
+			v1 = 2 * nextDouble() - 1;
+			v2 = 2 * nextDouble() - 1;
+			s = v1 * v1 + v2 * v2;
+		} while (s >= 1 || s == 0);
+		return v1 * StrictMath.sqrt(-2 * StrictMath.log(s) / s);
+	}
+
+}
@@ -0,0 +1,277 @@
+package models;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import components.Tile;
+import components.TileStore;
+
+/**
+ * Streams a text map straight into a TileStore.
+ *
+ * <p>
+ * A text map is the board size on the first line, then one line per tile,
+ * "terrain resource", with the terrain one of field, hill, swamp, water or
+ * mountain and the resource n (none), w (wheat), h (horse) or i (iron). Tiles
+ * go down each column in turn: the first size tiles are x = 0, y = 0 up to
+ * size - 1. Any line may end with a // comment, blank lines are skipped, and
+ * both \n and \r\n line endings work.
+ *
+ * <p>
+ * The file is read a block of bytes at a time and tokens are matched byte by
+ * byte against the known names, so no String is made per tile and a map with
+ * millions of tiles reads in one pass. Anything unexpected fails with the line
+ * and column it was found at.
+ *
+ * @author Connie Sun, Ryan Smith, Luke Hankins, Tim Gavlick
+ */
+class TextMapReader {
+
+	/** largest size whose tile indexes still fit in an int */
+	private static final int MAX_SIZE = 46340;
+	private static final int MAX_TOKEN = 16;
+
+	/** terrain names, indexed by terrain id */
+	private static final byte[][] TERRAIN_NAMES;
+	/** resource letters, indexed by resource id */
+	private static final byte[] RESOURCE_CODES;
+	static {
+		Tile.terrainTypes[] terrains = Tile.terrainTypes.values();
+		TERRAIN_NAMES = new byte[terrains.length][];
+		for (int t = 0; t < terrains.length; t++)
+			TERRAIN_NAMES[t] = terrains[t].name().toLowerCase().getBytes(StandardCharsets.US_ASCII);
+		RESOURCE_CODES = new byte[] { 'n', 'w', 'h', 'i' };
+		for (int r = 1; r < RESOURCE_CODES.length; r++) {
+			if (TileStore.resourceOf(r).charAt(0) != RESOURCE_CODES[r])
+				throw new IllegalStateException("text map resource letters are out of date");
+		}
+	}
+
+	private final String path;
+	private final InputStream in;
+	private final byte[] buffer = new byte[1 << 16];
+	private int pos;
+	private int limit;
+	// position of the next unread byte
+	private int line = 1;
+	private int column = 1;
+
+	private final byte[] token = new byte[MAX_TOKEN];
+	private int tokenLength;
+	private int tokenLine;
+	private int tokenColumn;
+
+	private TextMapReader(String path, InputStream in) {
+		this.path = path;
+		this.in = in;
+	}
+
+	/**
+	 * Read a text map.
+	 *
+	 * @param path file to read
+	 * @return a store holding the map's terrain and resources
+	 * @throws IOException              if the file can't be read
+	 * @throws IllegalArgumentException if the file isn't a valid map; the
+	 *                                  message gives the line and column
+	 */
+	static TileStore read(String path) throws IOException {
+		try (InputStream in = new FileInputStream(path)) {
+			return new TextMapReader(path, in).readMap();
+		}
+	}
+
+	private TileStore readMap() throws IOException {
+		skipBlankLines();
+		int size = readSize();
+		endLine();
+		TileStore tiles = new TileStore(size);
+		int count = size * size;
+		int tile = 0;
+		while (true) {
+			skipBlankLines();
+			if (peek() < 0)
+				break;
+			if (tile == count)
+				throw error(line, column, "more than " + count + " tiles for a size " + size + " map");
+			Tile.terrainTypes terrain = TileStore.terrainOf(readTerrain());
+			String resource = TileStore.resourceOf(readResource());
+			endLine();
+			tiles.setTile(tile / size, tile % size, terrain, resource);
+			tile++;
+		}
+		if (tile < count)
+			throw error(line, column, "map ends after " + tile + " of " + count + " tiles");
+		return tiles;
+	}
+
+	private int readSize() throws IOException {
+		int startLine = line, startColumn = column;
+		long size = 0;
+		int digits = 0;
+		while (peek() >= '0' && peek() <= '9') {
+			size = size * 10 + (next() - '0');
+			if (size > MAX_SIZE)
+				throw error(startLine, startColumn, "map size is larger than " + MAX_SIZE);
+			digits++;
+		}
+		if (digits == 0)
+			throw error(startLine, startColumn, "expected the map size, found " + describe(peek()));
+		if (size == 0)
+			throw error(startLine, startColumn, "map size must be at least 1");
+		return (int) size;
+	}
+
+	private int readTerrain() throws IOException {
+		readToken();
+		if (tokenLength == 0)
+			throw error(tokenLine, tokenColumn, "expected a terrain type, found " + describe(peek()));
+		for (int t = 0; t < TERRAIN_NAMES.length; t++) {
+			if (tokenIs(TERRAIN_NAMES[t]))
+				return t;
+		}
+		throw error(tokenLine, tokenColumn, "unknown terrain type '" + tokenText() + "'");
+	}
+
+	private int readResource() throws IOException {
+		if (!skipSpaces())
+			throw error(line, column, "expected a space after the terrain type, found " + describe(peek()));
+		readToken();
+		if (tokenLength == 0)
+			throw error(tokenLine, tokenColumn, "expected a resource, found " + describe(peek()));
+		if (tokenLength == 1) {
+			for (int r = 0; r < RESOURCE_CODES.length; r++) {
+				if (token[0] == RESOURCE_CODES[r])
+					return r;
+			}
+		}
+		throw error(tokenLine, tokenColumn, "unknown resource '" + tokenText() + "' (expected n, w, h or i)");
+	}
+
+	/**
+	 * Read a run of letters into token, noting where it started.
+	 */
+	private void readToken() throws IOException {
+		tokenLine = line;
+		tokenColumn = column;
+		tokenLength = 0;
+		while (isLetter(peek())) {
+			int b = next();
+			if (tokenLength < MAX_TOKEN)
+				token[tokenLength] = (byte) b;
+			tokenLength++;
+		}
+	}
+
+	private boolean tokenIs(byte[] name) {
+		if (tokenLength != name.length)
+			return false;
+		for (int i = 0; i < name.length; i++) {
+			if (token[i] != name[i])
+				return false;
+		}
+		return true;
+	}
+
+	private String tokenText() {
+		String text = new String(token, 0, Math.min(tokenLength, MAX_TOKEN), StandardCharsets.US_ASCII);
+		return tokenLength > MAX_TOKEN ? text + "..." : text;
+	}
+
+	/**
+	 * Finish a line: allow trailing spaces and a comment, then expect the end of
+	 * the line (or file).
+	 */
+	private void endLine() throws IOException {
+		skipSpaces();
+		skipComment();
+		int b = peek();
+		if (b == '\n')
+			next();
+		else if (b >= 0)
+			throw error(line, column, "unexpected " + describe(b));
+	}
+
+	private void skipBlankLines() throws IOException {
+		while (true) {
+			skipSpaces();
+			skipComment();
+			if (peek() != '\n')
+				return;
+			next();
+		}
+	}
+
+	private void skipComment() throws IOException {
+		if (peek() != '/')
+			return;
+		int startLine = line, startColumn = column;
+		next();
+		if (peek() != '/')
+			throw error(startLine, startColumn, "unexpected '/' (comments start with //)");
+		while (peek() >= 0 && peek() != '\n')
+			next();
+	}
+
+	/**
+	 * @return true if at least one space was skipped
+	 */
+	private boolean skipSpaces() throws IOException {
+		boolean skipped = false;
+		while (peek() == ' ' || peek() == '\t' || peek() == '\r') {
+			next();
+			skipped = true;
+		}
+		return skipped;
+	}
+
+	private static boolean isLetter(int b) {
+		return (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z');
+	}
+
+	private static String describe(int b) {
+		if (b < 0)
+			return "the end of the file";
+		if (b == '\n')
+			return "the end of the line";
+		if (b >= ' ' && b < 127)
+			return "'" + (char) b + "'";
+		return String.format("byte 0x%02x", b);
+	}
+
+	/**
+	 * @return the next byte without consuming it, or -1 at the end of the file
+	 */
+	private int peek() throws IOException {
+		if (pos == limit) {
+			limit = in.read(buffer);
+			pos = 0;
+			if (limit <= 0) {
+				limit = 0;
+				return -1;
+			}
+		}
+		return buffer[pos] & 0xff;
+	}
+
+	private int next() throws IOException {
+		int b = peek();
+		if (b < 0)
+			return b;
+		pos++;
+		if (b == '\n') {
+			line++;
+			column = 1;
+		} else {
+			column++;
+		}
+		return b;
+	}
+
+	private IllegalArgumentException error(int atLine, int atColumn, String message) {
+		return new IllegalArgumentException(path + ":" + atLine + ":" + atColumn + ": " + message);
+	}
+
+}
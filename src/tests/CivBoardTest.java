@@ -1,15 +1,40 @@
 package tests;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.awt.Point;
 import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 import org.junit.Test;
 
+import components.City;
+import components.PagedTileStore;
 import components.Tile;
+import components.TileStore;
+import components.Unit;
+import components.Warrior;
 import controllers.CivController;
+import models.CivBoard;
 import models.CivModel;
+import models.MapFile;
+import models.NoiseMapGenerator;
+import models.Player;
 
 public class CivBoardTest {
 	@Test
@@ -56,8 +81,245 @@ public class CivBoardTest {
 		assertEquals(model5.getTileAt(2,2).getTerrainType(), Tile.terrainTypes.HILL); // in a hilly area
 		assertEquals(model5.getTileAt(4,2).getTerrainType(), Tile.terrainTypes.HILL);
 	}
-	
-	
-	
-	
+
+	@Test
+	public void testPackedTiles() {
+		CivModel model = new CivModel(1, 2, 0);
+		Tile tile = model.getTileAt(3, 2);
+		assertEquals(tile, model.getTileAt(3, 2)); // views onto the same tile are equal
+		assertNotEquals(tile, model.getTileAt(2, 3));
+		assertEquals(model.getTileAt(-1, 0), null); // off the board
+
+		Player player = model.getCurPlayer();
+		Warrior warrior = new Warrior(player, new Point(3, 2));
+		tile.setUnit(warrior);
+		assertEquals(model.getTileAt(3, 2).getUnit(), warrior); // stored in the board, not the view
+		tile.setUnit(null);
+		assertEquals(model.getTileAt(3, 2).getUnit(), null);
+
+		City city = new City(player, 3, 2);
+		assertTrue(tile.foundCity(city));
+		assertTrue(model.getTileAt(3, 2).isCityTile());
+		assertEquals(model.getTileAt(3, 2).getMovementModifier(), 0);
+		model.getTileAt(3, 2).destroyCity();
+		assertEquals(model.getTileAt(3, 2).getOwnerCity(), null);
+		assertEquals(model.getTileAt(3, 2).getAttackModifier(), 1.25, 0.001); // city bonus sticks around
+	}
+
+	@Test
+	public void testFogBitsets() {
+		CivModel model = new CivModel(1, 2, 0);
+		CivBoard board = model.getCivBoard();
+		Player player = model.getCurPlayer();
+		assertFalse(model.getTileAt(5, 5).canSeeTile(player));
+
+		BitSet before = (BitSet) board.getRevealed(player).clone();
+		board.revealArea(player, 5, 5, 1);
+		assertTrue(model.getTileAt(4, 6).canSeeTile(player));
+		assertFalse(model.getTileAt(7, 5).canSeeTile(player));
+		assertEquals(board.revealedSince(player, before).cardinality(), 9);
+
+		board.revealArea(player, 0, 0, 2); // clipped at the edge of the board
+		assertEquals(board.getRevealed(player).cardinality(), 18);
+		model.nextPlayer();
+		assertFalse(model.getTileAt(5, 5).canSeeTile(model.getCurPlayer())); // fog is per player
+	}
+
+	@Test
+	public void testTextMapErrors() throws IOException {
+		// comments, blank lines and \r\n are fine
+		CivBoard board = new CivBoard(textMap("2 // size\r\nfield n\r\n\r\nhill w // end column\r\n"
+				+ "  water h\r\nmountain i"));
+		assertEquals(board.getTile(0, 1).getTerrainType(), Tile.terrainTypes.HILL);
+		assertEquals(board.getTile(0, 1).getResourceType(), "wheat");
+		assertEquals(board.getTile(1, 0).getTerrainType(), Tile.terrainTypes.WATER);
+		assertEquals(board.getTile(1, 1).getResourceType(), "iron");
+
+		assertMapError("2\nfield n\nfiehillld n\nhill n\nhill n\n", ":3:1: unknown terrain type 'fiehillld'");
+		assertMapError("2\nfield n\nfield x\nhill n\nhill n\n", ":3:7: unknown resource 'x'");
+		assertMapError("2\nfield n\nfield\nhill n\nhill n\n", ":3:6: expected a space");
+		assertMapError("2\nfield n extra\nfield n\nhill n\nhill n\n", ":2:9: unexpected 'e'");
+		assertMapError("2\nfield n\nfield n\nhill n\n", ":5:1: map ends after 3 of 4 tiles");
+		assertMapError("1\nfield n\nfield n\n", ":3:1: more than 1 tiles");
+		assertMapError("twenty\n", ":1:1: expected the map size, found 't'");
+		assertMapError("", ":1:1: expected the map size, found the end of the file");
+		try {
+			new CivBoard("./src/models/NoSuchMap.txt");
+			fail();
+		} catch (UncheckedIOException e) {
+			// expected
+		}
+
+		// big maps stream through without trouble
+		int size = 1000;
+		StringBuilder big = new StringBuilder(size * size * 8).append(size).append('\n');
+		for (int i = 0; i < size * size; i++)
+			big.append(i % 7 == 0 ? "hill i\n" : "field n\n");
+		board = new CivBoard(textMap(big.toString()));
+		assertEquals(board.getTile(0, 7).getTerrainType(), Tile.terrainTypes.HILL);
+		assertEquals(board.getTile(size - 1, size - 2).getTerrainType(), Tile.terrainTypes.FIELD);
+	}
+
+	private String textMap(String contents) throws IOException {
+		File file = File.createTempFile("civ", ".txt");
+		file.deleteOnExit();
+		Files.write(file.toPath(), contents.getBytes(StandardCharsets.US_ASCII));
+		return file.getPath();
+	}
+
+	private void assertMapError(String contents, String message) throws IOException {
+		String path = textMap(contents);
+		try {
+			new CivBoard(path);
+			fail();
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage(), e.getMessage().startsWith(path + message));
+		}
+	}
+
+	@Test
+	public void testNoiseMap() {
+		// the same seed makes the same map however many threads generate it
+		CivBoard one = new NoiseMapGenerator(42).generate(150, new ForkJoinPool(1));
+		CivBoard four = new NoiseMapGenerator(42).generate(150, new ForkJoinPool(4));
+		CivBoard other = new NoiseMapGenerator(43).generate(150);
+		int differences = 0;
+		for (int x = 0; x < 150; x++) {
+			for (int y = 0; y < 150; y++) {
+				assertEquals(one.getTile(x, y).getTerrainType(), four.getTile(x, y).getTerrainType());
+				assertEquals(one.getTile(x, y).getResourceType(), four.getTile(x, y).getResourceType());
+				if (one.getTile(x, y).getTerrainType() != other.getTile(x, y).getTerrainType())
+					differences++;
+			}
+		}
+		assertTrue(differences > 1000);
+
+		// water all round, and every start is open field
+		assertEquals(one.getTile(0, 77).getTerrainType(), Tile.terrainTypes.WATER);
+		assertEquals(one.getTile(149, 3).getTerrainType(), Tile.terrainTypes.WATER);
+		CivModel model = new CivModel(0, 4, 5, 30, 9);
+		for (int[] start : model.getPlayerStartingCoords())
+			assertEquals(model.getTileAt(start[0], start[1]).getTerrainType(), Tile.terrainTypes.FIELD);
+		assertEquals(model.getSize(), 30);
+	}
+
+	@Test
+	public void testMapFile() throws IOException {
+		for (String text : new String[] { "./src/models/Map1.txt", "./src/models/Map2.txt",
+				"./src/models/Thermopylae.txt" }) {
+			File binary = File.createTempFile("civ", ".civmap");
+			binary.deleteOnExit();
+			MapFile.convert(text, binary.getPath());
+			CivBoard original = new CivBoard(text);
+			MapFile map = new MapFile(binary.getPath());
+			CivBoard loaded = new CivBoard(binary.getPath()); // the format is detected
+			assertEquals(map.getSize(), original.getSize());
+			assertEquals(loaded.getSize(), original.getSize());
+			for (int x = 0; x < original.getSize(); x++) {
+				for (int y = 0; y < original.getSize(); y++) {
+					Tile tile = original.getTile(x, y);
+					assertEquals(map.getTerrainType(x, y), tile.getTerrainType());
+					assertEquals(map.getResourceType(x, y), tile.getResourceType());
+					assertEquals(loaded.getTile(x, y).getTerrainType(), tile.getTerrainType());
+					assertEquals(loaded.getTile(x, y).getResourceType(), tile.getResourceType());
+				}
+			}
+		}
+		assertFalse(MapFile.isMapFile("./src/models/Map1.txt"));
+
+		// generated maps of any size round trip too
+		File binary = File.createTempFile("civ", ".civmap");
+		binary.deleteOnExit();
+		CivBoard generated = new CivBoard(300, new Random(3));
+		MapFile.write(generated, binary.getPath());
+		CivBoard loaded = new CivBoard(new MapFile(binary.getPath()));
+		for (int x = 0; x < 300; x += 7)
+			for (int y = 0; y < 300; y += 3)
+				assertEquals(loaded.getTile(x, y).getResourceType(), generated.getTile(x, y).getResourceType());
+
+		// a cut off file is refused
+		try (RandomAccessFile f = new RandomAccessFile(binary, "rw")) {
+			f.setLength(f.length() - 1);
+		}
+		try {
+			new MapFile(binary.getPath());
+			fail();
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testPagedBoard() throws IOException {
+		CivBoard generated = new NoiseMapGenerator(11).generate(300);
+		File binary = File.createTempFile("civ", ".civmap");
+		binary.deleteOnExit();
+		MapFile.write(generated, binary.getPath());
+		CivBoard paged = new CivBoard(new MapFile(binary.getPath()), 4); // 25 chunks, 4 in memory
+		assertTrue(paged.isPaged());
+		assertFalse(generated.isPaged());
+		for (int x = 0; x < 300; x++) { // down the columns, so chunks keep being evicted
+			for (int y = 0; y < 300; y++) {
+				assertEquals(paged.getTile(x, y).getTerrainType(), generated.getTile(x, y).getTerrainType());
+				assertEquals(paged.getTile(x, y).getResourceType(), generated.getTile(x, y).getResourceType());
+			}
+		}
+		paged.close();
+
+		// changes survive being paged out and back in
+		Player player = new Player(0, "CPU Player");
+		PagedTileStore store = new PagedTileStore(300, null, 4);
+		TileStore flat = new TileStore(300);
+		int[][] spots = { { 1, 1 }, { 150, 70 }, { 299, 299 }, { 64, 63 }, { 200, 10 }, { 10, 280 } };
+		for (int[] spot : spots) {
+			for (TileStore tiles : new TileStore[] { store, flat }) {
+				tiles.setTile(spot[0], spot[1], Tile.terrainTypes.HILL, "iron");
+				tiles.getTile(spot[0], spot[1]).setUnit(new Warrior(player, new Point(spot[0], spot[1])));
+				assertTrue(tiles.getTile(spot[0], spot[1]).foundCity(new City(player, spot[0], spot[1])));
+			}
+		}
+		assertTrue(store.getPageOutCount() > 0);
+		for (int x = 0; x < 300; x += 9)
+			for (int y = 0; y < 300; y += 9)
+				assertEquals(store.getTile(x, y).getTerrainType(), Tile.terrainTypes.FIELD);
+		for (int[] spot : spots) {
+			assertEquals(store.getTile(spot[0], spot[1]).getTerrainType(), Tile.terrainTypes.HILL);
+			assertEquals(store.getUnit(spot[0], spot[1]).getX(), spot[0]);
+			assertEquals(store.getCity(spot[0], spot[1]).getY(), spot[1]);
+		}
+		assertTrue(store.getPageInCount() > 0);
+		assertTrue(store.getResidentChunks() <= 4);
+
+		// saves the same bytes as the same board kept all in memory
+		ByteBuffer pagedSave = ByteBuffer.allocate(store.saveBytes());
+		ByteBuffer flatSave = ByteBuffer.allocate(flat.saveBytes());
+		store.writeTo(pagedSave);
+		flat.writeTo(flatSave);
+		assertEquals(pagedSave.position(), flatSave.position());
+		assertTrue(Arrays.equals(pagedSave.array(), flatSave.array()));
+		store.close();
+
+		// and a save pages back in, units and cities and all
+		flatSave.flip();
+		PagedTileStore restored = PagedTileStore.readFrom(flatSave, 4);
+		assertEquals(flatSave.remaining(), 0);
+		Map<Integer, Unit> units = new HashMap<Integer, Unit>();
+		Map<Integer, City> cities = new HashMap<Integer, City>();
+		for (int[] spot : spots) {
+			units.put(flat.idOf(flat.getUnit(spot[0], spot[1])), new Warrior(player, new Point(spot[0], spot[1])));
+			cities.put(flat.idOf(flat.getCity(spot[0], spot[1])), new City(player, spot[0], spot[1]));
+		}
+		restored.bind(units, cities);
+		for (int[] spot : spots) {
+			assertEquals(restored.getTile(spot[0], spot[1]).getTerrainType(), Tile.terrainTypes.HILL);
+			assertEquals(restored.getUnit(spot[0], spot[1]).getX(), spot[0]);
+			assertEquals(restored.getCity(spot[0], spot[1]).getY(), spot[1]);
+		}
+		ByteBuffer resave = ByteBuffer.allocate(restored.saveBytes());
+		restored.writeTo(resave);
+		assertTrue(Arrays.equals(resave.array(), flatSave.array()));
+		assertTrue(restored.getResidentChunks() <= 4);
+		restored.close();
+	}
+
 }
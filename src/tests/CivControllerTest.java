@@ -6,6 +6,7 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.awt.Point;
 import java.io.File;
+import java.util.HashSet;
 
 import org.junit.jupiter.api.MethodOrderer.OrderAnnotation;
 import org.junit.jupiter.api.Order;
@@ -19,7 +20,12 @@ import components.Swordsman;
 import components.Tile;
 import components.Unit;
 import components.Warrior;
+import controllers.Autosave;
 import controllers.CivController;
+import controllers.FlowField;
+import controllers.PathFinder;
+import controllers.Simulation;
+import controllers.Tournament;
 import models.CivModel;
 import models.Player;
 import resources.Horses;
@@ -282,4 +288,205 @@ public class CivControllerTest {
 		oldGame = new File("save_game.dat");
 		oldGame.delete();
 	}
+
+	/**
+	 * Tests that the path finder goes around obstacles and friendly units, and
+	 * that the "move to" command walks a unit along its path.
+	 */
+	@Test
+	@Order(8)
+	void testPathFinding() {
+		CivModel model = new CivModel(1, 2, 0);
+		CivController controller = new CivController(model);
+		Player human = model.getCurPlayer();
+		Warrior w = new Warrior(human, new Point(3, 2));
+		human.addUnit(w);
+		model.getTileAt(3, 2).setUnit(w);
+		PathFinder finder = new PathFinder(model);
+		int steps = finder.findPath(w, 12, 3);
+		assertTrue(steps >= 9);
+		int x = 3, y = 2;
+		for (int i = 0; i < steps; i++) {
+			// every step is to a neighbouring, passable tile
+			assertTrue(Math.abs(finder.getStepX(i) - x) <= 1 && Math.abs(finder.getStepY(i) - y) <= 1);
+			x = finder.getStepX(i);
+			y = finder.getStepY(i);
+			assertTrue(model.getTileAt(x, y).getMovementModifier() > -1000);
+		}
+		assertEquals(x, 12);
+		assertEquals(y, 3);
+		assertEquals(finder.findPath(w, 19, 8), -1); // water
+		assertEquals(finder.findPath(w, 3, 2), 0);
+
+		// swordsmen can never afford hills, so they have to avoid them
+		Swordsman s = new Swordsman(human, new Point(12, 3));
+		model.getTileAt(12, 3).setUnit(s);
+		assertEquals(finder.findPath(w, 12, 3), -1); // friendly unit in the way
+		steps = finder.findPath(s, 17, 7);
+		assertTrue(steps > 0);
+		for (int i = 0; i < steps; i++)
+			assertEquals(model.getTileAt(finder.getStepX(i), finder.getStepY(i)).getMovementModifier(), 0);
+
+		controller.startTurn();
+		assertTrue(controller.moveUnitTo(w, 11, 3));
+		assertTrue(w.getX() != 3 || w.getY() != 2);
+		assertEquals(model.getTileAt(w.getX(), w.getY()).getUnit(), w);
+		assertFalse(controller.moveUnitTo(w, 11, 3)); // out of movement for this turn
+	}
+
+	/**
+	 * Tests that the attackers' flow field leads downhill to every enemy city
+	 * from anywhere a city can be reached.
+	 */
+	@Test
+	@Order(9)
+	void testFlowField() {
+		CivModel model = new CivModel(1, 2, 0);
+		Player human = model.getCurPlayer();
+		FlowField field = new FlowField(model);
+		field.build(human);
+		assertFalse(field.hasTargets());
+
+		Player cpu = null;
+		for (Player p : model.getAllPlayers())
+			if (p != human)
+				cpu = p;
+		City c = new City(cpu, 12, 3);
+		cpu.addCity(c);
+		model.getTileAt(12, 3).foundCity(c);
+		field.build(human);
+		assertTrue(field.hasTargets());
+		assertEquals(field.getDistance(12, 3), 0);
+		assertEquals(field.getDistance(11, 3), 1);
+		assertTrue(field.getDistance(3, 2) >= 9); // at least one per step
+		for (int x = 0; x < model.getSize(); x++) {
+			for (int y = 0; y < model.getSize(); y++) {
+				int d = field.getDistance(x, y);
+				if (d == 0 || d == FlowField.UNREACHABLE || model.getTileAt(x, y).getMovementModifier() <= -1000)
+					continue;
+				// some neighbour is always closer
+				boolean downhill = false;
+				for (int i = -1; i < 2; i++)
+					for (int j = -1; j < 2; j++)
+						if (x + i >= 0 && x + i < model.getSize() && y + j >= 0 && y + j < model.getSize())
+							downhill |= field.getDistance(x + i, y + j) < d;
+				assertTrue(downhill);
+			}
+		}
+		field.build(cpu);
+		assertFalse(field.hasTargets()); // the human has no cities
+	}
+
+	/**
+	 * Tests that the buffer version of getValidMoves() finds the same moves as the
+	 * HashSet version.
+	 */
+	@Test
+	@Order(10)
+	void testMoveBuffer() {
+		CivModel model = new CivModel(1, 2, 0);
+		CivController controller = new CivController(model);
+		Player human = model.getCurPlayer();
+		Warrior w = new Warrior(human, new Point(3, 2));
+		model.getTileAt(3, 2).setUnit(w);
+		Warrior blocker = new Warrior(human, new Point(3, 3));
+		model.getTileAt(3, 3).setUnit(blocker);
+		int[] moves = new int[CivController.MAX_MOVES];
+		int count = controller.getValidMoves(w, moves);
+		HashSet<int[]> set = controller.getValidMoves(w);
+		assertEquals(count, set.size());
+		assertTrue(count > 0 && count < CivController.MAX_MOVES); // friendly unit blocks one
+		for (int[] move : set) {
+			boolean found = false;
+			for (int k = 0; k < count; k++)
+				found |= moves[k] == move[1] * model.getSize() + move[0];
+			assertTrue(found);
+		}
+		// corner units only have three neighbours
+		Warrior corner = new Warrior(human, new Point(0, 0));
+		model.getTileAt(0, 0).setUnit(corner);
+		assertTrue(controller.getValidMoves(corner, moves) <= 3);
+	}
+
+	/**
+	 * Tests that headless computer-only games run and stop at the round cap.
+	 */
+	@Test
+	@Order(11)
+	void testSimulation() {
+		Simulation.Result result = new Simulation(2, 4, 20, 30).play();
+		assertTrue(result.getRounds() <= 30);
+		assertTrue(result.getTurns() >= result.getRounds());
+		if (result.getWinner() == null)
+			assertEquals(result.getRounds(), 30);
+		else
+			assertTrue(result.getWinner().startsWith("CPU Player"));
+
+		// the same seed plays the same game
+		Simulation sim = new Simulation(3, 4, 20, 60);
+		Simulation.Result first = sim.play(99), second = sim.play(99);
+		assertEquals(first.getSeed(), 99);
+		assertEquals(first.getRounds(), second.getRounds());
+		assertEquals(first.getTurns(), second.getTurns());
+		assertEquals(first.getWinner(), second.getWinner());
+	}
+
+	/**
+	 * Tests that a tournament plays every game and merges the results.
+	 */
+	@Test
+	@Order(12)
+	void testTournament() {
+		Tournament.Stats stats = new Tournament(new int[] { 2, 4 }, 20, 2, 3, 20).run();
+		assertEquals(stats.getGames(), 6);
+		assertEquals(stats.getGames(2), 3);
+		assertEquals(stats.getGames(4), 3);
+		assertEquals(stats.getWins(2, 0) + stats.getWins(2, 1) + stats.getUnfinished(2), 3);
+		assertTrue(stats.getMeanRounds() <= 20);
+		assertTrue(stats.getTurns() > 0);
+		assertTrue(stats.getTurnNanosPercentile(50) <= stats.getTurnNanosPercentile(99));
+
+		// a tournament with no games plays nothing
+		for (Tournament empty : new Tournament[] { new Tournament(new int[] { 2, 4 }, 20, 2, 0, 20),
+				new Tournament(new int[0], 20, 2, 3, 20) }) {
+			stats = empty.run();
+			assertEquals(stats.getGames(), 0);
+			assertEquals(stats.getMaps().length, 0);
+			assertEquals(stats.getMeanRounds(), 0);
+			assertEquals(stats.getTurnNanosPercentile(50), 0);
+		}
+	}
+
+	/**
+	 * Tests that autosave writes loadable saves to its rotating slots.
+	 */
+	@Test
+	@Order(13)
+	void testAutosave() {
+		CivModel model = new CivModel(0, 2, 4, 20, 5);
+		model.setSavePath("autosave_test.dat");
+		CivController controller = new CivController(model);
+		controller.placeStartingUnits();
+		Autosave autosave = new Autosave(model.getSavePath(), 1, 2);
+		controller.setAutosave(autosave);
+		for (int i = 0; i < 10 && !controller.gameOver(); i++) {
+			controller.playComputerTurn();
+			autosave.flush();
+		}
+		controller.close();
+
+		// waiting for each write means no save was skipped
+		assertTrue(autosave.getSaveCount() >= 2);
+		assertEquals(autosave.getSkippedCount(), 0);
+		assertEquals(autosave.getFailureCount(), 0);
+		File last = new File(autosave.getLastPath());
+		assertEquals(autosave.getLastBytes(), last.length());
+		for (int slot = 0; slot < 2; slot++) {
+			CivModel loaded = new CivModel(autosave.getSlotPath(slot));
+			assertEquals(loaded.getSize(), 20);
+		}
+		autosave.deleteSaves();
+		new File(model.getSavePath()).delete();
+		assertFalse(last.exists());
+	}
 }
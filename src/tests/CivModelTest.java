@@ -2,13 +2,32 @@ package tests;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 import org.junit.jupiter.api.Test;
 
+import components.City;
+import components.Tile;
+import components.Unit;
+import controllers.CivController;
 import models.CivBoard;
 import models.CivModel;
+import models.GameEvent;
+import models.ModelChange;
 import models.Player;
+import models.SaveFile;
+import models.SaveJournal;
+import models.SpatialIndex;
+import models.SplitMix64;
 
 /**
  * Tests the methods of CivModel.
@@ -60,4 +79,416 @@ public class CivModelTest {
 		assertTrue(model.removePlayer(model.getCurPlayer()));
 	}
 
+	@Test
+	/**
+	 * Test games with computer players only, including losing the first player.
+	 */
+	void testComputerPlayers() {
+		CivModel model = new CivModel(0, 3, 4, 20);
+		assertEquals(model.numPlayers(), 3);
+		assertTrue(model.isComputer());
+		assertEquals(model.getHead().getID(), "CPU Player 1");
+		assertEquals(model.getPlayerStartingCoords().size(), 3);
+
+		Player first = model.getHead();
+		assertTrue(model.removePlayer(first));
+		assertEquals(model.getAllPlayers().size(), 2);
+		assertFalse(model.getAllPlayers().contains(first));
+		assertEquals(model.getHead().getID(), "CPU Player 2");
+
+		assertThrows(IllegalArgumentException.class, () -> new CivModel(0, 1, 4, 20));
+		assertThrows(IllegalArgumentException.class, () -> new CivModel(1, 2, 3, 0)); // Thermopylae is 1v1
+	}
+
+	@Test
+	/**
+	 * Test that a seed reproduces the generated map, and survives a save.
+	 */
+	void testSeed() throws IOException {
+		CivModel a = new CivModel(1, 1, 4, 30, 1234);
+		CivModel b = new CivModel(1, 1, 4, 30, 1234);
+		assertEquals(a.getSeed(), 1234);
+		for (int x = 0; x < 30; x++)
+			for (int y = 0; y < 30; y++)
+				assertEquals(a.getTileAt(x, y).getTerrainType(), b.getTileAt(x, y).getTerrainType());
+		assertEquals(a.getRandom().nextLong(), b.getRandom().nextLong());
+
+		File save = File.createTempFile("civ", ".dat");
+		save.deleteOnExit();
+		a.setSavePath(save.getPath());
+		assertTrue(a.done());
+		CivModel loaded = new CivModel(save.getPath());
+		assertEquals(loaded.getSeed(), 1234);
+		assertEquals(loaded.getSavePath(), save.getPath());
+		assertEquals(loaded.getRandom().nextLong(), a.getRandom().nextLong()); // carries on the same sequence
+	}
+
+	@Test
+	/**
+	 * Test that saving doesn't change how a seeded game plays out: a game saved
+	 * after every turn ends up exactly where the same game played unsaved does.
+	 */
+	void testSaveKeepsRandom() {
+		SplitMix64 random = new SplitMix64(99);
+		random.nextInt(10);
+		SplitMix64 copy = new SplitMix64(random.getState());
+		assertEquals(copy.nextDouble(), random.nextDouble());
+		assertEquals(copy.nextGaussian(), random.nextGaussian());
+		assertEquals(copy.getState(), random.getState());
+
+		CivModel plain = new CivModel(0, 4, 4, 30, 123);
+		CivModel saved = new CivModel(0, 4, 4, 30, 123);
+		CivController plainController = new CivController(plain);
+		CivController savedController = new CivController(saved);
+		plainController.placeStartingUnits();
+		savedController.placeStartingUnits();
+		for (int turn = 0; turn < 200 && !plainController.gameOver(); turn++) {
+			plainController.playComputerTurn();
+			savedController.playComputerTurn();
+			long state = saved.getRandom().getState();
+			SaveFile.encode(saved);
+			assertEquals(saved.getRandom().getState(), state);
+			assertEquals(saved.getRandom().getState(), plain.getRandom().getState());
+		}
+		assertEquals(saved.roundNumber(), plain.roundNumber());
+		assertEquals(saved.numPlayers(), plain.numPlayers());
+	}
+
+	@Test
+	/**
+	 * Test that a game in progress survives the binary save format exactly, by
+	 * playing on from both the original and the loaded copy and comparing.
+	 */
+	void testBinarySave() throws IOException {
+		CivModel original = new CivModel(0, 3, 4, 20, 77);
+		CivController controller = new CivController(original);
+		controller.placeStartingUnits();
+		for (int i = 0; i < 90; i++)
+			controller.playComputerTurn();
+
+		File save = File.createTempFile("civ", ".dat");
+		save.deleteOnExit();
+		original.setSavePath(save.getPath());
+		assertTrue(original.done());
+		CivModel loaded = new CivModel(save.getPath());
+		assertSameGame(original, loaded);
+		assertEquals(SaveFile.readBoard(save.getPath()).getTile(5, 5).getTerrainType(),
+				original.getTileAt(5, 5).getTerrainType());
+
+		CivController loadedController = new CivController(loaded);
+		for (int i = 0; i < 30; i++) {
+			controller.playComputerTurn();
+			loadedController.playComputerTurn();
+		}
+		assertSameGame(original, loaded);
+
+		File junk = File.createTempFile("civ", ".dat");
+		junk.deleteOnExit();
+		assertThrows(NullPointerException.class, () -> new CivModel(junk.getPath()));
+	}
+
+	@Test
+	void testSaveJournal() throws IOException {
+		CivModel original = new CivModel(0, 3, 4, 20, 78);
+		CivController controller = new CivController(original);
+		controller.placeStartingUnits();
+		File save = File.createTempFile("civ", ".dat");
+		save.deleteOnExit();
+		File journalFile = new File(SaveJournal.journalPath(save.getPath()));
+		journalFile.deleteOnExit();
+
+		// one checkpoint, then deltas much smaller than it
+		SaveJournal journal = new SaveJournal(save.getPath(), 1 << 20);
+		long checkpointBytes = 0, deltaBytes = 0;
+		for (int i = 0; i < 60; i++) {
+			controller.playComputerTurn();
+			SaveJournal.Entry entry = journal.record(original);
+			long written = entry.write();
+			if (entry.isCheckpoint())
+				checkpointBytes = written;
+			else
+				deltaBytes = Math.max(deltaBytes, written);
+		}
+		assertEquals(journal.getCheckpointCount(), 1);
+		assertEquals(journal.getDeltaCount(), 59);
+		assertTrue(deltaBytes < checkpointBytes / 2);
+		assertEquals(journal.getJournalBytes(), journalFile.length());
+
+		CivModel loaded = new CivModel(save.getPath());
+		assertSameGame(original, loaded);
+		CivController loadedController = new CivController(loaded);
+		for (int i = 0; i < 20; i++) {
+			controller.playComputerTurn();
+			loadedController.playComputerTurn();
+		}
+		assertSameGame(original, loaded);
+
+		// a delta cut short is dropped and everything before it still loads
+		journal.record(original).write();
+		CivModel beforeCrash = new CivModel(save.getPath());
+		assertSameGame(original, beforeCrash);
+		long length = journalFile.length();
+		controller.playComputerTurn();
+		journal.record(original).write();
+		try (RandomAccessFile f = new RandomAccessFile(journalFile, "rw")) {
+			f.setLength(length + 10);
+		}
+		assertSameGame(beforeCrash, new CivModel(save.getPath()));
+
+		// past the threshold the journal is folded into a new checkpoint
+		SaveJournal compacting = new SaveJournal(save.getPath(), 4096);
+		for (int i = 0; i < 60; i++) {
+			controller.playComputerTurn();
+			compacting.record(original).write();
+			assertTrue(journalFile.length() < 4096 + checkpointBytes);
+		}
+		assertTrue(compacting.getCheckpointCount() > 1);
+		assertSameGame(original, new CivModel(save.getPath()));
+	}
+
+	@Test
+	/**
+	 * Test that batched changes reach listeners as one ModelChanged event saying
+	 * what changed.
+	 */
+	void testBatching() {
+		CivModel model = new CivModel(1, 2, 1, 0, 80);
+		CivController controller = new CivController(model);
+		controller.placeStartingUnits();
+		List<ModelChange> changes = new ArrayList<ModelChange>();
+		model.getEvents().subscribe(GameEvent.ModelChanged.class, e -> changes.add(e.change()));
+
+		// founding a city makes the city and a scout, but listeners hear once
+		assertTrue(controller.foundCity(1, 1));
+		assertEquals(changes.size(), 1);
+		assertTrue(changes.get(0).getChangedTiles().get(1 * model.getSize() + 1));
+		assertEquals(changes.get(0).getPlayer(), model.getCurPlayer());
+
+		// ending the turn plays both computers through to the human's next turn,
+		// and the tiles of whatever healed at its start count as changed
+		int size = model.getSize();
+		City city = model.getCivBoard().getCity(1, 1);
+		Unit unit = model.getCurPlayer().getUnits().get(0);
+		city.takeAttack(10);
+		unit.takeAttack(2);
+		int round = model.roundNumber();
+		changes.clear();
+		controller.endTurn();
+		assertEquals(changes.size(), 1);
+		assertTrue(changes.get(0).getChangeCount() > 2);
+		assertTrue(changes.get(0).getRound() > round);
+		assertFalse(changes.get(0).isNewPlayer());
+		assertTrue(changes.get(0).getChangedTiles().get(1 * size + 1));
+		assertTrue(changes.get(0).getChangedTiles().get(unit.getY() * size + unit.getX()));
+
+		// only the outermost batch notifies, and only if something changed
+		changes.clear();
+		model.beginBatch();
+		model.beginBatch();
+		model.changeAndNotify();
+		model.endBatch();
+		assertTrue(model.isBatching());
+		assertEquals(changes.size(), 0);
+		model.endBatch();
+		assertEquals(changes.size(), 1);
+		assertEquals(changes.get(0).getChangeCount(), 1);
+		assertFalse(changes.get(0).isNewPlayer());
+		assertEquals(changes.get(0).getChangedTiles().cardinality(), 0);
+		model.beginBatch();
+		model.endBatch();
+		assertEquals(changes.size(), 1);
+		assertThrows(IllegalStateException.class, () -> model.endBatch());
+	}
+
+	@Test
+	/**
+	 * Test that the fine-grained events say enough to follow a whole game: a
+	 * replay of every unit and city event ends up with the same units and cities
+	 * in the same places as the board.
+	 */
+	void testEvents() {
+		CivModel model = new CivModel(0, 4, 5, 40, 81);
+		CivController controller = new CivController(model);
+		Map<Unit, Integer> units = new HashMap<Unit, Integer>();
+		Map<City, Integer> cities = new HashMap<City, Integer>();
+		int size = model.getSize();
+		int[] counts = new int[3]; // turns ended, attacks, tiles revealed
+		model.getEvents().subscribe(GameEvent.UnitCreated.class, e -> units.put(e.unit(), e.y() * size + e.x()));
+		model.getEvents().subscribe(GameEvent.UnitMoved.class, e -> {
+			assertEquals(units.put(e.unit(), e.toY() * size + e.toX()), e.fromY() * size + e.fromX());
+			assertTrue(Math.abs(e.toX() - e.fromX()) <= 1 && Math.abs(e.toY() - e.fromY()) <= 1);
+		});
+		model.getEvents().subscribe(GameEvent.UnitDied.class,
+				e -> assertEquals(units.remove(e.unit()), e.y() * size + e.x()));
+		model.getEvents().subscribe(GameEvent.CityFounded.class, e -> {
+			assertEquals(units.remove(e.settler()), e.y() * size + e.x());
+			cities.put(e.city(), e.y() * size + e.x());
+		});
+		model.getEvents().subscribe(GameEvent.CityDestroyed.class,
+				e -> assertEquals(cities.remove(e.city()), e.y() * size + e.x()));
+		GameEvent.TurnEnded[] lastTurn = new GameEvent.TurnEnded[1];
+		model.getEvents().subscribe(GameEvent.TurnEnded.class, e -> {
+			counts[0]++;
+			lastTurn[0] = e;
+		});
+		java.util.function.Consumer<GameEvent> all = e -> {
+			if (e instanceof GameEvent.UnitAttacked)
+				counts[1]++;
+			else if (e instanceof GameEvent.TilesRevealed r)
+				assertTrue(r.left() >= 0 && r.top() >= 0 && r.right() < size && r.bottom() < size);
+		};
+		model.getEvents().subscribe(GameEvent.class, all);
+
+		controller.placeStartingUnits();
+		assertEquals(units.size(), 4);
+		assertEquals(counts[0], 0); // setup isn't a turn
+		int turns = 0;
+		for (; turns < 240 && !controller.gameOver(); turns++) {
+			Player player = model.getCurPlayer();
+			int round = model.roundNumber();
+			controller.playComputerTurn();
+			if (!controller.gameOver()) {
+				assertEquals(lastTurn[0].player(), player);
+				assertEquals(lastTurn[0].round(), round);
+			}
+		}
+		assertEquals(counts[0], controller.gameOver() ? turns - 1 : turns);
+		assertTrue(counts[1] > 0);
+		assertTrue(cities.size() > 0);
+
+		// the replay matches the board
+		int onBoard = 0, citiesOnBoard = 0;
+		for (int y = 0; y < size; y++) {
+			for (int x = 0; x < size; x++) {
+				Tile tile = model.getTileAt(x, y);
+				if (tile.getUnit() != null) {
+					onBoard++;
+					assertEquals(units.get(tile.getUnit()), y * size + x);
+				}
+				if (tile.isCityTile()) {
+					citiesOnBoard++;
+					assertEquals(cities.get(model.getCivBoard().getCity(x, y)), y * size + x);
+				}
+			}
+		}
+		assertEquals(units.size(), onBoard);
+		assertEquals(cities.size(), citiesOnBoard);
+
+		// unsubscribed listeners hear nothing more
+		assertTrue(model.getEvents().unsubscribe(GameEvent.class, all));
+		assertFalse(model.getEvents().unsubscribe(GameEvent.class, all));
+		int attacks = counts[1];
+		for (int i = 0; i < 20 && !controller.gameOver(); i++)
+			controller.playComputerTurn();
+		assertEquals(counts[1], attacks);
+	}
+
+	@Test
+	/**
+	 * Test that the spatial index follows the board through a whole game, and
+	 * after a load, by checking its answers against a scan of every tile.
+	 */
+	void testSpatialIndex() throws IOException {
+		CivModel model = new CivModel(0, 4, 5, 40, 79);
+		CivController controller = new CivController(model);
+		controller.placeStartingUnits();
+		for (int i = 0; i < 160 && !controller.gameOver(); i++) {
+			controller.playComputerTurn();
+			if (i % 20 == 0)
+				assertIndexMatchesBoard(model);
+		}
+		assertTrue(model.getSpatialIndex().getCityCount() > 0);
+
+		File save = File.createTempFile("civ", ".dat");
+		save.deleteOnExit();
+		model.setSavePath(save.getPath());
+		assertTrue(model.done());
+		CivModel loaded = new CivModel(save.getPath());
+		assertEquals(loaded.getSpatialIndex().getUnitCount(), model.getSpatialIndex().getUnitCount());
+		assertIndexMatchesBoard(loaded);
+	}
+
+	private void assertIndexMatchesBoard(CivModel model) {
+		SpatialIndex index = model.getSpatialIndex();
+		int size = model.getSize();
+		int units = 0, cities = 0;
+		for (int x = 0; x < size; x++) {
+			for (int y = 0; y < size; y++) {
+				units += model.getTileAt(x, y).getUnit() != null ? 1 : 0;
+				cities += model.getTileAt(x, y).isCityTile() ? 1 : 0;
+			}
+		}
+		assertEquals(index.getUnitCount(), units);
+		assertEquals(index.getCityCount(), cities);
+		for (Player player : model.getAllPlayers()) {
+			for (int k = 0; k < 10; k++) {
+				int cx = k * 7 % size, cy = k * 13 % size, radius = k * 3;
+				List<Unit> found = index.enemyUnitsWithin(player, cx, cy, radius);
+				int expected = 0;
+				int nearest = Integer.MAX_VALUE;
+				for (int x = 0; x < size; x++) {
+					for (int y = 0; y < size; y++) {
+						Unit u = model.getTileAt(x, y).getUnit();
+						int dist = Math.max(Math.abs(x - cx), Math.abs(y - cy));
+						if (u != null && u.getOwner() != player && dist <= radius) {
+							assertTrue(found.contains(u));
+							expected++;
+						}
+						Tile t = model.getTileAt(x, y);
+						if (t.isCityTile() && t.getOwnerCity().getOwner() != player)
+							nearest = Math.min(nearest, dist);
+					}
+				}
+				assertEquals(found.size(), expected);
+				City city = index.nearestEnemyCity(player, cx, cy);
+				if (nearest == Integer.MAX_VALUE) {
+					assertEquals(city, null);
+				} else {
+					assertTrue(city.getOwner() != player);
+					assertEquals(Math.max(Math.abs(city.getX() - cx), Math.abs(city.getY() - cy)), nearest);
+				}
+			}
+		}
+	}
+
+	private void assertSameGame(CivModel a, CivModel b) {
+		assertEquals(a.roundNumber(), b.roundNumber());
+		assertEquals(a.getCurPlayer().getID(), b.getCurPlayer().getID());
+		List<Player> pa = a.getAllPlayers(), pb = b.getAllPlayers();
+		assertEquals(pa.size(), pb.size());
+		for (int i = 0; i < pa.size(); i++) {
+			assertEquals(pa.get(i).getID(), pb.get(i).getID());
+			assertEquals(pa.get(i).getUnits().size(), pb.get(i).getUnits().size());
+			for (int u = 0; u < pa.get(i).getUnits().size(); u++) {
+				Unit ua = pa.get(i).getUnits().get(u), ub = pb.get(i).getUnits().get(u);
+				assertEquals(ua.getLabel(), ub.getLabel());
+				assertEquals(ua.getX(), ub.getX());
+				assertEquals(ua.getY(), ub.getY());
+				assertEquals(ua.getHP(), ub.getHP());
+				assertEquals(ua.getMovement(), ub.getMovement());
+			}
+			assertEquals(pa.get(i).getCities().size(), pb.get(i).getCities().size());
+			for (int c = 0; c < pa.get(i).getCities().size(); c++) {
+				City ca = pa.get(i).getCities().get(c), cb = pb.get(i).getCities().get(c);
+				assertEquals(ca.getX(), cb.getX());
+				assertEquals(ca.getRemainingHP(), cb.getRemainingHP());
+				assertEquals(ca.getProductionReserve(), cb.getProductionReserve());
+				assertEquals(ca.getPopulation(), cb.getPopulation());
+				assertEquals(ca.getProducableUnits(), cb.getProducableUnits());
+			}
+			assertEquals(a.getRevealed(pa.get(i)), b.getRevealed(pb.get(i)));
+		}
+		for (int x = 0; x < a.getSize(); x++) {
+			for (int y = 0; y < a.getSize(); y++) {
+				Tile ta = a.getTileAt(x, y), tb = b.getTileAt(x, y);
+				assertEquals(ta.getTerrainType(), tb.getTerrainType());
+				assertEquals(ta.getResourceType(), tb.getResourceType());
+				assertEquals(ta.getMovementModifier(), tb.getMovementModifier());
+				assertEquals(ta.isCityTile(), tb.isCityTile());
+				assertEquals(ta.getUnit() == null, tb.getUnit() == null);
+				assertEquals(ta.getOwnerCity() == null, tb.getOwnerCity() == null);
+			}
+		}
+	}
+
 }
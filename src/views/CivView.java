@@ -4,14 +4,15 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Observable;
-import java.util.Observer;
 
 import components.*;
+import controllers.Autosave;
 import controllers.CivController;
 import javafx.animation.Animation;
 import javafx.animation.FadeTransition;
@@ -23,6 +24,7 @@ import javafx.application.Application;
 import javafx.application.Platform;
 import javafx.event.ActionEvent;
 import javafx.event.EventHandler;
+import javafx.geometry.Bounds;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Node;
@@ -36,6 +38,7 @@ import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.input.KeyCode;
 import javafx.scene.input.KeyEvent;
+import javafx.scene.input.MouseButton;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.*;
 import javafx.scene.paint.Color;
@@ -44,8 +47,13 @@ import javafx.scene.text.Text;
 import javafx.scene.text.TextFlow;
 import javafx.stage.Stage;
 import javafx.util.Duration;
+import models.CivBoard;
 import models.CivModel;
+import models.GameEvent;
+import models.ModelChange;
+import models.NoiseMapGenerator;
 import models.Player;
+import models.SaveJournal;
 
 /**
  * A GUI for a Civ-like game.
@@ -68,8 +76,7 @@ import models.Player;
  *
  * @author Connie Sun, Ryan Smith, Luke Hankins, Tim Gavlick
  */
-@SuppressWarnings("deprecation")
-public class CivView extends Application implements Observer {
+public class CivView extends Application {
 
 	// game data + controller
 	private CivController controller;
@@ -83,17 +90,26 @@ public class CivView extends Application implements Observer {
 	// map hooks
 	private ScrollPane mapScrollContainer;
 	private Canvas mapCanvas;
-	private Pane mapOverlayContainer;
+	private double viewLeft, viewTop;
+	private int visibleLeft, visibleTop, visibleRight, visibleBottom;
+	private Map<Tile.terrainTypes, Image[]> tileImages;
+	private TerrainChunks terrainChunks;
+	private Canvas markerCanvas;
+	private List<Marker> markers;
 	private Map<String, Image> markerImages;
 	private ImageView mapHoverCursor;
 	private ImageView mapSelectedCursor;
 	private FadeTransition mapSelectedTransition;
 	private Canvas fogCanvas;
 	private Map<String, Image> fogImages;
+	private Player fogPlayer;
+	private BitSet fogDrawn;
 
 	// sprite hooks
-	private Pane spriteContainer;
+	private Canvas spriteCanvas;
 	private Map<String, Image> spriteImages;
+	private TextureAtlas atlas;
+	private BitSet dirtySprites;
 
 	// ui hooks
 	private VBox unitPane;
@@ -112,6 +128,12 @@ public class CivView extends Application implements Observer {
 	private static final double ISO_FACTOR = 0.6;
 	private static final int SCROLL_GUTTER = 240;
 	private static final int CITY_PANE_WIDTH = 240;
+	private static final int TILE_VARIANTS = 5;
+	private static final int VIEWPORT_MARGIN = 240;
+	private static final int ATLAS_WIDTH = 1024;
+	private static final Color HP_BAR_BORDER = Color.rgb(0, 0, 0, 0.25);
+	private static final Color HP_BAR_LOST = Color.web("#dd3d3d");
+	private static final Color HP_BAR_REMAINING = Color.web("#17e313");
 
 	// viz derived constants (for convenience)
 	private int isoBoardWidth;
@@ -130,9 +152,11 @@ public class CivView extends Application implements Observer {
 
 	public void startGame(Stage stage) {
 		this.controller = new CivController(model);
+		controller.setAutosave(new Autosave(new SaveJournal(model.getSavePath() + ".autosave", 1 << 20), 1));
 		this.spriteImages = new HashMap<>();
 
-		model.addObserver(this);
+		model.getEvents().subscribe(GameEvent.ModelChanged.class, e -> update(e.change()));
+		subscribeDirtyRegions();
 
 		// calculate derived constants (less spaghetti later on)
 		isoBoardWidth = model.getSize() * TILE_SIZE;
@@ -140,6 +164,7 @@ public class CivView extends Application implements Observer {
 
 		// preload and save references to sprite images
 		loadSpriteImages();
+		buildTerrainChunks();
 
 		// assemble ui
 		Pane window = new Pane();
@@ -148,7 +173,7 @@ public class CivView extends Application implements Observer {
 		// populate initial map state
 		if (isNewGame)
 			controller.placeStartingUnits();
-		renderAllSprites();
+		renderSprites();
 
 		// focus the map on any friendly unit so the starting player isn't lost
 		// in fog
@@ -201,12 +226,19 @@ public class CivView extends Application implements Observer {
 	/**
 	 * Preload sprite images and return references to their Image objects. This
 	 * prevents us from continually loading new images as the sprite layer
-	 * refreshes, which is especially bad if javafx doesn't release them.
+	 * refreshes, which is especially bad if javafx doesn't release them. The
+	 * tile art for every terrain type is loaded here too, so drawing the map
+	 * never has to read an image from disk.
+	 *
+	 * <p>
+	 * The sprite, marker and fog images are then packed into one TextureAtlas,
+	 * which everything drawn onto the map's canvases comes from.
 	 */
 	private void loadSpriteImages() {
 		spriteImages = new HashMap<>();
 		markerImages = new HashMap<>();
 		fogImages = new HashMap<>();
+		tileImages = new EnumMap<>(Tile.terrainTypes.class);
 
 		String[] players = { "player-1", "player-2", "player-3", "player-4", "cpu-player" };
 		String[] units = { "city", "scout", "settler", "warrior", "militia", "swordsman", "cavalry" };
@@ -243,20 +275,72 @@ public class CivView extends Application implements Observer {
 				String str = Integer.toBinaryString(i + 16).substring(1);
 				fogImages.put(str, new Image(new FileInputStream("src/assets/fog/fog-" + str + ".png")));
 			}
+
+			for (Tile.terrainTypes terrain : Tile.terrainTypes.values()) {
+				Image[] variants = new Image[TILE_VARIANTS];
+				for (int i = 0; i < TILE_VARIANTS; i++) {
+					variants[i] = new Image(new FileInputStream(
+							"src/assets/tiles/" + terrain.name().toLowerCase() + "-" + (i + 1) + ".png"
+					));
+				}
+				tileImages.put(terrain, variants);
+			}
 		} catch (FileNotFoundException e) {
 			e.printStackTrace();
 		}
+
+		Map<String, Image> packed = new HashMap<>(spriteImages);
+		packed.putAll(markerImages);
+		for (Map.Entry<String, Image> fog : fogImages.entrySet())
+			packed.put("fog-" + fog.getKey(), fog.getValue());
+		atlas = TextureAtlas.pack(packed, ATLAS_WIDTH);
+	}
+
+	/**
+	 * Set up pre-rendering of the terrain, which never changes once the board
+	 * is built, into chunks that renderTerrain() can draw whole. Every tile's
+	 * art is picked here, so the chunks can be built off the FX thread.
+	 */
+	private void buildTerrainChunks() {
+		int size = model.getSize();
+		Image[] tiles = new Image[size * size];
+		Image[] resources = new Image[size * size];
+		for (int y = 0; y < size; y++) {
+			for (int x = 0; x < size; x++) {
+				Tile tile = model.getTileAt(x, y);
+				tiles[y * size + x] = getTileImage(tile, x, y);
+				if (tile.getResourceType().length() > 0)
+					resources[y * size + x] = spriteImages.get(tile.getResourceType() + "-tile");
+			}
+		}
+		terrainChunks = new TerrainChunks(size, TILE_SIZE, (int) (TILE_SIZE * ISO_FACTOR), tiles, resources,
+				TILE_SIZE / 10, (int) ((TILE_SIZE - RESOURCE_SIZE) / 2.0 * ISO_FACTOR), this::renderTerrain);
+	}
+
+	/**
+	 * Keep track of which parts of the map need redrawing as the model changes,
+	 * so update() only has to touch those. Tiles whose unit, city or owner
+	 * changed come with each ModelChange, and fights (which change HP bars) are
+	 * collected here as they happen. Newly revealed tiles are found by
+	 * renderFog() itself.
+	 */
+	private void subscribeDirtyRegions() {
+		int size = model.getSize();
+		dirtySprites = new BitSet();
+		model.getEvents().subscribe(GameEvent.UnitAttacked.class, e -> {
+			dirtySprites.set(e.fromY() * size + e.fromX());
+			dirtySprites.set(e.targetY() * size + e.targetX());
+		});
 	}
 
 	/**
-	 * Update the UI when the model changes.
+	 * Update the UI when the model changes. Only the sprites on tiles that
+	 * changed, and the fog around tiles that were revealed, are redrawn.
 	 *
-	 * @param observable The observable that's been updated
-	 * @param o          Arbitrary data
+	 * @param change what changed since the last update
 	 */
-	@Override
-	public void update(Observable observable, Object o) {
-		renderAllSprites();
+	private void update(ModelChange change) {
+		renderChangedSprites(change);
 		renderFog();
 		updatePlayers();
 
@@ -282,7 +366,7 @@ public class CivView extends Application implements Observer {
 
 		// refresh any open detail panes and ranges, as the selected unit's
 		// values may have changed
-		mapOverlayContainer.getChildren().clear();
+		clearMarkers();
 		if (selectedCity != null)
 			selectCity(selectedCity);
 		if (selectedUnit != null)
@@ -293,8 +377,9 @@ public class CivView extends Application implements Observer {
 			Alert endgame = new Alert(Alert.AlertType.INFORMATION);
 			endgame.setContentText("Game Over!");
 			endgame.showAndWait();
-			File oldGame = new File("save_game.dat");
+			File oldGame = new File(model.getSavePath());
 			oldGame.delete();
+			controller.getAutosave().deleteSaves();
 			System.exit(0);
 		}
 	}
@@ -316,55 +401,23 @@ public class CivView extends Application implements Observer {
 		mapScrollContainer.getStyleClass().add("map");
 		window.getChildren().add(mapScrollContainer);
 
-		// pane to contain the map canvas. This interim layer lets us add padding
-		// without screwing up canvas click math, etc
+		// pane to contain the map canvases. This interim layer is as big as the
+		// board plus a gutter all round, however small the canvases in it are
 		Pane mapElementContainer = new Pane();
-		mapElementContainer.setPadding(new Insets(0, SCROLL_GUTTER, SCROLL_GUTTER, 0));
+		mapElementContainer.setMinSize(isoBoardWidth + 2 * SCROLL_GUTTER, isoBoardHeight + 2 * SCROLL_GUTTER);
+		mapElementContainer.setPrefSize(isoBoardWidth + 2 * SCROLL_GUTTER, isoBoardHeight + 2 * SCROLL_GUTTER);
 		mapScrollContainer.setContent(mapElementContainer);
 
-		// terrain map: canvas element
-		mapCanvas = new Canvas(isoBoardWidth, isoBoardHeight);
+		// terrain map: canvas element, only as big as the viewport (see
+		// renderViewport())
+		mapCanvas = new Canvas();
 		mapElementContainer.getChildren().add(mapCanvas);
-		mapCanvas.setLayoutX(SCROLL_GUTTER);
-		mapCanvas.setLayoutY(SCROLL_GUTTER);
-
-		// terrain map: bg
-		GraphicsContext context = mapCanvas.getGraphicsContext2D();
-		context.setFill(Color.BLACK);
-		context.fillRect(0, 0, isoBoardWidth, isoBoardHeight);
-
-		// terrain map: tiles
-		for (int[] coords : getDrawTraversal()) {
-			Tile tile = model.getTileAt(coords[0], coords[1]);
-			if (tile == null)
-				continue;
-
-			Image tileImage = getTileImage(tile.getTerrainType());
-			int[] isoCoords = gridToIso(coords[0], coords[1]);
-
-			context.drawImage(tileImage, isoCoords[0], isoCoords[1], TILE_SIZE, TILE_SIZE * ISO_FACTOR);
-
-			if (tile.getResourceType().length() > 0) {
-				Image resourceImage = spriteImages.get(tile.getResourceType() + "-tile");
-				if (resourceImage != null) {
-					context.drawImage(
-							resourceImage,
-							isoCoords[0] + TILE_SIZE / 10.0,
-							isoCoords[1] + (TILE_SIZE - RESOURCE_SIZE) / 2.0 * ISO_FACTOR,
-							RESOURCE_SIZE,
-							RESOURCE_SIZE * ISO_FACTOR
-					);
-				}
-			}
-		}
 
 		// claim a layer for tile indicators
-		mapOverlayContainer = new Pane();
-		mapOverlayContainer.setPrefSize(isoBoardWidth, isoBoardHeight);
-		mapOverlayContainer.setLayoutX(SCROLL_GUTTER);
-		mapOverlayContainer.setLayoutY(SCROLL_GUTTER);
-		mapOverlayContainer.setMouseTransparent(true);
-		mapElementContainer.getChildren().add(mapOverlayContainer);
+		markers = new ArrayList<>();
+		markerCanvas = new Canvas();
+		markerCanvas.setMouseTransparent(true);
+		mapElementContainer.getChildren().add(markerCanvas);
 
 		// store hover cursor imageview for later so we don't have to keep
 		// creating and destroying it many times per second
@@ -391,21 +444,21 @@ public class CivView extends Application implements Observer {
 		mapSelectedTransition.setNode(mapSelectedCursor);
 
 		// sprite layer
-		spriteContainer = new Pane();
-		spriteContainer.setPrefWidth(isoBoardWidth);
-		spriteContainer.setPrefHeight(isoBoardHeight);
-		spriteContainer.setLayoutX(SCROLL_GUTTER);
-		spriteContainer.setLayoutY(SCROLL_GUTTER);
-		spriteContainer.setMouseTransparent(true);
-		mapElementContainer.getChildren().add(spriteContainer);
+		spriteCanvas = new Canvas();
+		spriteCanvas.setMouseTransparent(true);
+		mapElementContainer.getChildren().add(spriteCanvas);
 
 		// fog of war layer
-		fogCanvas = new Canvas(isoBoardWidth, isoBoardHeight);
+		fogCanvas = new Canvas();
 		mapElementContainer.getChildren().add(fogCanvas);
-		fogCanvas.setLayoutX(SCROLL_GUTTER);
-		fogCanvas.setLayoutY(SCROLL_GUTTER);
 		fogCanvas.setMouseTransparent(true);
 
+		// the canvases follow the viewport around as the map scrolls
+		mapScrollContainer.hvalueProperty().addListener((o, old, now) -> renderViewport(false));
+		mapScrollContainer.vvalueProperty().addListener((o, old, now) -> renderViewport(false));
+		mapScrollContainer.viewportBoundsProperty().addListener((o, old, now) -> renderViewport(true));
+		renderViewport(true);
+
 		// unit detail pane
 		unitPane = new VBox();
 		unitPane.getStyleClass().addAll("detail-pane", "detail-pane--unit");
@@ -435,161 +488,471 @@ public class CivView extends Application implements Observer {
 	}
 
 	/**
-	 * Wipe and render the entire sprite layer.
+	 * Move the map's canvases (terrain, markers, sprites and fog) to cover what
+	 * the map's viewport shows, and redraw them.
+	 *
+	 * <p>
+	 * Rather than one canvas the size of the whole board (which for big boards
+	 * is more pixels than a texture can hold), each canvas is the size of the
+	 * viewport plus VIEWPORT_MARGIN on every side, placed under the part of the
+	 * board being looked at. Only tiles that overlap it are drawn, so memory and
+	 * drawing time depend on the window size, not the board size. Small scrolls
+	 * stay inside the margin and don't redraw anything.
+	 *
+	 * @param force True to redraw even if the viewport is still covered
 	 */
-	private void renderAllSprites() {
-		clearAllSprites();
-		for (int[] space : getDrawTraversal()) {
-			Tile tile = model.getTileAt(space[0], space[1]);
-			if (tile == null)
-				continue;
+	private void renderViewport(boolean force) {
+		Bounds viewport = mapScrollContainer.getViewportBounds();
+		double viewWidth = viewport.getWidth() > 0 ? viewport.getWidth() : WINDOW_WIDTH;
+		double viewHeight = viewport.getHeight() > 0 ? viewport.getHeight() : WINDOW_HEIGHT;
+
+		// ScrollPane scroll values are percentages of how far the content can
+		// scroll; the content is the board plus a gutter all round
+		double scrollWidth = Math.max(isoBoardWidth + 2 * SCROLL_GUTTER - viewWidth, 0);
+		double scrollHeight = Math.max(isoBoardHeight + 2 * SCROLL_GUTTER - viewHeight, 0);
+		double left = scrollWidth * mapScrollContainer.getHvalue() - SCROLL_GUTTER;
+		double top = scrollHeight * mapScrollContainer.getVvalue() - SCROLL_GUTTER;
+		if (!force && left >= viewLeft && top >= viewTop && left + viewWidth <= viewLeft + mapCanvas.getWidth()
+				&& top + viewHeight <= viewTop + mapCanvas.getHeight())
+			return;
 
-			City city = null;
-			if (tile.isCityTile())
-				city = tile.getOwnerCity();
-			Unit unit = tile.getUnit();
+		viewLeft = left - VIEWPORT_MARGIN;
+		viewTop = top - VIEWPORT_MARGIN;
+		double width = viewWidth + 2 * VIEWPORT_MARGIN;
+		double height = viewHeight + 2 * VIEWPORT_MARGIN;
+		for (Canvas canvas : new Canvas[] { mapCanvas, markerCanvas, spriteCanvas, fogCanvas }) {
+			canvas.setWidth(width);
+			canvas.setHeight(height);
+			canvas.setLayoutX(SCROLL_GUTTER + viewLeft);
+			canvas.setLayoutY(SCROLL_GUTTER + viewTop);
+		}
 
-			if (city != null)
-				renderCity(city);
-			if (unit != null)
-				renderUnit(unit);
+		// the canvas is a diamond in grid space; take the rectangle around it,
+		// plus a tile for images that hang over their neighbours
+		int size = model.getSize();
+		int[][] corners = { isoToGrid(viewLeft, viewTop), isoToGrid(viewLeft + width, viewTop),
+				isoToGrid(viewLeft, viewTop + height), isoToGrid(viewLeft + width, viewTop + height) };
+		visibleLeft = visibleTop = Integer.MAX_VALUE;
+		visibleRight = visibleBottom = Integer.MIN_VALUE;
+		for (int[] corner : corners) {
+			visibleLeft = Math.min(visibleLeft, corner[0]);
+			visibleTop = Math.min(visibleTop, corner[1]);
+			visibleRight = Math.max(visibleRight, corner[0]);
+			visibleBottom = Math.max(visibleBottom, corner[1]);
 		}
+		visibleLeft = Math.max(visibleLeft - 1, 0);
+		visibleTop = Math.max(visibleTop - 1, 0);
+		visibleRight = Math.min(visibleRight + 1, size - 1);
+		visibleBottom = Math.min(visibleBottom + 1, size - 1);
+
+		renderTerrain();
+		renderMarkers();
+		renderSprites();
+		renderVisibleFog();
 	}
 
 	/**
-	 * Render a single city to the map.
+	 * Draw the terrain and resources of every tile under the map canvas.
 	 *
-	 * @param city The city to render. Position will be derived from the City's
-	 *             stored coords
+	 * <p>
+	 * This is normally a drawImage() of each pre-rendered terrain chunk under
+	 * the canvas (see TerrainChunks). Chunks that aren't ready yet are queued,
+	 * and until they all are the tiles are drawn one by one, back-to-front;
+	 * this is called again as each one comes in.
 	 */
-	private void renderCity(City city) {
-		int[] coords = gridToIso(city.getX(), city.getY());
+	private void renderTerrain() {
+		GraphicsContext context = mapCanvas.getGraphicsContext2D();
+		context.clearRect(0, 0, mapCanvas.getWidth(), mapCanvas.getHeight());
+		context.save();
+		context.translate(-viewLeft, -viewTop);
+
+		int chunkLeft = Math.max((int) Math.floor(viewLeft / TerrainChunks.CHUNK_SIZE), 0);
+		int chunkTop = Math.max((int) Math.floor(viewTop / TerrainChunks.CHUNK_SIZE), 0);
+		int chunkRight = Math.min((int) Math.floor((viewLeft + mapCanvas.getWidth()) / TerrainChunks.CHUNK_SIZE),
+				terrainChunks.getChunksWide() - 1);
+		int chunkBottom = Math.min((int) Math.floor((viewTop + mapCanvas.getHeight()) / TerrainChunks.CHUNK_SIZE),
+				terrainChunks.getChunksHigh() - 1);
+		List<Image> chunks = new ArrayList<>();
+		for (int chunkY = chunkTop; chunkY <= chunkBottom; chunkY++) {
+			for (int chunkX = chunkLeft; chunkX <= chunkRight; chunkX++)
+				chunks.add(terrainChunks.get(chunkX, chunkY));
+		}
+		if (!chunks.contains(null)) {
+			int i = 0;
+			for (int chunkY = chunkTop; chunkY <= chunkBottom; chunkY++) {
+				for (int chunkX = chunkLeft; chunkX <= chunkRight; chunkX++)
+					context.drawImage(chunks.get(i++), chunkX * TerrainChunks.CHUNK_SIZE,
+							chunkY * TerrainChunks.CHUNK_SIZE);
+			}
+			context.restore();
+			return;
+		}
 
-		ImageView cityImageView = new ImageView(
-				spriteImages.get("city-" + cssClassFrom(city.getOwner().getID()))
-		);
-		cityImageView.setFitWidth(CITY_SIZE);
-		cityImageView.setFitHeight(CITY_SIZE);
-		cityImageView.setMouseTransparent(true);
-		cityImageView.setX(coords[0] + ((TILE_SIZE - CITY_SIZE) / 2.0));
-		cityImageView.setY(coords[1] - 34.0); // Magic Number, for now
-		spriteContainer.getChildren().add(cityImageView);
-
-		renderSpriteHPBar(city.getRemainingHP(), city.getMaxHP(), coords[0], coords[1] + 6);
+		// terrain map: bg
+		context.setFill(Color.BLACK);
+		context.fillRect(0, 0, isoBoardWidth, isoBoardHeight);
+
+		// terrain map: tiles, one diagonal slice at a time like getDrawTraversal()
+		for (int slice = visibleLeft + visibleTop; slice <= visibleRight + visibleBottom; slice++) {
+			for (int x = Math.max(visibleLeft, slice - visibleBottom); x <= Math.min(visibleRight,
+					slice - visibleTop); x++) {
+				int y = slice - x;
+				Tile tile = model.getTileAt(x, y);
+
+				Image tileImage = getTileImage(tile, x, y);
+				int[] isoCoords = gridToIso(x, y);
+
+				context.drawImage(tileImage, isoCoords[0], isoCoords[1], TILE_SIZE, TILE_SIZE * ISO_FACTOR);
+
+				if (tile.getResourceType().length() > 0) {
+					Image resourceImage = spriteImages.get(tile.getResourceType() + "-tile");
+					if (resourceImage != null) {
+						context.drawImage(
+								resourceImage,
+								isoCoords[0] + TILE_SIZE / 10.0,
+								isoCoords[1] + (TILE_SIZE - RESOURCE_SIZE) / 2.0 * ISO_FACTOR,
+								RESOURCE_SIZE,
+								RESOURCE_SIZE * ISO_FACTOR
+						);
+					}
+				}
+			}
+		}
+		context.restore();
+	}
+
+	/**
+	 * An indicator drawn on a tile of the map, under the sprites: a marker
+	 * image covering the tile, or a resource drawn the way the terrain draws it.
+	 *
+	 * @param image    Name of the image in the atlas
+	 * @param x        The x index of the tile in the map grid
+	 * @param y        The y index of the tile in the map grid
+	 * @param resource True if the image is a resource
+	 */
+	private record Marker(String image, int x, int y, boolean resource) {
+	}
+
+	/**
+	 * Redraw the sprite layer if a tile under the sprite canvas changed. That
+	 * covers HP bars too: fights are collected in dirtySprites, and units and
+	 * cities that heal at the start of a turn have their tiles marked changed.
+	 *
+	 * @param change what changed since the last update
+	 */
+	private void renderChangedSprites(ModelChange change) {
+		int size = model.getSize();
+		dirtySprites.or(change.getChangedTiles());
+		boolean visible = false;
+		for (int i = dirtySprites.nextSetBit(0); i >= 0 && !visible; i = dirtySprites.nextSetBit(i + 1)) {
+			int x = i % size, y = i / size;
+			visible = x >= visibleLeft && x <= visibleRight && y >= visibleTop && y <= visibleBottom;
+		}
+		dirtySprites.clear();
+		if (visible)
+			renderSprites();
+	}
+
+	/**
+	 * Draw every city and unit under the sprite canvas, with their HP bars, in
+	 * one pass over the visible tiles back-to-front. All the images come from
+	 * the atlas, so however many units there are it's one canvas and one
+	 * texture, rather than a few scene graph nodes per unit.
+	 */
+	private void renderSprites() {
+		GraphicsContext context = spriteCanvas.getGraphicsContext2D();
+		context.clearRect(0, 0, spriteCanvas.getWidth(), spriteCanvas.getHeight());
+		context.save();
+		context.translate(-viewLeft, -viewTop);
+
+		// one diagonal slice at a time, like getDrawTraversal()
+		for (int slice = visibleLeft + visibleTop; slice <= visibleRight + visibleBottom; slice++) {
+			for (int x = Math.max(visibleLeft, slice - visibleBottom); x <= Math.min(visibleRight,
+					slice - visibleTop); x++) {
+				int y = slice - x;
+				Tile tile = model.getTileAt(x, y);
+				if (tile.isCityTile())
+					drawCity(context, tile.getOwnerCity());
+				if (tile.getUnit() != null)
+					drawUnit(context, tile.getUnit());
+			}
+		}
+		context.restore();
+	}
+
+	/**
+	 * Draw a single city.
+	 *
+	 * @param context The sprite canvas's context
+	 * @param city    The city to draw. Position will be derived from the City's
+	 *                stored coords
+	 */
+	private void drawCity(GraphicsContext context, City city) {
+		int[] coords = gridToIso(city.getX(), city.getY());
+		atlas.draw(context, "city-" + cssClassFrom(city.getOwner().getID()),
+				coords[0] + ((TILE_SIZE - CITY_SIZE) / 2.0), coords[1] - 34.0, // Magic Number, for now
+				CITY_SIZE, CITY_SIZE);
+		drawSpriteHPBar(context, city.getRemainingHP(), city.getMaxHP(), coords[0], coords[1] + 6);
 	}
 
 	/**
-	 * Render a single unit to the map.
+	 * Draw a single unit.
 	 *
-	 * @param unit The unit to render. Position will be derived from the Unit's
-	 *             stored coords
+	 * @param context The sprite canvas's context
+	 * @param unit    The unit to draw. Position will be derived from the Unit's
+	 *                stored coords
 	 */
-	private void renderUnit(Unit unit) {
+	private void drawUnit(GraphicsContext context, Unit unit) {
 		String player = cssClassFrom(unit.getOwner().getID());
 		int[] coords = gridToIso(unit.getX(), unit.getY());
 
-		ImageView unitImageView;
+		String image;
 		if (unit instanceof Cavalry) {
-			unitImageView = new ImageView(spriteImages.get("cavalry-" + player));
+			image = "cavalry-" + player;
 		} else if (unit instanceof Militia) {
-			unitImageView = new ImageView(spriteImages.get("militia-" + player));
+			image = "militia-" + player;
 		} else if (unit instanceof Scout) {
-			unitImageView = new ImageView(spriteImages.get("scout-" + player));
-		} else if (unit instanceof Settler){
-			unitImageView = new ImageView(spriteImages.get("settler-" + player));
+			image = "scout-" + player;
+		} else if (unit instanceof Settler) {
+			image = "settler-" + player;
 		} else if (unit instanceof Swordsman) {
-			unitImageView = new ImageView(spriteImages.get("swordsman-" + player));
+			image = "swordsman-" + player;
 		} else {
-			unitImageView = new ImageView(spriteImages.get("warrior-" + player));
+			image = "warrior-" + player;
 		}
-
-		unitImageView.setFitWidth(SPRITE_SIZE);
-		unitImageView.setFitHeight(SPRITE_SIZE);
-		unitImageView.setMouseTransparent(true);
-		unitImageView.setX(coords[0] + ((TILE_SIZE - SPRITE_SIZE) / 2.0));
-		unitImageView.setY(coords[1] - (SPRITE_SIZE / 4.0));
-		spriteContainer.getChildren().add(unitImageView);
-
-		renderSpriteHPBar(unit.getHP(), unit.getMaxHP(), coords[0], coords[1]);
+		atlas.draw(context, image, coords[0] + ((TILE_SIZE - SPRITE_SIZE) / 2.0), coords[1] - (SPRITE_SIZE / 4.0),
+				SPRITE_SIZE, SPRITE_SIZE);
+		drawSpriteHPBar(context, unit.getHP(), unit.getMaxHP(), coords[0], coords[1]);
 	}
 
 	/**
-	 * Place an inline HP bar above a certain map square
+	 * Draw an inline HP bar above a certain map square, looking like the
+	 * hp-bar built by createHPBar() for the detail panes.
 	 *
-	 * @param cur The unit or city's current hp
-	 * @param max The unit or city's max hp
-	 * @param x   The left iso coord of the space to render on
-	 * @param y   The top iso coord of the space to render on
+	 * @param context The sprite canvas's context
+	 * @param cur     The unit or city's current hp
+	 * @param max     The unit or city's max hp
+	 * @param x       The left iso coord of the space to render on
+	 * @param y       The top iso coord of the space to render on
+	 */
+	private void drawSpriteHPBar(GraphicsContext context, double cur, double max, int x, int y) {
+		double left = x + TILE_SIZE / 4.0;
+		double top = y + (TILE_SIZE * ISO_FACTOR) / 1.35;
+		double width = TILE_SIZE / 2.0;
+		context.setFill(HP_BAR_BORDER);
+		context.fillRect(left, top, width, 6);
+		context.setFill(HP_BAR_LOST);
+		context.fillRect(left + 1, top + 1, width - 2, 4);
+		context.setFill(HP_BAR_REMAINING);
+		context.fillRect(left + 1, top + 1, (width - 2) * Math.max(cur / max, 0), 4);
+	}
+
+	/**
+	 * Draw every marker on a tile under the marker canvas.
 	 */
-	private void renderSpriteHPBar(double cur, double max, int x, int y) {
-		GridPane hpBar = createHPBar(cur, max);
-		hpBar.setPrefWidth(TILE_SIZE / 2.0);
-		hpBar.setLayoutX(x + TILE_SIZE / 4.0);
-		hpBar.setLayoutY(y + (TILE_SIZE * ISO_FACTOR) / 1.35);
-		spriteContainer.getChildren().add(hpBar);
+	private void renderMarkers() {
+		GraphicsContext context = markerCanvas.getGraphicsContext2D();
+		context.clearRect(0, 0, markerCanvas.getWidth(), markerCanvas.getHeight());
+		context.save();
+		context.translate(-viewLeft, -viewTop);
+		for (Marker marker : markers) {
+			if (marker.x() < visibleLeft || marker.x() > visibleRight || marker.y() < visibleTop
+					|| marker.y() > visibleBottom)
+				continue;
+			int[] coords = gridToIso(marker.x(), marker.y());
+			if (marker.resource())
+				atlas.draw(context, marker.image(), coords[0] + TILE_SIZE / 10.0,
+						coords[1] + (TILE_SIZE - RESOURCE_SIZE) / 2.0 * ISO_FACTOR, RESOURCE_SIZE,
+						RESOURCE_SIZE * ISO_FACTOR);
+			else
+				atlas.draw(context, marker.image(), coords[0], coords[1]);
+		}
+		context.restore();
 	}
 
 	/**
-	 * Clear all currently rendered sprites.
+	 * Remove every marker from the map.
 	 */
-	private void clearAllSprites() {
-		spriteContainer.getChildren().clear();
-		System.gc();
+	private void clearMarkers() {
+		markers.clear();
+		renderMarkers();
 	}
 
 	/**
 	 * Render fog of war on top of the map and sprites based on what the
 	 * current player has already discovered.
+	 *
+	 * <p>
+	 * The whole fog layer is only drawn when it has to show a different player
+	 * than last time, which in hot-seat games means a new human's turn.
+	 * Otherwise only the tiles revealed since the fog was last drawn are
+	 * touched: they and their 8 neighbours, whose edges and corners depend on
+	 * them, are cleared and redrawn, clipped so nothing around them is
+	 * disturbed. If nothing was revealed nothing is drawn. Either way only the
+	 * part under the fog canvas is drawn (see renderViewport()).
 	 */
 	private void renderFog() {
-		GraphicsContext context = fogCanvas.getGraphicsContext2D();
-		Player player = model.getCurPlayer();
-		int size = model.getSize();
-
-		context.clearRect(0, 0, isoBoardWidth, isoBoardHeight);
+		Player player = controller.isHumanTurn() ? model.getCurPlayer() : null;
+		if (player != fogPlayer) {
+			fogPlayer = player;
+			renderVisibleFog();
+			return;
+		}
+		if (fogPlayer == null)
+			return;
 
-		if (!controller.isHumanTurn())
+		BitSet revealed = model.getCivBoard().revealedSince(fogPlayer, fogDrawn);
+		if (revealed.isEmpty())
 			return;
+		fogDrawn.or(revealed);
+		BitSet dirty = withNeighbours(revealed, visibleLeft, visibleTop, visibleRight, visibleBottom);
+		if (dirty.isEmpty())
+			return;
+		int visibleTiles = (visibleRight - visibleLeft + 1) * (visibleBottom - visibleTop + 1);
+		if (dirty.cardinality() > visibleTiles / 4) {
+			// clipping to that many tiles costs more than redrawing them all
+			renderVisibleFog();
+			return;
+		}
 
-		for (int[] coords : getDrawTraversal()) {
-			Tile tile = model.getTileAt(coords[0], coords[1]);
-			if (tile == null || tile.canSeeTile(player))
-				continue;
+		int size = model.getSize();
+		GraphicsContext context = fogCanvas.getGraphicsContext2D();
+		context.save();
+		context.translate(-viewLeft, -viewTop);
+		context.beginPath();
+		for (int i = dirty.nextSetBit(0); i >= 0; i = dirty.nextSetBit(i + 1))
+			addTileOutline(context, i % size, i / size);
+		context.clip();
+		context.clearRect(viewLeft, viewTop, fogCanvas.getWidth(), fogCanvas.getHeight());
+		// tiles around the edge overlap the clip by a pixel or two, so they're
+		// redrawn too
+		BitSet redraw = withNeighbours(dirty, 0, 0, size - 1, size - 1);
+		int left = size, top = size, right = -1, bottom = -1;
+		for (int i = redraw.nextSetBit(0); i >= 0; i = redraw.nextSetBit(i + 1)) {
+			left = Math.min(left, i % size);
+			right = Math.max(right, i % size);
+			top = Math.min(top, i / size);
+			bottom = Math.max(bottom, i / size);
+		}
+		drawFog(context, left, top, right, bottom, redraw);
+		context.restore();
+	}
 
-			// since we want some continuity to our fog but also want a little
-			// hint at its edge, we'll need to load a different image depending
-			// on what's bordering it. These images are named for the cardinal
-			// directions stemming from this tile: up, right, down, left. A 1
-			// in these places means to connect the fog in that direction (or
-			// it's at the edge of the board)
-			char[] imageDirs = { '0', '0', '0', '0' };
-
-			// up
-			if (coords[1] <= 0 || !model.getTileAt(coords[0], coords[1] - 1).canSeeTile(player)) {
-				imageDirs[0] = '1';
-			}
-			// right
-			if (coords[0] >= size - 1 || !model.getTileAt(coords[0] + 1, coords[1]).canSeeTile(player)) {
-				imageDirs[1] = '1';
-			}
-			// down
-			if (coords[1] >= size - 1 || !model.getTileAt(coords[0], coords[1] + 1).canSeeTile(player)) {
-				imageDirs[2] = '1';
-			}
-			// left
-			if (coords[0] <= 0 || !model.getTileAt(coords[0] - 1, coords[1]).canSeeTile(player)) {
-				imageDirs[3] = '1';
+	/**
+	 * Wipe the fog canvas and, if it's a human's turn, draw their fog over
+	 * every tile under it.
+	 */
+	private void renderVisibleFog() {
+		GraphicsContext context = fogCanvas.getGraphicsContext2D();
+		context.clearRect(0, 0, fogCanvas.getWidth(), fogCanvas.getHeight());
+		if (fogPlayer == null)
+			return;
+		fogDrawn = (BitSet) model.getRevealed(fogPlayer).clone();
+		context.save();
+		context.translate(-viewLeft, -viewTop);
+		drawFog(context, visibleLeft, visibleTop, visibleRight, visibleBottom, null);
+		context.restore();
+	}
+
+	/**
+	 * Find a set of tiles and every tile around them, inside a rectangle.
+	 *
+	 * @param tiles  The tiles, one bit per tile (y * size + x)
+	 * @param left   Smallest x index of the rectangle
+	 * @param top    Smallest y index of the rectangle
+	 * @param right  Largest x index of the rectangle
+	 * @param bottom Largest y index of the rectangle
+	 * @return A new BitSet of the tiles and their 8 neighbours that are in the
+	 *         rectangle
+	 */
+	private BitSet withNeighbours(BitSet tiles, int left, int top, int right, int bottom) {
+		int size = model.getSize();
+		BitSet result = new BitSet();
+		for (int i = tiles.nextSetBit(0); i >= 0; i = tiles.nextSetBit(i + 1)) {
+			int x = i % size;
+			int y = i / size;
+			for (int ny = Math.max(y - 1, top); ny <= Math.min(y + 1, bottom); ny++) {
+				for (int nx = Math.max(x - 1, left); nx <= Math.min(x + 1, right); nx++)
+					result.set(ny * size + nx);
 			}
+		}
+		return result;
+	}
 
-			// draw the thing
-			Image fogImage = fogImages.get(new String(imageDirs));
-			int[] isoCoords = gridToIso(coords[0], coords[1]);
-			// images are 2px bigger so we can draw them with 1px of overlap.
-			// Otherwise, some underlying info can peek through
-			context.drawImage(
-					fogImage, isoCoords[0] - 1, isoCoords[1] - 1,
-					TILE_SIZE + 2, TILE_SIZE * ISO_FACTOR + 2
-			);
+	/**
+	 * Add a tile's diamond to the path being built, in iso coordinates.
+	 *
+	 * @param context The context building the path
+	 * @param x       The x index of the tile in the map grid
+	 * @param y       The y index of the tile in the map grid
+	 */
+	private void addTileOutline(GraphicsContext context, int x, int y) {
+		int[] coords = gridToIso(x, y);
+		double height = TILE_SIZE * ISO_FACTOR;
+		context.moveTo(coords[0] + TILE_SIZE / 2.0, coords[1]);
+		context.lineTo(coords[0] + TILE_SIZE, coords[1] + height / 2);
+		context.lineTo(coords[0] + TILE_SIZE / 2.0, coords[1] + height);
+		context.lineTo(coords[0], coords[1] + height / 2);
+		context.closePath();
+	}
+
+	/**
+	 * Draw the fog over a rectangle of tiles, back-to-front, and fill the gaps
+	 * at the corners in and around it.
+	 *
+	 * @param context The fog canvas's context
+	 * @param left    Smallest x index of the rectangle
+	 * @param top     Smallest y index of the rectangle
+	 * @param right   Largest x index of the rectangle
+	 * @param bottom  Largest y index of the rectangle
+	 * @param only    If not null, only the tiles in this set (and the corners
+	 *                touching them) are drawn
+	 */
+	private void drawFog(GraphicsContext context, int left, int top, int right, int bottom, BitSet only) {
+		int size = model.getSize();
+		BitSet seen = model.getRevealed(fogPlayer);
+
+		// one diagonal slice at a time, like getDrawTraversal()
+		for (int slice = left + top; slice <= right + bottom; slice++) {
+			for (int x = Math.max(left, slice - bottom); x <= Math.min(right, slice - top); x++) {
+				int y = slice - x;
+				if ((only != null && !only.get(y * size + x)) || !isFogged(seen, x, y))
+					continue;
+
+				// since we want some continuity to our fog but also want a little
+				// hint at its edge, we'll need to load a different image depending
+				// on what's bordering it. These images are named for the cardinal
+				// directions stemming from this tile: up, right, down, left. A 1
+				// in these places means to connect the fog in that direction (or
+				// it's at the edge of the board)
+				char[] imageDirs = { '0', '0', '0', '0' };
+
+				// up
+				if (isFogged(seen, x, y - 1)) {
+					imageDirs[0] = '1';
+				}
+				// right
+				if (isFogged(seen, x + 1, y)) {
+					imageDirs[1] = '1';
+				}
+				// down
+				if (isFogged(seen, x, y + 1)) {
+					imageDirs[2] = '1';
+				}
+				// left
+				if (isFogged(seen, x - 1, y)) {
+					imageDirs[3] = '1';
+				}
+
+				// draw the thing
+				int[] isoCoords = gridToIso(x, y);
+				// images are 2px bigger so we can draw them with 1px of overlap.
+				// Otherwise, some underlying info can peek through
+				atlas.draw(
+						context, "fog-" + new String(imageDirs), isoCoords[0] - 1, isoCoords[1] - 1,
+						TILE_SIZE + 2, TILE_SIZE * ISO_FACTOR + 2
+				);
+			}
 		}
 
 		// since a group of four "full" images in a square will leave a small
@@ -602,22 +965,25 @@ public class CivView extends Application implements Observer {
 		int radius = 23;
 
 		// we're iterating on corners, not tiles, so inclusive high bound
-		for (int x = 0; x <= model.getSize(); x++) {
-			for (int y = 0; y <= model.getSize(); y++) {
+		for (int x = left; x <= right + 1; x++) {
+			for (int y = top; y <= bottom + 1; y++) {
+				if (only != null && !touches(only, x, y))
+					continue;
+
 				// search each tile touching this gap on its diagonals
 				int diags = 0;
 
 				// top left
-				if (x == 0 || y == 0 || !model.getTileAt(x - 1, y - 1).canSeeTile(player))
+				if (isFogged(seen, x - 1, y - 1))
 					diags++;
 				// top right
-				if (x >= size || y == 0 || !model.getTileAt(x, y - 1).canSeeTile(player))
+				if (isFogged(seen, x, y - 1))
 					diags++;
 				// bottom right
-				if (x >= size || y >= size || !model.getTileAt(x, y).canSeeTile(player))
+				if (isFogged(seen, x, y))
 					diags++;
 				// bottom left
-				if (x == 0 || y >= size || !model.getTileAt(x - 1, y).canSeeTile(player))
+				if (isFogged(seen, x - 1, y))
 					diags++;
 
 				if (diags == 4) {
@@ -632,6 +998,41 @@ public class CivView extends Application implements Observer {
 		}
 	}
 
+	/**
+	 * Determine whether any of the four tiles around a grid corner is in a set.
+	 *
+	 * @param tiles The tiles, one bit per tile (y * size + x)
+	 * @param x     The x index of the corner (tile x's top corner)
+	 * @param y     The y index of the corner (tile y's top corner)
+	 * @return True if a tile touching the corner is in the set
+	 */
+	private boolean touches(BitSet tiles, int x, int y) {
+		int size = model.getSize();
+		for (int ty = Math.max(y - 1, 0); ty <= Math.min(y, size - 1); ty++) {
+			for (int tx = Math.max(x - 1, 0); tx <= Math.min(x, size - 1); tx++) {
+				if (tiles.get(ty * size + tx))
+					return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Determine whether a board space should be covered in fog. Spaces off the
+	 * edge of the board count as fogged so the fog connects to the border.
+	 *
+	 * @param seen The current player's revealed tiles, one bit per tile
+	 * @param x    The x index of the space in the map grid
+	 * @param y    The y index of the space in the map grid
+	 * @return True if the space is hidden from the current player
+	 */
+	private boolean isFogged(BitSet seen, int x, int y) {
+		int size = model.getSize();
+		if (x < 0 || x >= size || y < 0 || y >= size)
+			return true;
+		return !seen.get(y * size + x);
+	}
+
 	/**
 	 * Render an overlay with readouts of all current players. These readouts
 	 * act as a key, mapping players to colors that are then reflected on units
@@ -748,13 +1149,25 @@ public class CivView extends Application implements Observer {
 		if (!ev.isStillSincePress())
 			return;
 
-		int[] space = isoToGrid(ev.getX(), ev.getY());
+		int[] space = isoToGrid(ev.getX() + viewLeft, ev.getY() + viewTop);
 		Tile tile = controller.getTileAt(space[0], space[1]);
 
 		// reject clicks in the negative space left by the iso view
 		if (tile == null)
 			return;
 
+		// a secondary click with a unit selected is a "move to" order: the unit
+		// walks the shortest path towards the space as far as it can this turn
+		if (ev.getButton() == MouseButton.SECONDARY) {
+			if (selectedUnit != null && controller.moveUnitTo(selectedUnit, space[0], space[1])
+					&& selectedCity != null) {
+				Unit tmp = selectedUnit;
+				deselect();
+				selectUnit(tmp);
+			}
+			return;
+		}
+
 		Unit targetUnit = tile.getUnit();
 		City targetCity = null;
 		if (tile.isCityTile())
@@ -806,7 +1219,7 @@ public class CivView extends Application implements Observer {
 
 		// "snap" to a grid space by getting its grid coord and re-translating
 		// to iso coords
-		int[] space = isoToGrid(ev.getX(), ev.getY());
+		int[] space = isoToGrid(ev.getX() + viewLeft, ev.getY() + viewTop);
 
 		// reject events in the negative space left by the iso view
 		if (space[0] < 0 || space[0] >= model.getSize() || space[1] < 0 || space[1] >= model.getSize()) {
@@ -836,7 +1249,7 @@ public class CivView extends Application implements Observer {
 		mapSelectedCursor.setVisible(false);
 		mapSelectedTransition.pause();
 
-		mapOverlayContainer.getChildren().clear();
+		clearMarkers();
 	}
 
 	/**
@@ -921,7 +1334,6 @@ public class CivView extends Application implements Observer {
 			settleButton.setOnMouseClicked(ev -> {
 				controller.foundCity(unit.getX(), unit.getY());
 				deselect();
-				renderAllSprites();
 			});
 
 			estimatedHeight += 50;
@@ -1111,26 +1523,23 @@ public class CivView extends Application implements Observer {
 	private void addRangeIndicators(Unit unit) {
 		HashSet<int[]> validMoves = controller.getValidMoves(unit);
 
-		mapOverlayContainer.getChildren().clear();
+		markers.clear();
 
 		for (int[] move : validMoves) {
-			int[] coords = gridToIso(move[0], move[1]);
-			ImageView markerView;
+			String marker;
 			Tile moveTile = controller.getTileAt(move[0], move[1]);
 			// indicate if there's an attackable unit or city in the space
 			if ((moveTile.getUnit() != null && moveTile.getUnit().getOwner() != model.getCurPlayer()) ||
 					(moveTile.isCityTile() && moveTile.getOwnerCity().getOwner() != model.getCurPlayer())) {
-				markerView = new ImageView(markerImages.get("attackable"));
+				marker = "attackable";
 			} else if (moveTile.getMovementModifier() < 0) {
-				markerView = new ImageView(markerImages.get("costly"));
+				marker = "costly";
 			} else {
-				markerView = new ImageView(markerImages.get("valid"));
+				marker = "valid";
 			}
-			markerView.setX(coords[0]);
-			markerView.setY(coords[1]);
-			markerView.setMouseTransparent(true);
-			mapOverlayContainer.getChildren().add(markerView);
+			markers.add(new Marker(marker, move[0], move[1], false));
 		}
+		renderMarkers();
 	}
 
 	/**
@@ -1143,27 +1552,13 @@ public class CivView extends Application implements Observer {
 			Tile tile = controller.getTileAt(space[0], space[1]);
 
 			if (tile.getOwnerCity() == city) {
-				int[] coords = gridToIso(space[0], space[1]);
-				ImageView markerView = new ImageView(markerImages.get("owned"));
-				markerView.setX(coords[0]);
-				markerView.setY(coords[1]);
-				markerView.setMouseTransparent(true);
-				mapOverlayContainer.getChildren().add(markerView);
+				markers.add(new Marker("owned", space[0], space[1], false));
 
-				if (tile.getResourceType().length() > 0) {
-					Image resourceImage = spriteImages.get(tile.getResourceType() + "-tile");
-					if (resourceImage != null) {
-						ImageView resourceView = new ImageView(resourceImage);
-						resourceView.setFitWidth(RESOURCE_SIZE);
-						resourceView.setFitHeight(RESOURCE_SIZE * ISO_FACTOR);
-						resourceView.setLayoutX(coords[0] + TILE_SIZE / 10.0);
-						resourceView.setLayoutY(coords[1] + (TILE_SIZE - RESOURCE_SIZE) / 2.0 * ISO_FACTOR);
-						resourceView.setMouseTransparent(true);
-						mapOverlayContainer.getChildren().add(resourceView);
-					}
-				}
+				if (tile.getResourceType().length() > 0)
+					markers.add(new Marker(tile.getResourceType() + "-tile", space[0], space[1], true));
 			}
 		}
+		renderMarkers();
 	}
 
 	/**
@@ -1418,45 +1813,26 @@ public class CivView extends Application implements Observer {
 	}
 
 	/**
-	 * Get a tile image for a terrain type.
+	 * Get the tile image for the tile at x, y.
 	 *
 	 * <p>
-	 * Since there can be many tile choices for a given terrain type, this method
-	 * chooses one randomly. Don't expect the same image for the same terrain type
-	 * each time.
+	 * Since there are many tile choices for each terrain type, the choice is
+	 * made by hashing the tile's position with the game's seed. A tile looks the
+	 * same every time it's drawn, in whatever order tiles are drawn, and a game
+	 * with the same seed gets the same choices, all without the view using up
+	 * any of the game's random numbers.
 	 *
-	 * @param terrainType The terrain type to get a file for
+	 * @param tile The tile to get an image for
+	 * @param x    The x index of the tile in the map grid
+	 * @param y    The y index of the tile in the map grid
 	 * @return An Image object containing the image data for a tile image matching
-	 *         the terrain type
-	 */
-	private Image getTileImage(Tile.terrainTypes terrainType) {
-		try {
-			if (terrainType == Tile.terrainTypes.HILL) {
-				return new Image(new FileInputStream("src/assets/tiles/hill-" + getRandInt(1, 5) + ".png"));
-			} else if (terrainType == Tile.terrainTypes.SWAMP) {
-				return new Image(new FileInputStream("src/assets/tiles/swamp-" + getRandInt(1, 5) + ".png"));
-			} else if (terrainType == Tile.terrainTypes.WATER) {
-				return new Image(new FileInputStream("src/assets/tiles/water-" + getRandInt(1, 5) + ".png"));
-			} else if (terrainType == Tile.terrainTypes.MOUNTAIN) {
-				return new Image(new FileInputStream("src/assets/tiles/mountain-" + getRandInt(1, 5) + ".png"));
-			} else {
-				return new Image(new FileInputStream("src/assets/tiles/field-" + getRandInt(1, 5) + ".png"));
-			}
-		} catch (FileNotFoundException e) {
-			e.printStackTrace();
-			return null;
-		}
-	}
-
-	/**
-	 * Generate a random integer in a given range.
-	 *
-	 * @param min The minimum possible result (inclusive)
-	 * @param max The maximum possible result (inclusive)
-	 * @return A random integer between the two bounds, inclusive
+	 *         the tile's terrain type
 	 */
-	private int getRandInt(int min, int max) {
-		return (int) (Math.random() * (max - min + 1) + min);
+	private Image getTileImage(Tile tile, int x, int y) {
+		long hash = model.getSeed() ^ (x * 0x9E3779B97F4A7C15L) ^ (y * 0xC2B2AE3D27D4EB4FL);
+		hash = (hash ^ (hash >>> 33)) * 0xFF51AFD7ED558CCDL;
+		hash ^= hash >>> 33;
+		return tileImages.get(tile.getTerrainType())[(int) Math.floorMod(hash, (long) TILE_VARIANTS)];
 	}
 
 	/**
@@ -1534,7 +1910,7 @@ public class CivView extends Application implements Observer {
 		VBox garbageTop = new VBox();
 		Window.setLeft(garbageLeft);
 		Window.setTop(garbageTop);
-		garbageLeft.setMinWidth(190);
+		garbageLeft.setMinWidth(120);
 		garbageTop.setMinHeight(160);
 		Button map1 = new Button("Map 1");
 		Text label1 = new Text("  2-4 Players");
@@ -1590,11 +1966,23 @@ public class CivView extends Application implements Observer {
 			queryMapSize(stage);
 		});
 		col4.getChildren().addAll(canvas4, map4, label4);
+		VBox col5 = new VBox();
+		Button map5 = new Button("Map 5");
+		Text label5 = new Text("  2-4 Players");
+		Canvas canvas5 = new Canvas(110, 110);
+		drawMapPreview(canvas5, new NoiseMapGenerator(5).generate(55));
+		map5.getStyleClass().addAll("button", "detail-pane__button");
+		map5.setOnAction(ev -> {
+			mapNum = 5;
+			queryMapSize(stage);
+		});
+		col5.getChildren().addAll(canvas5, map5, label5);
 		col1.setSpacing(10);
 		col2.setSpacing(10);
 		col3.setSpacing(10);
 		col4.setSpacing(10);
-		mapSelection.getChildren().addAll(col1, col2, col3, col4);
+		col5.setSpacing(10);
+		mapSelection.getChildren().addAll(col1, col2, col3, col4, col5);
 		BackgroundImage myBI = new BackgroundImage(new Image("file:./src/assets/menus/background.jpg",32,32,false,true),
 		        BackgroundRepeat.REPEAT, BackgroundRepeat.REPEAT, BackgroundPosition.DEFAULT,
 		          BackgroundSize.DEFAULT);
@@ -1613,6 +2001,37 @@ public class CivView extends Application implements Observer {
 		stage.setScene(scene);
 		stage.show();
 	}
+	/**
+	 * drawMapPreview() paints a board onto a canvas as one flat colored square
+	 * 	per tile, for maps that have no preview image.
+	 * @param canvas the canvas to paint, filled edge to edge
+	 * @param board the board to paint
+	 */
+	private void drawMapPreview(Canvas canvas, CivBoard board) {
+		GraphicsContext context = canvas.getGraphicsContext2D();
+		double tile = canvas.getWidth() / board.getSize();
+		for (int x = 0; x < board.getSize(); x++) {
+			for (int y = 0; y < board.getSize(); y++) {
+				switch (board.getTile(x, y).getTerrainType()) {
+				case WATER:
+					context.setFill(Color.STEELBLUE);
+					break;
+				case HILL:
+					context.setFill(Color.OLIVE);
+					break;
+				case SWAMP:
+					context.setFill(Color.DARKSEAGREEN);
+					break;
+				case MOUNTAIN:
+					context.setFill(Color.GRAY);
+					break;
+				default:
+					context.setFill(Color.YELLOWGREEN);
+				}
+				context.fillRect(x * tile, y * tile, tile, tile);
+			}
+		}
+	}
 	/**
 	 * attemptLoadGame() is called when the User clicks the "Load Game" button on
 	 * 	our Main Menu. If it cannot load a game, it displays an Alert indicating
@@ -1631,7 +2050,7 @@ public class CivView extends Application implements Observer {
 		}
 	}
 	/**
-	 * queryMapSize draws a Menu screen with four menu options. Map4 is variably sized and
+	 * queryMapSize draws a Menu screen with four menu options. Maps 4 and 5 are variably sized and
 	 * 	can be one of the four options that the user wants: 20x20, 30x30, 40x40, 50x50.
 	 * 	This Menu includes buttons for all four of these options and, upon clicking, sets
 	 * 	the View's mapSize field. This menu also includes a "Return to Menu" button that
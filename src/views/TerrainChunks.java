@@ -0,0 +1,252 @@
+package views;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javafx.application.Platform;
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+
+/**
+ * The terrain of a board, pre-rendered into square bitmap chunks so the map
+ * can be drawn with a few big drawImage()s instead of one per tile.
+ *
+ * <p>
+ * Terrain (tile art and resources) never changes once a board is built, so a
+ * chunk only ever has to be rendered once. Chunks are CHUNK_SIZE pixels
+ * square, in the iso space gridToIso() uses, and are built lazily: get() hands
+ * back a chunk if it's ready, and otherwise queues it to be built on a
+ * background thread and returns null, so the caller can draw the tiles itself
+ * this once. When a chunk is ready the onChunkReady callback is run on the FX
+ * thread to redraw with it. Only the most recently used MAX_CHUNKS chunks are
+ * kept in memory.
+ *
+ * <p>
+ * Building a chunk doesn't touch the board or the FX thread: the art for
+ * every tile is copied into plain pixel arrays up front and composited by
+ * hand. A chunk takes a few milliseconds to build, which is less than it
+ * would take to decode one from disk, so chunks dropped from memory are just
+ * built again.
+ *
+ * @field CHUNK_SIZE width and height of a chunk in pixels
+ * @field MAX_CHUNKS number of chunks kept in memory
+ * @author Connie Sun, Ryan Smith, Luke Hankins, Tim Gavlick
+ */
+public class TerrainChunks {
+
+	public static final int CHUNK_SIZE = 1024;
+	public static final int MAX_CHUNKS = 16;
+
+	private final int size;
+	private final int tileWidth;
+	private final int tileHeight;
+	private final int boardWidth;
+	private final int boardHeight;
+	private final int[][] art;
+	private final int[] artWidths;
+	private final int[] artHeights;
+	private final int[] tileArt;
+	private final int[] overlayArt;
+	private final int overlayX;
+	private final int overlayY;
+	private final Runnable onChunkReady;
+	private final ExecutorService builder;
+
+	// only touched on the FX thread
+	private final Map<Long, Image> chunks = new LinkedHashMap<>(MAX_CHUNKS, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, Image> eldest) {
+			return size() > MAX_CHUNKS;
+		}
+	};
+	private final Set<Long> pending = new HashSet<>();
+
+	/**
+	 * Get ready to render a board's terrain. Must be called on the FX thread,
+	 * since this is where the art is read.
+	 *
+	 * @param size         width and height of the board in tiles
+	 * @param tileWidth    width of a tile's art in pixels
+	 * @param tileHeight   height of a tile's art in pixels
+	 * @param tiles        the art for each tile, by index (y * size + x)
+	 * @param overlays     art drawn over each tile (its resource), by index, or
+	 *                     null for none
+	 * @param overlayX     where overlays go, in pixels from the tile's left
+	 * @param overlayY     where overlays go, in pixels from the tile's top
+	 * @param onChunkReady run on the FX thread whenever a queued chunk is ready
+	 */
+	public TerrainChunks(int size, int tileWidth, int tileHeight, Image[] tiles, Image[] overlays, int overlayX,
+			int overlayY, Runnable onChunkReady) {
+		this.size = size;
+		this.tileWidth = tileWidth;
+		this.tileHeight = tileHeight;
+		this.boardWidth = size * tileWidth;
+		this.boardHeight = size * tileHeight;
+		this.overlayX = overlayX;
+		this.overlayY = overlayY;
+		this.onChunkReady = onChunkReady;
+
+		// copy each distinct image's pixels once; tiles refer to them by number
+		Map<Image, Integer> ids = new IdentityHashMap<>();
+		this.tileArt = new int[size * size];
+		this.overlayArt = new int[size * size];
+		for (int i = 0; i < size * size; i++) {
+			tileArt[i] = artId(ids, tiles[i]);
+			overlayArt[i] = artId(ids, overlays[i]);
+		}
+		this.art = new int[ids.size()][];
+		this.artWidths = new int[ids.size()];
+		this.artHeights = new int[ids.size()];
+		for (Map.Entry<Image, Integer> entry : ids.entrySet()) {
+			Image image = entry.getKey();
+			int id = entry.getValue();
+			artWidths[id] = (int) image.getWidth();
+			artHeights[id] = (int) image.getHeight();
+			art[id] = new int[artWidths[id] * artHeights[id]];
+			image.getPixelReader().getPixels(0, 0, artWidths[id], artHeights[id], PixelFormat.getIntArgbInstance(),
+					art[id], 0, artWidths[id]);
+		}
+
+		this.builder = Executors.newSingleThreadExecutor(r -> {
+			Thread t = new Thread(r, "terrain-chunks");
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+	private static int artId(Map<Image, Integer> ids, Image image) {
+		if (image == null || image.isError() || image.getWidth() < 1 || image.getHeight() < 1)
+			return -1;
+		return ids.computeIfAbsent(image, k -> ids.size());
+	}
+
+	/**
+	 * Get a chunk of the rendered terrain, queueing it to be built if it isn't
+	 * ready. Call on the FX thread.
+	 *
+	 * @param chunkX horizontal index of the chunk; it starts at chunkX *
+	 *               CHUNK_SIZE
+	 * @param chunkY vertical index of the chunk; it starts at chunkY *
+	 *               CHUNK_SIZE
+	 * @return the chunk, or null if it's not ready yet. Chunks on the right and
+	 *         bottom edges of the board are cut off where the board ends
+	 */
+	public Image get(int chunkX, int chunkY) {
+		long key = ((long) chunkX << 32) | (chunkY & 0xFFFFFFFFL);
+		Image chunk = chunks.get(key);
+		if (chunk != null || !pending.add(key))
+			return chunk;
+
+		builder.submit(() -> {
+			int left = chunkX * CHUNK_SIZE;
+			int top = chunkY * CHUNK_SIZE;
+			int width = Math.min(CHUNK_SIZE, boardWidth - left);
+			int height = Math.min(CHUNK_SIZE, boardHeight - top);
+			int[] pixels = render(left, top, width, height);
+			Platform.runLater(() -> {
+				WritableImage image = new WritableImage(width, height);
+				image.getPixelWriter().setPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(), pixels, 0,
+						width);
+				pending.remove(key);
+				chunks.put(key, image);
+				onChunkReady.run();
+			});
+		});
+		return null;
+	}
+
+	/**
+	 * @return number of chunks across the board
+	 */
+	public int getChunksWide() {
+		return (boardWidth + CHUNK_SIZE - 1) / CHUNK_SIZE;
+	}
+
+	/**
+	 * @return number of chunks down the board
+	 */
+	public int getChunksHigh() {
+		return (boardHeight + CHUNK_SIZE - 1) / CHUNK_SIZE;
+	}
+
+	/**
+	 * Composite the tiles overlapping part of the board, back-to-front, over the
+	 * board's black background.
+	 *
+	 * @param left   left of the area in iso pixels
+	 * @param top    top of the area in iso pixels
+	 * @param width  width of the area in pixels
+	 * @param height height of the area in pixels
+	 * @return the area's pixels in ARGB, row by row
+	 */
+	int[] render(int left, int top, int width, int height) {
+		int[] pixels = new int[width * height];
+		Arrays.fill(pixels, 0xFF000000);
+
+		// tile (x, y) has its top-left at ((size - 1 + x - y) * w/2, (x + y) * h/2),
+		// so the area covers the tiles with x + y and x - y in these ranges
+		int halfW = tileWidth / 2, halfH = tileHeight / 2;
+		int sumMin = Math.max(Math.floorDiv(top - tileHeight, halfH), 0);
+		int sumMax = Math.min(Math.floorDiv(top + height, halfH), 2 * size - 2);
+		int diffMin = Math.max(Math.floorDiv(left - tileWidth, halfW) - size + 1, 1 - size);
+		int diffMax = Math.min(Math.floorDiv(left + width, halfW) - size + 1, size - 1);
+		for (int slice = sumMin; slice <= sumMax; slice++) {
+			for (int x = Math.max(0, slice - size + 1); x <= Math.min(size - 1, slice); x++) {
+				int y = slice - x;
+				if (x - y < diffMin || x - y > diffMax)
+					continue;
+				int tileLeft = (size - 1 + x - y) * halfW - left;
+				int tileTop = slice * halfH - top;
+				blend(pixels, width, height, tileArt[y * size + x], tileLeft, tileTop);
+				blend(pixels, width, height, overlayArt[y * size + x], tileLeft + overlayX, tileTop + overlayY);
+			}
+		}
+		return pixels;
+	}
+
+	/**
+	 * Draw one piece of art over opaque pixels, clipped to them.
+	 *
+	 * @param pixels the pixels to draw on, row by row
+	 * @param width  width of the pixels
+	 * @param height height of the pixels
+	 * @param id     which art to draw, or -1 for none
+	 * @param atX    where the art's left edge goes
+	 * @param atY    where the art's top edge goes
+	 */
+	private void blend(int[] pixels, int width, int height, int id, int atX, int atY) {
+		if (id < 0)
+			return;
+		int[] src = art[id];
+		int srcWidth = artWidths[id];
+		int fromX = Math.max(0, -atX), toX = Math.min(srcWidth, width - atX);
+		int fromY = Math.max(0, -atY), toY = Math.min(artHeights[id], height - atY);
+		for (int sy = fromY; sy < toY; sy++) {
+			int srcRow = sy * srcWidth;
+			int dstRow = (atY + sy) * width + atX;
+			for (int sx = fromX; sx < toX; sx++) {
+				int s = src[srcRow + sx];
+				int a = s >>> 24;
+				if (a == 0)
+					continue;
+				if (a == 255) {
+					pixels[dstRow + sx] = s;
+					continue;
+				}
+				int d = pixels[dstRow + sx];
+				int r = (((s >> 16) & 0xFF) * a + ((d >> 16) & 0xFF) * (255 - a)) / 255;
+				int g = (((s >> 8) & 0xFF) * a + ((d >> 8) & 0xFF) * (255 - a)) / 255;
+				int b = ((s & 0xFF) * a + (d & 0xFF) * (255 - a)) / 255;
+				pixels[dstRow + sx] = 0xFF000000 | (r << 16) | (g << 8) | b;
+			}
+		}
+	}
+
+}
@@ -0,0 +1,136 @@
+package views;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javafx.geometry.Rectangle2D;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.Image;
+import javafx.scene.image.WritableImage;
+
+/**
+ * Many small images packed into one big one, so everything drawn from it
+ * comes out of a single texture.
+ *
+ * <p>
+ * Images are packed in rows ("shelves"), tallest first, left to right until a
+ * row is full. Each image gets PADDING transparent pixels around it so
+ * smoothing, when an image is drawn scaled, never picks up its neighbours.
+ * Drawing an image from the atlas is then a drawImage() of its region of the
+ * atlas, which a canvas can batch with every other draw from the same
+ * texture.
+ *
+ * @author Connie Sun, Ryan Smith, Luke Hankins, Tim Gavlick
+ */
+public class TextureAtlas {
+
+	/** transparent pixels kept around every packed image */
+	public static final int PADDING = 2;
+
+	private final WritableImage image;
+	private final Map<String, Rectangle2D> regions;
+
+	private TextureAtlas(WritableImage image, Map<String, Rectangle2D> regions) {
+		this.image = image;
+		this.regions = regions;
+	}
+
+	/**
+	 * Pack images into a new atlas. Images that failed to load (or are empty)
+	 * are left out.
+	 *
+	 * @param images the images to pack, by the name they're drawn with
+	 * @param width  width of the atlas in pixels; no image may be wider
+	 * @return the packed atlas
+	 * @throws IllegalArgumentException if an image is wider than the atlas
+	 */
+	public static TextureAtlas pack(Map<String, Image> images, int width) {
+		List<String> names = new ArrayList<>();
+		for (Map.Entry<String, Image> entry : images.entrySet()) {
+			Image image = entry.getValue();
+			if (image.isError() || image.getWidth() < 1 || image.getHeight() < 1)
+				continue;
+			if (image.getWidth() + 2 * PADDING > width)
+				throw new IllegalArgumentException(entry.getKey() + " is wider than the atlas");
+			names.add(entry.getKey());
+		}
+		names.sort((a, b) -> Double.compare(images.get(b).getHeight(), images.get(a).getHeight()));
+
+		// lay the shelves out first, to know how tall the atlas has to be
+		Map<String, Rectangle2D> regions = new HashMap<>();
+		int x = 0, y = 0, shelfHeight = 0;
+		for (String name : names) {
+			Image image = images.get(name);
+			int w = (int) image.getWidth() + 2 * PADDING;
+			int h = (int) image.getHeight() + 2 * PADDING;
+			if (x + w > width) {
+				y += shelfHeight;
+				x = 0;
+				shelfHeight = 0;
+			}
+			regions.put(name, new Rectangle2D(x + PADDING, y + PADDING, image.getWidth(), image.getHeight()));
+			x += w;
+			shelfHeight = Math.max(shelfHeight, h);
+		}
+
+		WritableImage atlas = new WritableImage(width, Math.max(y + shelfHeight, 1));
+		for (String name : names) {
+			Image image = images.get(name);
+			Rectangle2D region = regions.get(name);
+			atlas.getPixelWriter().setPixels((int) region.getMinX(), (int) region.getMinY(), (int) region.getWidth(),
+					(int) region.getHeight(), image.getPixelReader(), 0, 0);
+		}
+		return new TextureAtlas(atlas, regions);
+	}
+
+	/**
+	 * Draw a packed image, scaled to fit a rectangle.
+	 *
+	 * @param context the context to draw with
+	 * @param name    name the image was packed with
+	 * @param x       left of the rectangle to draw into
+	 * @param y       top of the rectangle to draw into
+	 * @param w       width of the rectangle to draw into
+	 * @param h       height of the rectangle to draw into
+	 * @return false if there's no image by that name, so nothing was drawn
+	 */
+	public boolean draw(GraphicsContext context, String name, double x, double y, double w, double h) {
+		Rectangle2D region = regions.get(name);
+		if (region == null)
+			return false;
+		context.drawImage(image, region.getMinX(), region.getMinY(), region.getWidth(), region.getHeight(), x, y, w,
+				h);
+		return true;
+	}
+
+	/**
+	 * Draw a packed image at its own size.
+	 *
+	 * @param context the context to draw with
+	 * @param name    name the image was packed with
+	 * @param x       left of where to draw it
+	 * @param y       top of where to draw it
+	 * @return false if there's no image by that name, so nothing was drawn
+	 */
+	public boolean draw(GraphicsContext context, String name, double x, double y) {
+		Rectangle2D region = regions.get(name);
+		return region != null && draw(context, name, x, y, region.getWidth(), region.getHeight());
+	}
+
+	/**
+	 * @return the single image everything is packed into
+	 */
+	public Image getImage() {
+		return image;
+	}
+
+	/**
+	 * @return how many images were packed
+	 */
+	public int getRegionCount() {
+		return regions.size();
+	}
+
+}